@@ -0,0 +1,85 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner;
+
+import android.util.Base64;
+
+import org.json.JSONArray;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Collects the distinct barcodes of a batch scan, across one or more frames.
+ *
+ * <p>Codes are de-duplicated by format and raw value and kept in the order they were first seen.
+ * Each code is serialized in the positional shape of a single scan result, extended with the raw
+ * bytes (Base64, empty if unknown) and the bounding box as {@code [left, top, right, bottom]}
+ * (empty if unknown).
+ */
+public class BatchCollector {
+
+    private final int targetCount;
+    private final long deadline;
+    private final Map<String, JSONArray> codes = new LinkedHashMap<>();
+
+    /**
+     * @param targetCount number of distinct codes after which the batch is complete, 0 for none
+     * @param timeoutMs   time after which the batch is complete with whatever was found, 0 for none
+     */
+    public BatchCollector(int targetCount, long timeoutMs) {
+        this.targetCount = Math.max(0, targetCount);
+        this.deadline = timeoutMs > 0 ? System.currentTimeMillis() + timeoutMs : 0;
+    }
+
+    /** Adds a code unless it was already collected. Returns true if it was new. */
+    public synchronized boolean add(String value, int format, int type, byte[] rawBytes, int[] boundingBox) {
+        String key = format + ":" + (value == null ? "" : value);
+        if (codes.containsKey(key)) {
+            return false;
+        }
+        JSONArray code = new JSONArray();
+        code.put(value == null ? "" : value);
+        code.put(format);
+        code.put(type);
+        code.put(rawBytes == null ? "" : Base64.encodeToString(rawBytes, Base64.NO_WRAP));
+        JSONArray box = new JSONArray();
+        if (boundingBox != null) {
+            for (int edge : boundingBox) {
+                box.put(edge);
+            }
+        }
+        code.put(box);
+        codes.put(key, code);
+        return true;
+    }
+
+    public synchronized int size() {
+        return codes.size();
+    }
+
+    /**
+     * True once the target count is reached or the timeout has passed. Without either, a batch is
+     * complete as soon as anything was found, i.e. it returns the codes of a single frame.
+     */
+    public synchronized boolean isComplete() {
+        if (targetCount > 0 && codes.size() >= targetCount) {
+            return true;
+        }
+        if (deadline > 0 && System.currentTimeMillis() >= deadline) {
+            return true;
+        }
+        return targetCount == 0 && deadline == 0 && !codes.isEmpty();
+    }
+
+    /** Milliseconds until the timeout, or -1 if the batch has none. */
+    public long remainingMs() {
+        return deadline == 0 ? -1 : Math.max(0, deadline - System.currentTimeMillis());
+    }
+
+    public synchronized JSONArray toJSON() {
+        JSONArray result = new JSONArray();
+        for (JSONArray code : codes.values()) {
+            result.put(code);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,63 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Packs a scan result into one byte array, sent to JavaScript as an ArrayBuffer instead of a JSON
+ * array.
+ *
+ * <p>Raw bytes travel unchanged, so payloads that are not valid UTF-8 survive, and nothing is JSON
+ * escaped. All numbers are little endian:
+ *
+ * <pre>
+ *  0  uint8    version, {@link #VERSION}
+ *  1  uint8    flags: 1 seen before, 2 has bounding box, 4 has raw bytes
+ *  2  uint16   value type
+ *  4  int32    format
+ *  8  int32[4] bounding box left, top, right, bottom, 0 without box
+ * 24  float64  first seen at, epoch milliseconds
+ * 32  uint32   length n of the UTF-8 text
+ * 36  n bytes  text, followed by the raw bytes up to the end
+ * </pre>
+ */
+public final class BinaryResult {
+
+    public static final int VERSION = 1;
+    static final int HEADER_SIZE = 36;
+
+    static final int FLAG_SEEN_BEFORE = 1;
+    static final int FLAG_BOUNDING_BOX = 2;
+    static final int FLAG_RAW_BYTES = 4;
+
+    private BinaryResult() {
+    }
+
+    public static byte[] encode(String value, int format, int type, byte[] rawBytes, int[] boundingBox,
+                                ResultHistory.Sighting sighting) {
+        byte[] text = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        boolean hasBox = boundingBox != null && boundingBox.length == 4;
+        int rawLength = rawBytes == null ? 0 : rawBytes.length;
+
+        int flags = 0;
+        if (sighting.seenBefore) flags |= FLAG_SEEN_BEFORE;
+        if (hasBox) flags |= FLAG_BOUNDING_BOX;
+        if (rawBytes != null) flags |= FLAG_RAW_BYTES;
+
+        byte[] packed = new byte[HEADER_SIZE + text.length + rawLength];
+        ByteBuffer out = ByteBuffer.wrap(packed).order(ByteOrder.LITTLE_ENDIAN);
+        out.put((byte) VERSION);
+        out.put((byte) flags);
+        out.putShort((short) type);
+        out.putInt(format);
+        for (int i = 0; i < 4; i++) {
+            out.putInt(hasBox ? boundingBox[i] : 0);
+        }
+        out.putDouble(sighting.firstSeenAt);
+        out.putInt(text.length);
+        out.put(text);
+        if (rawLength > 0) out.put(rawBytes);
+        return packed;
+    }
+}
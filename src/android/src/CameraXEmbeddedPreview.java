@@ -0,0 +1,267 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner;
+
+import android.annotation.SuppressLint;
+import android.app.Activity;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.util.Size;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.camera.core.CameraSelector;
+import androidx.camera.core.ImageAnalysis;
+import androidx.camera.core.ImageProxy;
+import androidx.camera.core.Preview;
+import androidx.camera.lifecycle.ProcessCameraProvider;
+import androidx.camera.view.PreviewView;
+import androidx.core.content.ContextCompat;
+import androidx.lifecycle.LifecycleOwner;
+
+import com.google.android.gms.tasks.OnCompleteListener;
+import com.google.android.gms.tasks.Task;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.mlkit.vision.barcode.Barcode;
+import com.google.mlkit.vision.barcode.BarcodeScanner;
+import com.google.mlkit.vision.barcode.BarcodeScannerOptions;
+import com.google.mlkit.vision.barcode.BarcodeScanning;
+import com.google.mlkit.vision.common.InputImage;
+import com.mobisys.cordova.plugins.mlkit.barcode.scanner.utils.DetectionPipeline;
+import com.mobisys.cordova.plugins.mlkit.barcode.scanner.utils.FrameScheduler;
+import com.mobisys.cordova.plugins.mlkit.barcode.scanner.utils.SensorRegionMapper;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * CameraX preview behind the Cordova WebView, built on the same CameraX API generation as {@code
+ * CaptureActivity}.
+ *
+ * <p>The preview is added as the first child of the WebView's parent and the WebView background is
+ * made transparent while it runs; the page itself must not paint an opaque background. The preview
+ * uses a TextureView so it composes below the WebView like any other view. The detector looks at
+ * the centered detector box of the preview, mapped into the sensor frame, with the frame scheduler
+ * and detection pipeline of the capture screen. Unlike that screen, analysis frames always have
+ * {@link #ANALYSIS_SIZE}: there is no resolution controller, region of interest tracking, tile
+ * search or device profile here. Pausing only drops the analysis frames, so resuming is immediate.
+ * The activity must be a {@link LifecycleOwner}, which the constructor checks.
+ */
+public class CameraXEmbeddedPreview implements EmbeddedPreview {
+
+    // Fixed analysis size, enough for the detector box and cheap to crop.
+    private static final Size ANALYSIS_SIZE = new Size(1280, 720);
+
+    private final Activity activity;
+    private final View webView;
+
+    private PreviewView previewView;
+    private Drawable webViewBackground;
+    private ProcessCameraProvider cameraProvider;
+    private Preview preview;
+    private ImageAnalysis imageAnalysis;
+    private ExecutorService executor;
+    private BarcodeScanner scanner;
+    private DetectionPipeline<List<Barcode>> pipeline;
+    // Only touched on the analysis executor.
+    private FrameScheduler frameScheduler;
+    private final SensorRegionMapper sensorRegion = new SensorRegionMapper();
+    private double detectorSize;
+    // Written on the main thread, read by the analyzer.
+    private volatile ContinuousScanSession session;
+    private volatile boolean paused;
+    private volatile int previewWidth;
+    private volatile int previewHeight;
+
+    /** @throws IllegalArgumentException if {@code activity} is not a {@link LifecycleOwner} */
+    public CameraXEmbeddedPreview(Activity activity, View webView) {
+        if (!(activity instanceof LifecycleOwner)) {
+            throw new IllegalArgumentException("the activity is not a LifecycleOwner");
+        }
+        this.activity = activity;
+        this.webView = webView;
+    }
+
+    @Override
+    public void start(ScanOptions options, final ContinuousScanSession session, final ErrorListener errors) {
+        stop();
+        this.session = session;
+        paused = false;
+        detectorSize = options.getDetectorSize();
+        frameScheduler = new FrameScheduler(options.getMinDetectionRate(), options.getMaxDetectionRate());
+        executor = Executors.newSingleThreadExecutor();
+        scanner = BarcodeScanning.getClient(new BarcodeScannerOptions.Builder().setBarcodeFormats(options.getFormats()).build());
+        pipeline = createPipeline(options.getMaxInFlight());
+
+        ViewGroup parent = (ViewGroup) webView.getParent();
+        previewView = new PreviewView(activity);
+        previewView.setPreferredImplementationMode(PreviewView.ImplementationMode.TEXTURE_VIEW);
+        previewView.addOnLayoutChangeListener(new View.OnLayoutChangeListener() {
+            @Override
+            public void onLayoutChange(View v, int left, int top, int right, int bottom,
+                                       int oldLeft, int oldTop, int oldRight, int oldBottom) {
+                previewWidth = right - left;
+                previewHeight = bottom - top;
+            }
+        });
+        parent.addView(previewView, 0, new ViewGroup.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        webViewBackground = webView.getBackground();
+        webView.setBackgroundColor(Color.TRANSPARENT);
+
+        final ListenableFuture<ProcessCameraProvider> providerFuture = ProcessCameraProvider.getInstance(activity);
+        providerFuture.addListener(new Runnable() {
+            @Override
+            public void run() {
+                if (CameraXEmbeddedPreview.this.session != session) {
+                    // Stopped or restarted before the provider was ready.
+                    return;
+                }
+                try {
+                    bind(providerFuture.get());
+                } catch (Exception e) {
+                    stop();
+                    errors.onError("EMBEDDED_CAMERA_FAILED", e);
+                }
+            }
+        }, ContextCompat.getMainExecutor(activity));
+    }
+
+    @Override
+    public void pause() {
+        paused = true;
+    }
+
+    @Override
+    public void resume() {
+        paused = false;
+    }
+
+    @Override
+    public void stop() {
+        if (session == null) {
+            return;
+        }
+        session = null;
+        if (cameraProvider != null) {
+            cameraProvider.unbind(preview, imageAnalysis);
+            cameraProvider = null;
+        }
+        if (imageAnalysis != null) {
+            imageAnalysis.clearAnalyzer();
+            imageAnalysis = null;
+        }
+        preview = null;
+        if (previewView != null) {
+            ((ViewGroup) previewView.getParent()).removeView(previewView);
+            previewView = null;
+        }
+        webView.setBackground(webViewBackground);
+        webViewBackground = null;
+        // Queued frames still run after shutdown, they see no session and only close the image.
+        executor.shutdown();
+        executor = null;
+        scanner.close();
+        scanner = null;
+        pipeline = null;
+    }
+
+    private void bind(ProcessCameraProvider provider) {
+        preview = new Preview.Builder().build();
+        preview.setSurfaceProvider(previewView.createSurfaceProvider());
+        imageAnalysis = new ImageAnalysis.Builder()
+                .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
+                .setTargetResolution(ANALYSIS_SIZE)
+                .build();
+        imageAnalysis.setAnalyzer(executor, createAnalyzer(pipeline));
+        ScanMetrics.get().startSession();
+        CameraSelector cameraSelector = new CameraSelector.Builder()
+                .requireLensFacing(CameraSelector.LENS_FACING_BACK)
+                .build();
+        provider.bindToLifecycle((LifecycleOwner) activity, cameraSelector, preview, imageAnalysis);
+        cameraProvider = provider;
+    }
+
+    private DetectionPipeline<List<Barcode>> createPipeline(int maxInFlight) {
+        final BarcodeScanner detector = scanner;
+        final ScanMetrics metrics = ScanMetrics.get();
+        return new DetectionPipeline<>(maxInFlight,
+                new DetectionPipeline.Detector<List<Barcode>>() {
+                    @Override
+                    public void detect(final DetectionPipeline.Slot<List<Barcode>> slot) {
+                        final long detectStart = System.nanoTime();
+                        InputImage inputImage = InputImage.fromByteBuffer(slot.getData(), slot.getWidth(), slot.getHeight(),
+                                slot.getRotationDegrees(), InputImage.IMAGE_FORMAT_NV21);
+                        detector.process(inputImage).addOnCompleteListener(new OnCompleteListener<List<Barcode>>() {
+                            @Override
+                            public void onComplete(@NonNull Task<List<Barcode>> task) {
+                                metrics.recordStage(ScanMetrics.STAGE_DETECT, System.nanoTime() - detectStart);
+                                slot.complete(task.isSuccessful() ? task.getResult() : null);
+                            }
+                        });
+                    }
+                },
+                new DetectionPipeline.Listener<List<Barcode>>() {
+                    @Override
+                    public void onResult(DetectionPipeline.Slot<List<Barcode>> slot, List<Barcode> barCodes) {
+                        metrics.recordStage(ScanMetrics.STAGE_FRAME, System.nanoTime() - slot.getStartNs());
+                        ContinuousScanSession running = session;
+                        if (barCodes == null || running == null || paused) {
+                            return;
+                        }
+                        for (Barcode barcode : barCodes) {
+                            Rect box = barcode.getBoundingBox();
+                            running.offer(barcode.getRawValue(), barcode.getFormat(), barcode.getValueType(), barcode.getRawBytes(),
+                                    box == null ? null : new int[]{box.left, box.top, box.right, box.bottom});
+                        }
+                    }
+                });
+    }
+
+    private ImageAnalysis.Analyzer createAnalyzer(final DetectionPipeline<List<Barcode>> frames) {
+        return new ImageAnalysis.Analyzer() {
+            @SuppressLint("UnsafeExperimentalUsageError")
+            @Override
+            public void analyze(@NonNull ImageProxy image) {
+                try {
+                    if (session == null || paused || image.getImage() == null) {
+                        return;
+                    }
+                    ScanMetrics metrics = ScanMetrics.get();
+                    long frameStart = System.nanoTime();
+                    metrics.recordFrame(image.getImageInfo().getTimestamp());
+                    if (!frames.hasCapacity()) {
+                        metrics.recordBusyFrame();
+                        return;
+                    }
+
+                    int width = image.getWidth();
+                    int height = image.getHeight();
+                    int rotation = image.getImageInfo().getRotationDegrees();
+                    if (!sensorRegion.update(previewWidth, previewHeight, width, height, rotation, detectorSize)
+                            || sensorRegion.width <= 0 || sensorRegion.height <= 0) {
+                        return;
+                    }
+                    ImageProxy.PlaneProxy yPlane = image.getPlanes()[0];
+                    if (!frameScheduler.shouldDetect(yPlane.getBuffer(), yPlane.getRowStride(), sensorRegion.left,
+                            sensorRegion.top, sensorRegion.width, sensorRegion.height, frameStart)) {
+                        metrics.recordSkippedFrame();
+                        return;
+                    }
+
+                    // Only this executor acquires slots, so the capacity checked above is still there.
+                    DetectionPipeline.Slot<List<Barcode>> slot = frames.acquire();
+                    slot.crop(yPlane.getBuffer(), yPlane.getRowStride(), sensorRegion.left, sensorRegion.top,
+                            sensorRegion.width, sensorRegion.height, rotation, frameStart);
+                    metrics.recordStage(ScanMetrics.STAGE_CROP, System.nanoTime() - frameStart);
+                    image.close();
+                    frames.submit(slot);
+                } finally {
+                    // Closing twice is a no-op.
+                    image.close();
+                }
+            }
+        };
+    }
+}
@@ -5,14 +5,14 @@ import android.annotation.SuppressLint;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.pm.PackageManager;
-import android.graphics.Bitmap;
-import android.graphics.Canvas;
+import android.content.res.Configuration;
 import android.graphics.Color;
-import android.graphics.Paint;
 import android.graphics.PixelFormat;
-import android.graphics.PorterDuff;
-import android.graphics.RectF;
+import android.graphics.Point;
+import android.graphics.Rect;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.DisplayMetrics;
 
 import android.util.Size;
@@ -30,12 +30,15 @@ import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
-import androidx.camera.core.AspectRatio;
 import androidx.camera.core.Camera;
 import androidx.camera.core.CameraSelector;
+import androidx.camera.core.FocusMeteringAction;
 import androidx.camera.core.ImageAnalysis;
 import androidx.camera.core.ImageProxy;
+import androidx.camera.core.MeteringPoint;
 import androidx.camera.core.Preview;
+import androidx.camera.core.SurfaceOrientedMeteringPointFactory;
+import androidx.camera.core.ZoomState;
 import androidx.camera.lifecycle.ProcessCameraProvider;
 import androidx.camera.view.PreviewView;
 import androidx.constraintlayout.widget.ConstraintLayout;
@@ -46,8 +49,6 @@ import androidx.lifecycle.LiveData;
 
 import com.google.android.gms.common.api.CommonStatusCodes;
 import com.google.android.gms.tasks.OnCompleteListener;
-import com.google.android.gms.tasks.OnFailureListener;
-import com.google.android.gms.tasks.OnSuccessListener;
 import com.google.android.gms.tasks.Task;
 import com.google.android.material.snackbar.Snackbar;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -56,29 +57,122 @@ import com.google.mlkit.vision.barcode.BarcodeScanner;
 import com.google.mlkit.vision.barcode.BarcodeScannerOptions;
 import com.google.mlkit.vision.barcode.BarcodeScanning;
 import com.google.mlkit.vision.common.InputImage;
-import com.mobisys.cordova.plugins.mlkit.barcode.scanner.utils.BitmapUtils;
-
+import com.google.zxing.Result;
+import com.mobisys.cordova.plugins.mlkit.barcode.scanner.utils.AnalysisResolutionController;
+import com.mobisys.cordova.plugins.mlkit.barcode.scanner.utils.BarcodeOverlay;
+import com.mobisys.cordova.plugins.mlkit.barcode.scanner.utils.DetectionPipeline;
+import com.mobisys.cordova.plugins.mlkit.barcode.scanner.utils.DetectorBox;
+import com.mobisys.cordova.plugins.mlkit.barcode.scanner.utils.DeviceProfile;
+import com.mobisys.cordova.plugins.mlkit.barcode.scanner.utils.ExposureController;
+import com.mobisys.cordova.plugins.mlkit.barcode.scanner.utils.FrameScheduler;
+import com.mobisys.cordova.plugins.mlkit.barcode.scanner.utils.RoiTracker;
+import com.mobisys.cordova.plugins.mlkit.barcode.scanner.utils.SensorRegionMapper;
+import com.mobisys.cordova.plugins.mlkit.barcode.scanner.utils.TileSearch;
+import com.mobisys.cordova.plugins.mlkit.barcode.scanner.utils.ZxingFrameDecoder;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 public class CaptureActivity extends AppCompatActivity implements SurfaceHolder.Callback {
 
     public Integer DetectionTypes;
     public double DetectorSize = .5;
+    public boolean Continuous;
+    private BatchCollector batch;
+    private final Handler timeoutHandler = new Handler(Looper.getMainLooper());
+    private final Runnable finishBatch = new Runnable() {
+        @Override
+        public void run() {
+            Intent data = new Intent();
+            data.putExtra(BarcodeBatch, batch.toJSON().toString());
+            setResult(CommonStatusCodes.SUCCESS, data);
+            finish();
+        }
+    };
 
     public static final String BarcodeFormat = "MLKitBarcodeFormat";
     public static final String BarcodeType = "MLKitBarcodeType";
     public static final String BarcodeValue = "MLKitBarcodeValue";
+    public static final String BarcodeRawBytes = "MLKitBarcodeRawBytes";
+    public static final String BarcodeBoundingBox = "MLKitBarcodeBoundingBox";
+    public static final String BarcodeBatch = "MLKitBarcodeBatch";
+
+    // Detector clients outlive the activity, so repeated scans with the same formats skip model loading.
+    private static final ScannerCache<BarcodeScanner> scanners = new ScannerCache<>(
+            new ScannerCache.Factory<BarcodeScanner>() {
+                @Override
+                public BarcodeScanner create(int formats) {
+                    return BarcodeScanning.getClient(new BarcodeScannerOptions.Builder().setBarcodeFormats(formats).build());
+                }
+            },
+            new ScannerCache.Releaser<BarcodeScanner>() {
+                @Override
+                public void release(BarcodeScanner client) {
+                    client.close();
+                }
+            },
+            5 * 60 * 1000);
 
     private ListenableFuture<ProcessCameraProvider> cameraProviderFuture;
     private ExecutorService executor = Executors.newSingleThreadExecutor();
+    // Detector requests that may run at once, 1 to 3.
+    public int MaxInFlight = DetectionPipeline.DEFAULT_IN_FLIGHT;
+    private DetectionPipeline<List<ScanResult>> pipeline;
+    // Tile edge in sensor pixels of the whole-frame search, 0 to only look at the detector box.
+    public int TileSize;
+    public int TileParallelism = TileSearch.DEFAULT_PARALLELISM;
+    // "mlkit", or "zxing" to decode in-process with ZXing where the ML Kit detector is not usable.
+    public String Decoder = DECODER_MLKIT;
+    public static final String DECODER_MLKIT = "mlkit";
+    public static final String DECODER_ZXING = "zxing";
+    // Created before the analyzer is set, then only used on the analysis executor.
+    private ZxingFrameDecoder zxingDecoder;
+    private TileSearch<ScanResult> tileSearch;
+    // Only touched on the analysis executor.
+    private final DetectorBox analysisBox = new DetectorBox();
+    private final SensorRegionMapper sensorRegion = new SensorRegionMapper();
+    // Fed on the main thread with detected boxes, read on the analysis executor.
+    private final RoiTracker roiTracker = new RoiTracker();
+    // Size of the preview, written on the UI thread and read by the analyzer.
+    private volatile int previewWidth;
+    private volatile int previewHeight;
+    // Geometry of the last analysis frame, written by the analyzer and read on the main thread.
+    private volatile int analysisWidth;
+    private volatile int analysisHeight;
+    private volatile int analysisRotation;
+
+    // Only the back camera is used, so it is the only camera with a profile.
+    private static final String PROFILE_CAMERA = "back";
+    private Future<DeviceProfile> profileFuture;
+
+    // Frames slower than this make the resolution controller step down.
+    private static final long ANALYSIS_LATENCY_BUDGET_NS = 66_000_000L;
+    private ProcessCameraProvider cameraProvider;
+    private CameraSelector cameraSelector;
+    private ImageAnalysis imageAnalysis;
+    private ImageAnalysis.Analyzer analyzer;
+    private AnalysisResolutionController resolutionController;
+    // Only touched on the analysis executor.
+    private FrameScheduler frameScheduler;
+    // Only touched on the analysis executor, except for turning the auto torch off.
+    private ExposureController exposure;
     private PreviewView mCameraView;
     private SurfaceHolder holder;
     private SurfaceView surfaceView;
-    private Canvas canvas;
-    private Paint paint;
+    private BarcodeOverlay overlay;
+    // Corner scratch of the overlay, only touched on the main thread.
+    private final float[] overlayCorners = new float[8];
+    // Sensor frame boxes of the codes of one frame for the ROI tracker, four ints each, grown on
+    // demand and only touched on the main thread.
+    private int[] trackedBoxes = new int[4 * 4];
 
     private static final int RC_HANDLE_CAMERA_PERM = 2;
     private ImageButton _TorchButton;
@@ -99,16 +193,62 @@ public class CaptureActivity extends AppCompatActivity implements SurfaceHolder.
         holder = surfaceView.getHolder();
         holder.setFormat(PixelFormat.TRANSPARENT);
         holder.addCallback(this);
+        overlay = new BarcodeOverlay(holder, Color.WHITE, Color.parseColor("#00E676"));
 
 
+        // Read the device profile off the UI thread while the camera provider starts up.
+        final File profileDir = getFilesDir();
+        profileFuture = executor.submit(new Callable<DeviceProfile>() {
+            @Override
+            public DeviceProfile call() {
+                return DeviceProfile.load(profileDir, DeviceProfile.key(PROFILE_CAMERA));
+            }
+        });
+
         // read parameters from the intent used to launch the activity.
         DetectionTypes = getIntent().getIntExtra("DetectionTypes", 1234);
         DetectorSize = getIntent().getDoubleExtra("DetectorSize", .5);
+        frameScheduler = new FrameScheduler(
+                getIntent().getDoubleExtra("MinDetectionRate", ScanOptions.DEFAULT_MIN_DETECTION_RATE),
+                getIntent().getDoubleExtra("MaxDetectionRate", ScanOptions.DEFAULT_MAX_DETECTION_RATE));
+        MaxInFlight = getIntent().getIntExtra("MaxInFlight", DetectionPipeline.DEFAULT_IN_FLIGHT);
+        TileSize = getIntent().getIntExtra("TileSize", 0);
+        TileParallelism = getIntent().getIntExtra("TileParallelism", TileSearch.DEFAULT_PARALLELISM);
+        exposure = new ExposureController(getIntent().getBooleanExtra("AutoTorch", true));
+        if (DECODER_ZXING.equals(getIntent().getStringExtra("Decoder"))) {
+            Decoder = DECODER_ZXING;
+        }
 
         if (DetectorSize <= 0 || DetectorSize >= 1) { // setting boundary detectorSize must be between 0 to 1.
             DetectorSize = 0.5;
         }
 
+        // In batch mode distinct codes are collected across frames until the target count or timeout.
+        if (getIntent().hasExtra("BatchTargetCount")) {
+            long timeout = getIntent().getLongExtra("BatchTimeout", 0);
+            batch = new BatchCollector(getIntent().getIntExtra("BatchTargetCount", 0), timeout);
+            if (timeout > 0) {
+                timeoutHandler.postDelayed(finishBatch, timeout);
+            }
+        }
+
+        // In continuous mode results are streamed to the plugin and the screen stays open until stopped.
+        ContinuousScanSession session = ContinuousScanSession.getActive();
+        Continuous = getIntent().getBooleanExtra("Continuous", false) && session != null;
+        if (Continuous) {
+            session.setStopHandler(new Runnable() {
+                @Override
+                public void run() {
+                    runOnUiThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            finish();
+                        }
+                    });
+                }
+            });
+        }
+
         int rc = ActivityCompat.checkSelfPermission(this, Manifest.permission.CAMERA);
 
         if (rc == PackageManager.PERMISSION_GRANTED) {
@@ -127,6 +267,8 @@ public class CaptureActivity extends AppCompatActivity implements SurfaceHolder.
             @Override
             public void onClick(View v) {
 
+                // The user decides from now on.
+                exposure.disableAutoTorch();
                 LiveData<Integer> flashState = camera.getCameraInfo().getTorchState();
                 if (flashState.getValue() != null) {
                     boolean state = flashState.getValue() == 1;
@@ -206,7 +348,7 @@ public class CaptureActivity extends AppCompatActivity implements SurfaceHolder.
 
         if (grantResults.length != 0 && grantResults[0] == PackageManager.PERMISSION_GRANTED) {
             startCamera();
-            DrawFocusRect(Color.parseColor("#FFFFFF"));
+            updateOverlayView();
             return;
         }
 
@@ -231,12 +373,12 @@ public class CaptureActivity extends AppCompatActivity implements SurfaceHolder.
 
     @Override
     public void surfaceChanged(SurfaceHolder surfaceHolder, int i, int i1, int i2) {
-        DrawFocusRect(Color.parseColor("#FFFFFF"));
+        updateOverlayView();
     }
 
     @Override
     public void surfaceDestroyed(SurfaceHolder surfaceHolder) {
-
+        overlay.cancel();
     }
 
     @Override
@@ -248,6 +390,35 @@ public class CaptureActivity extends AppCompatActivity implements SurfaceHolder.
     }
 
 
+    @Override
+    public void onBackPressed() {
+        // Closing a batch scan returns what was collected so far.
+        if (batch != null && batch.size() > 0) {
+            timeoutHandler.removeCallbacks(finishBatch);
+            finishBatch.run();
+            return;
+        }
+        super.onBackPressed();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+
+        timeoutHandler.removeCallbacks(finishBatch);
+        saveProfile();
+        if (Continuous) {
+            ContinuousScanSession session = ContinuousScanSession.getActive();
+            if (session != null) {
+                session.closed();
+            }
+        }
+        executor.shutdown();
+        if (tileSearch != null) {
+            tileSearch.shutdown();
+        }
+    }
+
     @Override
     protected void onPause() {
         super.onPause();
@@ -307,133 +478,499 @@ public class CaptureActivity extends AppCompatActivity implements SurfaceHolder.
 
         preview.setSurfaceProvider(mCameraView.createSurfaceProvider());
 
-        ImageAnalysis imageAnalysis =
-                new ImageAnalysis.Builder()
-                        .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
-                        .setTargetAspectRatio(AspectRatio.RATIO_16_9)
-                        .build();
+        this.cameraProvider = cameraProvider;
+        this.cameraSelector = cameraSelector;
+
+        // Start with what earlier sessions learned about this camera, if the profile is read by now.
+        DeviceProfile profile = loadedProfile();
+        if (profile != null) {
+            AnalysisResolutionController.importLearned(profile.levels, profile.levelCostsNs);
+        }
+        resolutionController = new AnalysisResolutionController(detectionType, DetectorSize, ANALYSIS_LATENCY_BUDGET_NS);
+        if (TileSize > 0) {
+            // Small codes anywhere in the frame need every pixel the camera offers.
+            resolutionController.pinLargest();
+        }
+
+        final ScanMetrics metrics = ScanMetrics.get();
+        metrics.startSession();
+
+        final boolean zxing = DECODER_ZXING.equals(Decoder);
+        final BarcodeScanner scanner;
+        if (zxing) {
+            scanner = null;
+            zxingDecoder = new ZxingFrameDecoder(ScanOptions.ofFormats(detectionType).getZxingBarcodeFormats());
+        } else {
+            scanners.evictIdle();
+            scanner = scanners.get(detectionType);
+        }
+
+        // Cropping runs on the analysis executor and detection on ML Kit's threads, so the next frame
+        // is cropped while earlier ones are still being detected. ZXing decodes right away on the
+        // analysis executor instead; its results are still completed on the main thread, like ML Kit's.
+        pipeline = new DetectionPipeline<>(MaxInFlight,
+                new DetectionPipeline.Detector<List<ScanResult>>() {
+                    @Override
+                    public void detect(final DetectionPipeline.Slot<List<ScanResult>> slot) {
+                        final long detectStart = System.nanoTime();
+                        if (zxing) {
+                            final List<ScanResult> codes = decodeZxing(slot.getData(), slot.getWidth(), slot.getHeight(),
+                                    slot.getRotationDegrees());
+                            metrics.recordStage(ScanMetrics.STAGE_DETECT, System.nanoTime() - detectStart);
+                            runOnUiThread(new Runnable() {
+                                @Override
+                                public void run() {
+                                    slot.complete(codes);
+                                }
+                            });
+                            return;
+                        }
+                        InputImage inputImage = InputImage.fromByteBuffer(slot.getData(), slot.getWidth(), slot.getHeight(),
+                                slot.getRotationDegrees(), InputImage.IMAGE_FORMAT_NV21);
+                        scanner.process(inputImage).addOnCompleteListener(new OnCompleteListener<List<Barcode>>() {
+                            @Override
+                            public void onComplete(@NonNull Task<List<Barcode>> task) {
+                                metrics.recordStage(ScanMetrics.STAGE_DETECT, System.nanoTime() - detectStart);
+                                slot.complete(task.isSuccessful() ? toScanResults(task.getResult()) : null);
+                            }
+                        });
+                    }
+                },
+                new DetectionPipeline.Listener<List<ScanResult>>() {
+                    @Override
+                    public void onResult(DetectionPipeline.Slot<List<ScanResult>> slot, List<ScanResult> codes) {
+                        long now = System.nanoTime();
+                        metrics.recordStage(ScanMetrics.STAGE_FRAME, now - slot.getStartNs());
+                        if (codes != null) {
+                            onBarcodes(codes, null);
+                            trackBarcodes(slot, codes);
+                        } else {
+                            roiTracker.onMissed();
+                        }
 
-        BarcodeScanner scanner = BarcodeScanning.getClient(new BarcodeScannerOptions.Builder().setBarcodeFormats(detectionType).build());
+                        // Completion listeners run on the main thread, where rebinding is allowed.
+                        boolean decoded = codes != null && !codes.isEmpty();
+                        if (resolutionController.onFrame(decoded, slot.getProcessingNs()) && !isFinishing()) {
+                            rebindImageAnalysis();
+                        }
+                    }
+                });
 
+        if (TileSize > 0) {
+            tileSearch = new TileSearch<>(TileSize, TileParallelism,
+                    new TileSearch.Detector() {
+                        @Override
+                        public void detect(final TileSearch.Tile tile, final ByteBuffer nv21, final int width, final int height,
+                                           final int rotationDegrees) {
+                            final long detectStart = System.nanoTime();
+                            if (zxing) {
+                                // Tiles are decoded one after the other on the analysis executor; frames arriving
+                                // meanwhile are dropped because the search is busy.
+                                try {
+                                    executor.execute(new Runnable() {
+                                        @Override
+                                        public void run() {
+                                            List<ScanResult> codes = decodeZxing(nv21, width, height, rotationDegrees);
+                                            metrics.recordStage(ScanMetrics.STAGE_DETECT, System.nanoTime() - detectStart);
+                                            tileSearch.onTileDetected(tile, codes);
+                                        }
+                                    });
+                                } catch (RejectedExecutionException e) {
+                                    // The activity is being destroyed.
+                                }
+                                return;
+                            }
+                            scanner.process(InputImage.fromByteBuffer(nv21, width, height, rotationDegrees, InputImage.IMAGE_FORMAT_NV21))
+                                    .addOnCompleteListener(new OnCompleteListener<List<Barcode>>() {
+                                        @Override
+                                        public void onComplete(@NonNull Task<List<Barcode>> task) {
+                                            metrics.recordStage(ScanMetrics.STAGE_DETECT, System.nanoTime() - detectStart);
+                                            tileSearch.onTileDetected(tile, task.isSuccessful() ? toScanResults(task.getResult()) : null);
+                                        }
+                                    });
+                        }
+                    },
+                    new TileSearch.Codes<ScanResult>() {
+                        @Override
+                        public String key(ScanResult code) {
+                            return code.format + ":" + code.value;
+                        }
 
-        imageAnalysis.setAnalyzer(executor, new ImageAnalysis.Analyzer() {
+                        @Override
+                        public int[] box(ScanResult code) {
+                            return code.boundingBox;
+                        }
+                    },
+                    new TileSearch.Listener<ScanResult>() {
+                        @Override
+                        public void onResult(final List<ScanResult> codes, final List<int[]> frameBoxes, long startNs) {
+                            metrics.recordStage(ScanMetrics.STAGE_FRAME, System.nanoTime() - startNs);
+                            // ZXing tiles report on the analysis executor, ML Kit tiles on the main thread.
+                            runOnUiThread(new Runnable() {
+                                @Override
+                                public void run() {
+                                    onBarcodes(codes, frameBoxes);
+                                    overlay.beginFrame(analysisWidth, analysisHeight, analysisRotation);
+                                    for (int[] box : frameBoxes) {
+                                        overlay.addBox(box);
+                                    }
+                                    overlay.commit();
+                                }
+                            });
+                        }
+                    });
+        }
+
+        analyzer = new ImageAnalysis.Analyzer() {
             @SuppressLint("UnsafeExperimentalUsageError")
             @Override
             public void analyze(@NonNull ImageProxy image) {
 
                 if (image == null || image.getImage() == null) {
+                    if (image != null) {
+                        image.close();
+                    }
                     return;
                 }
 
-                Bitmap bmp = BitmapUtils.getBitmap(image);
-
-                int height = bmp.getHeight();
-                int width = bmp.getWidth();
+                final long frameStart = System.nanoTime();
+                metrics.recordFrame(image.getImageInfo().getTimestamp());
+                analysisWidth = image.getWidth();
+                analysisHeight = image.getHeight();
+                analysisRotation = image.getImageInfo().getRotationDegrees();
 
-                int left, right, top, bottom, diameter, boxHeight, boxWidth;
+                if (tileSearch != null) {
+                    searchTiles(image, frameStart);
+                    return;
+                }
 
-                diameter = width;
-                if (height < width) {
-                    diameter = height;
+                // Backpressure: with every detector request in flight, this frame is dropped.
+                if (!pipeline.hasCapacity()) {
+                    metrics.recordBusyFrame();
+                    image.close();
+                    return;
                 }
 
-                int offset = (int) ((1 - DetectorSize) * diameter);
-                diameter -= offset;
+                int height = image.getHeight();
+                int width = image.getWidth();
+
+                int rotation = image.getImageInfo().getRotationDegrees();
+                int left, top, cropWidth, cropHeight;
+
+                // Right after a detection, only look around where the codes were. Otherwise crop in
+                // sensor space what the user sees inside the focus box, and hand the rotation to ML Kit
+                // as metadata. Until the preview has a size, fall back to the centered square of the
+                // frame, which covers the same pixels before and after rotation.
+                if (roiTracker.window(width, height)) {
+                    left = roiTracker.left;
+                    top = roiTracker.top;
+                    cropWidth = roiTracker.width;
+                    cropHeight = roiTracker.height;
+                } else if (sensorRegion.update(previewWidth, previewHeight, width, height, rotation, DetectorSize)
+                        && sensorRegion.width > 0 && sensorRegion.height > 0) {
+                    left = sensorRegion.left;
+                    top = sensorRegion.top;
+                    cropWidth = sensorRegion.width;
+                    cropHeight = sensorRegion.height;
+                } else {
+                    analysisBox.set(width, height, DetectorSize, true);
+                    left = analysisBox.left;
+                    top = analysisBox.top;
+                    cropWidth = analysisBox.size;
+                    cropHeight = analysisBox.size;
+                }
 
+                // Skip blurry or moving frames before paying for the crop and the detector.
+                ImageProxy.PlaneProxy yPlane = image.getPlanes()[0];
+                meterExposure(yPlane, left, top, cropWidth, cropHeight, width, height, frameStart);
+                if (!frameScheduler.shouldDetect(yPlane.getBuffer(), yPlane.getRowStride(), left, top, cropWidth, cropHeight, frameStart)) {
+                    metrics.recordSkippedFrame();
+                    image.close();
+                    return;
+                }
 
-                left = width / 2 - diameter / 2;
-                top = height / 2 - diameter / 2;
-                right = width / 2 + diameter / 2;
-                bottom = height / 2 + diameter / 2;
+                // Only this executor acquires slots, so the capacity checked above is still there.
+                DetectionPipeline.Slot<List<ScanResult>> slot = pipeline.acquire();
+                try {
+                    slot.crop(yPlane.getBuffer(), yPlane.getRowStride(), left, top, cropWidth, cropHeight, rotation, frameStart);
+                } finally {
+                    // The pixels are copied, so the camera can fill this buffer again right away.
+                    image.close();
+                }
+                metrics.recordStage(ScanMetrics.STAGE_CROP, System.nanoTime() - frameStart);
+                pipeline.submit(slot);
+            }
 
-                boxHeight = bottom - top;
-                boxWidth = right - left;
 
+        };
 
-                Bitmap bitmap = Bitmap.createBitmap(bmp, left, top, boxWidth, boxHeight);
-                scanner.process(InputImage.fromBitmap(bitmap, image.getImageInfo().getRotationDegrees())).addOnSuccessListener(new OnSuccessListener<List<Barcode>>() {
-                    @Override
-                    public void onSuccess(List<Barcode> barCodes) {
+        imageAnalysis = createImageAnalysis();
+        camera = cameraProvider.bindToLifecycle((LifecycleOwner) this, cameraSelector, imageAnalysis, preview);
+        if (profile != null && profile.zoomRatio > 0) {
+            camera.getCameraControl().setZoomRatio(profile.zoomRatio);
+        }
+    }
 
-                        //  # Code to test image viewfinder
-                        /*ImageView imageView = (ImageView) findViewById(getResources().getIdentifier("imageView", "id", getPackageName()));
-                        imageView.setImageBitmap(bitmap);*/
+    /**
+     * Returns the device profile if it was read already. Never waits, so a slow disk only costs the
+     * head start, not UI time.
+     */
+    private DeviceProfile loadedProfile() {
+        if (profileFuture == null || !profileFuture.isDone()) {
+            return null;
+        }
+        try {
+            return profileFuture.get();
+        } catch (ExecutionException | InterruptedException e) {
+            return null;
+        }
+    }
 
+    /**
+     * Writes what this session learned on the analysis executor, which runs queued work after shutdown.
+     */
+    private void saveProfile() {
+        if (camera == null) {
+            return;
+        }
+        final DeviceProfile profile = new DeviceProfile();
+        AnalysisResolutionController.exportLearned(profile.levels, profile.levelCostsNs);
+        ZoomState zoom = camera.getCameraInfo().getZoomState().getValue();
+        if (zoom != null) {
+            profile.zoomRatio = zoom.getZoomRatio();
+        }
+        final File profileDir = getFilesDir();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                profile.save(profileDir, DeviceProfile.key(PROFILE_CAMERA));
+            }
+        });
+    }
 
-                        if (barCodes.size() > 0) {
-                            for (Barcode barcode : barCodes) {
-                                //Toast.makeText(CaptureActivity.this, "FOUND: " + barcode.getDisplayValue(), Toast.LENGTH_SHORT).show();
-                                Intent data = new Intent();
-                                data.putExtra(BarcodeFormat, barcode.getFormat());
-                                data.putExtra(BarcodeType, barcode.getValueType());
-                                data.putExtra(BarcodeValue, barcode.getRawValue());
-                                setResult(CommonStatusCodes.SUCCESS, data);
-                                finish();
+    /**
+     * Moves the tracked region to the codes of a frame, mapped from the upright crop back into the
+     * sensor frame, and outlines them on the overlay.
+     */
+    private void trackBarcodes(DetectionPipeline.Slot<List<ScanResult>> slot, List<ScanResult> codes) {
+        overlay.beginFrame(analysisWidth, analysisHeight, analysisRotation);
+        if (codes.isEmpty()) {
+            overlay.commit();
+            roiTracker.onMissed();
+            return;
+        }
+        if (trackedBoxes.length < 4 * codes.size()) {
+            trackedBoxes = new int[4 * codes.size()];
+        }
+        int tracked = 0;
+        for (int c = 0, n = codes.size(); c < n; c++) {
+            ScanResult code = codes.get(c);
+            int offset = 4 * tracked;
+            boolean mapped = SensorRegionMapper.uprightToSensor(code.boundingBox, trackedBoxes, offset,
+                    slot.getLeft(), slot.getTop(), slot.getWidth(), slot.getHeight(), 1, slot.getRotationDegrees());
+            if (mapped) {
+                tracked++;
+            }
+            if (code.cornerPoints != null && code.cornerPoints.length == overlayCorners.length) {
+                for (int i = 0; i < overlayCorners.length; i++) {
+                    overlayCorners[i] = code.cornerPoints[i];
+                }
+                SensorRegionMapper.uprightToSensor(overlayCorners, 0, 4,
+                        slot.getLeft(), slot.getTop(), slot.getWidth(), slot.getHeight(), 1, slot.getRotationDegrees());
+                overlay.addCorners(overlayCorners, 0);
+            } else if (mapped) {
+                overlay.addBox(trackedBoxes, offset);
+            }
+        }
+        overlay.commit();
+        roiTracker.onDetected(trackedBoxes, tracked);
+    }
 
-                            }
-                        }
-                    }
-                }).addOnFailureListener(new OnFailureListener() {
-                    @Override
-                    public void onFailure(@NonNull Exception e) {
+    /**
+     * Decodes one crop with ZXing. Runs on the analysis executor.
+     */
+    private List<ScanResult> decodeZxing(ByteBuffer nv21, int width, int height, int rotationDegrees) {
+        Result result = zxingDecoder.decode(nv21, width, height, rotationDegrees);
+        if (result == null) {
+            return new ArrayList<>(0);
+        }
+        // ZXing does not know the value type, so it stays 0 (unknown).
+        List<ScanResult> codes = new ArrayList<>(1);
+        codes.add(new ScanResult(result.getText(), ScanOptions.toMlKitFormat(result.getBarcodeFormat()), 0,
+                result.getRawBytes(), ZxingFrameDecoder.boundingBox(result)));
+        return codes;
+    }
 
-                    }
-                }).addOnCompleteListener(new OnCompleteListener<List<Barcode>>() {
-                    @Override
-                    public void onComplete(@NonNull Task<List<Barcode>> task) {
-                        image.close();
-                    }
-                });
+    private static List<ScanResult> toScanResults(List<Barcode> barCodes) {
+        List<ScanResult> codes = new ArrayList<>(barCodes.size());
+        for (Barcode barcode : barCodes) {
+            Rect box = barcode.getBoundingBox();
+            Point[] corners = barcode.getCornerPoints();
+            int[] cornerPoints = null;
+            if (corners != null && corners.length == 4) {
+                cornerPoints = new int[8];
+                for (int i = 0; i < 4; i++) {
+                    cornerPoints[2 * i] = corners[i].x;
+                    cornerPoints[2 * i + 1] = corners[i].y;
+                }
             }
+            codes.add(new ScanResult(barcode.getRawValue(), barcode.getFormat(), barcode.getValueType(),
+                    barcode.getRawBytes(), box == null ? null : new int[]{box.left, box.top, box.right, box.bottom},
+                    cornerPoints));
+        }
+        return codes;
+    }
 
+    /**
+     * Searches the whole frame tile by tile. Runs on the analysis executor and closes the image.
+     */
+    @SuppressLint("UnsafeExperimentalUsageError")
+    private void searchTiles(ImageProxy image, long frameStart) {
+        ImageProxy.PlaneProxy yPlane = image.getPlanes()[0];
+        int width = image.getWidth();
+        int height = image.getHeight();
+        try {
+            meterExposure(yPlane, 0, 0, width, height, width, height, frameStart);
+            if (tileSearch.isBusy()) {
+                ScanMetrics.get().recordBusyFrame();
+                return;
+            }
+            if (!frameScheduler.shouldDetect(yPlane.getBuffer(), yPlane.getRowStride(), 0, 0, width, height, frameStart)) {
+                ScanMetrics.get().recordSkippedFrame();
+                return;
+            }
+            if (tileSearch.search(yPlane.getBuffer(), yPlane.getRowStride(), width, height,
+                    image.getImageInfo().getRotationDegrees(), frameStart)) {
+                ScanMetrics.get().recordStage(ScanMetrics.STAGE_CROP, System.nanoTime() - frameStart);
+            }
+        } finally {
+            image.close();
+        }
+    }
 
+    /**
+     * Scores the exposure of the region the detector looks at. Runs on the analysis executor; metering
+     * and torch changes it asks for are applied on the UI thread.
+     */
+    private void meterExposure(ImageProxy.PlaneProxy yPlane, final int left, final int top, final int cropWidth,
+                               final int cropHeight, final int width, final int height, long frameStart) {
+        final int actions = exposure.update(yPlane.getBuffer(), yPlane.getRowStride(), left, top, cropWidth, cropHeight, frameStart);
+        if (actions == 0) {
+            return;
+        }
+        runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                applyExposure(actions, left, top, cropWidth, cropHeight, width, height);
+            }
         });
-
-        camera = cameraProvider.bindToLifecycle((LifecycleOwner) this, cameraSelector, imageAnalysis, preview);
     }
 
+    private void applyExposure(int actions, int left, int top, int cropWidth, int cropHeight, int width, int height) {
+        if (camera == null || imageAnalysis == null) {
+            return;
+        }
+        if ((actions & (ExposureController.TORCH_ON | ExposureController.TORCH_OFF)) != 0
+                && camera.getCameraInfo().hasFlashUnit()) {
+            boolean on = (actions & ExposureController.TORCH_ON) != 0;
+            _TorchButton.setBackgroundResource(getResources().getIdentifier(on ? "torch_active" : "torch_inactive", "drawable", getPackageName()));
+            camera.getCameraControl().enableTorch(on);
+        }
+        if ((actions & ExposureController.METER) != 0) {
+            // Analysis frames are in sensor orientation, the same space the factory maps from.
+            MeteringPoint point = new SurfaceOrientedMeteringPointFactory(width, height, imageAnalysis).createPoint(
+                    left + cropWidth / 2f, top + cropHeight / 2f,
+                    Math.max(cropWidth / (float) width, cropHeight / (float) height));
+            // Only exposure: a focus lock would stop continuous autofocus between codes.
+            camera.getCameraControl().startFocusAndMetering(
+                    new FocusMeteringAction.Builder(point, FocusMeteringAction.FLAG_AE).disableAutoCancel().build());
+        }
+    }
 
     /**
-     * For drawing the rectangular box
+     * Handles the barcodes of one frame, in the order the frames were captured. {@code frameBoxes}
+     * replaces the detector's boxes when the codes come from a tile search, null otherwise.
      */
-    private void DrawFocusRect(int color) {
-
-        if (mCameraView != null) {
-            int height = mCameraView.getHeight();
-            int width = mCameraView.getWidth();
-
-            int left, right, top, bottom, diameter;
-
-            diameter = width;
-            if (height < width) {
-                diameter = height;
+    private void onBarcodes(List<ScanResult> codes, List<int[]> frameBoxes) {
+        if (Continuous) {
+            ContinuousScanSession session = ContinuousScanSession.getActive();
+            if (session != null) {
+                for (int i = 0; i < codes.size(); i++) {
+                    ScanResult code = codes.get(i);
+                    session.offer(code.value, code.format, code.type, code.rawBytes,
+                            frameBoxes != null ? frameBoxes.get(i) : code.boundingBox);
+                }
             }
+            return;
+        }
 
-            int offset = (int) ((1 - DetectorSize) * diameter);
-            diameter -= offset;
-
-            canvas = holder.lockCanvas();
-            canvas.drawColor(0, PorterDuff.Mode.CLEAR);
-            //border's properties
-            paint = new Paint();
-            paint.setStyle(Paint.Style.STROKE);
-            paint.setColor(color);
-            paint.setStrokeWidth(5);
-
-            left = width / 2 - diameter / 2;
-            top = height / 2 - diameter / 2;
-            right = width / 2 + diameter / 2;
-            bottom = height / 2 + diameter / 2;
-
-            //Changing the value of x in diameter/x will change the size of the box ; inversely proportionate to x
-            if (DetectorSize <= 0.3) {
-                canvas.drawRect(new RectF(left, top, right, bottom), paint);
-            } else {
-                canvas.drawRoundRect(new RectF(left, top, right, bottom), 100, 100, paint);
+        if (batch != null) {
+            for (int i = 0; i < codes.size(); i++) {
+                ScanResult code = codes.get(i);
+                int[] edges = frameBoxes != null ? frameBoxes.get(i) : code.boundingBox;
+                batch.add(code.value, code.format, code.type, code.rawBytes, edges);
+            }
+            if (batch.isComplete() && !isFinishing()) {
+                timeoutHandler.removeCallbacks(finishBatch);
+                finishBatch.run();
             }
+            return;
+        }
 
-            holder.unlockCanvasAndPost(canvas);
+        if (codes.size() > 0 && !isFinishing()) {
+            ScanResult code = codes.get(0);
+            Intent data = new Intent();
+            data.putExtra(BarcodeFormat, code.format);
+            data.putExtra(BarcodeType, code.type);
+            data.putExtra(BarcodeValue, code.value);
+            if (code.rawBytes != null) {
+                data.putExtra(BarcodeRawBytes, code.rawBytes);
+            }
+            int[] box = frameBoxes != null ? frameBoxes.get(0) : code.boundingBox;
+            if (box != null) {
+                data.putExtra(BarcodeBoundingBox, box);
+            }
+            setResult(CommonStatusCodes.SUCCESS, data);
+            finish();
         }
+    }
+
+    /**
+     * Replaces the analysis use case after the resolution controller picked another resolution.
+     */
+    private void rebindImageAnalysis() {
+        // Tracked boxes are in the coordinates of the old frame size.
+        roiTracker.reset();
+        cameraProvider.unbind(imageAnalysis);
+        imageAnalysis = createImageAnalysis();
+        camera = cameraProvider.bindToLifecycle((LifecycleOwner) this, cameraSelector, imageAnalysis);
+    }
+
+    private ImageAnalysis createImageAnalysis() {
+        // Target resolutions are given in the orientation of the display.
+        boolean portrait = getResources().getConfiguration().orientation == Configuration.ORIENTATION_PORTRAIT;
+        Size targetSize = portrait
+                ? new Size(resolutionController.getHeight(), resolutionController.getWidth())
+                : new Size(resolutionController.getWidth(), resolutionController.getHeight());
 
+        ImageAnalysis analysis =
+                new ImageAnalysis.Builder()
+                        .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
+                        .setTargetResolution(targetSize)
+                        .build();
+        analysis.setAnalyzer(executor, analyzer);
+        return analysis;
+    }
+
+
+    /**
+     * Hands the preview size to the analyzer crop and the overlay, which redraws the focus box.
+     */
+    private void updateOverlayView() {
+        if (mCameraView != null) {
+            previewWidth = mCameraView.getWidth();
+            previewHeight = mCameraView.getHeight();
+            overlay.setView(previewWidth, previewHeight, DetectorSize);
+        }
     }
 }
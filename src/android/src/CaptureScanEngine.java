@@ -0,0 +1,159 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner;
+
+import android.content.Intent;
+import android.util.Base64;
+
+import org.apache.cordova.CordovaPlugin;
+import org.json.JSONArray;
+import org.json.JSONException;
+
+/**
+ * The plugin's own CameraX screen, with in-process detection, region of interest and multi-code
+ * frames.
+ *
+ * <p>The screen decodes with ML Kit, or with an in-process ZXing reader on the same crops. The ML
+ * Kit variant needs Play services; the ZXing one runs anywhere, so devices without Play services
+ * keep the CameraX pipeline instead of falling back to the ZXing activity. The activity is not
+ * declared in plugin.xml by default, so it is only referenced by name and the engine is available
+ * only when an app declares it. Single and batch scans return their results through the activity
+ * result. Continuous scans stream straight into the running {@link ContinuousScanSession}, which
+ * reports to the plugin without going through the {@link Listener}.
+ */
+public class CaptureScanEngine implements ScanEngine {
+
+    static final int REQ_CAPTURE = 1002;
+
+    private static final String CAPTURE_ACTIVITY =
+            "com.mobisys.cordova.plugins.mlkit.barcode.scanner.CaptureActivity";
+    // Result extras of CaptureActivity.
+    private static final String EXTRA_BATCH = "MLKitBarcodeBatch";
+    private static final String EXTRA_VALUE = "MLKitBarcodeValue";
+    private static final String EXTRA_FORMAT = "MLKitBarcodeFormat";
+    private static final String EXTRA_TYPE = "MLKitBarcodeType";
+    private static final String EXTRA_RAW_BYTES = "MLKitBarcodeRawBytes";
+    private static final String EXTRA_BOUNDING_BOX = "MLKitBarcodeBoundingBox";
+
+    // Decoder extra of CaptureActivity.
+    static final String DECODER_MLKIT = "mlkit";
+    static final String DECODER_ZXING = "zxing";
+
+    private final CordovaPlugin plugin;
+    private final String decoder;
+    private Listener listener;
+
+    /** @param decoder {@link #DECODER_MLKIT} or {@link #DECODER_ZXING} */
+    public CaptureScanEngine(CordovaPlugin plugin, String decoder) {
+        this.plugin = plugin;
+        this.decoder = decoder;
+    }
+
+    @Override
+    public String getName() {
+        return DECODER_ZXING.equals(decoder) ? "camerax-zxing" : "camerax";
+    }
+
+    @Override
+    public int getCapabilities() {
+        return CAP_CONTINUOUS | CAP_BATCH | CAP_ROI;
+    }
+
+    @Override
+    public int getLatencyClass() {
+        // No activity round trip per code either way, but ZXing decodes slower than ML Kit.
+        return DECODER_ZXING.equals(decoder) ? LATENCY_MEDIUM : LATENCY_FAST;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        Intent intent = new Intent().setClassName(plugin.cordova.getActivity(), CAPTURE_ACTIVITY);
+        if (intent.resolveActivity(plugin.cordova.getActivity().getPackageManager()) == null) {
+            return false;
+        }
+        return DECODER_ZXING.equals(decoder) || GmsScanEngine.isPlayServicesAvailable(plugin.cordova.getActivity());
+    }
+
+    @Override
+    public boolean isWarm(int formats) {
+        // Detector clients are cached inside the activity, which the plugin cannot see.
+        return false;
+    }
+
+    @Override
+    public void start(ScanOptions options, int mode, Listener listener) {
+        try {
+            Intent intent = new Intent().setClassName(plugin.cordova.getActivity(), CAPTURE_ACTIVITY);
+            intent.putExtra("DetectionTypes", options.getFormats());
+            intent.putExtra("DetectorSize", options.getDetectorSize());
+            intent.putExtra("MinDetectionRate", options.getMinDetectionRate());
+            intent.putExtra("MaxDetectionRate", options.getMaxDetectionRate());
+            intent.putExtra("MaxInFlight", options.getMaxInFlight());
+            intent.putExtra("TileSize", options.getTileSize());
+            intent.putExtra("TileParallelism", options.getTileParallelism());
+            intent.putExtra("Decoder", decoder);
+            intent.putExtra("AutoTorch", options.isAutoTorch());
+            if (mode == MODE_CONTINUOUS) {
+                this.listener = null;
+                intent.putExtra("Continuous", true);
+                plugin.cordova.getActivity().startActivity(intent);
+                return;
+            }
+            if (mode == MODE_BATCH) {
+                intent.putExtra("BatchTargetCount", options.getBatchTargetCount());
+                intent.putExtra("BatchTimeout", options.getBatchTimeoutMs());
+            }
+            this.listener = listener;
+            plugin.cordova.startActivityForResult(plugin, intent, REQ_CAPTURE);
+        } catch (Exception e) {
+            listener.onError("CAPTURE_START_FAILED", e);
+        }
+    }
+
+    @Override
+    public boolean onActivityResult(int requestCode, int resultCode, Intent data) {
+        if (requestCode != REQ_CAPTURE || listener == null) {
+            return false;
+        }
+        Listener current = listener;
+        listener = null;
+        // CaptureActivity reports with CommonStatusCodes.SUCCESS, which equals RESULT_CANCELED, so
+        // only the extras tell a result from the back button.
+        if (data == null) {
+            current.onFinished();
+            return true;
+        }
+        String codes = data.getStringExtra(EXTRA_BATCH);
+        if (codes != null) {
+            try {
+                // BatchCollector entries: [value, format, type, base64 raw bytes, box]
+                JSONArray entries = new JSONArray(codes);
+                for (int i = 0; i < entries.length(); i++) {
+                    JSONArray code = entries.getJSONArray(i);
+                    JSONArray box = code.optJSONArray(4);
+                    int[] edges = box == null || box.length() != 4 ? null
+                            : new int[]{box.getInt(0), box.getInt(1), box.getInt(2), box.getInt(3)};
+                    String raw = code.optString(3);
+                    current.onResult(new ScanResult(code.optString(0), code.optInt(1), code.optInt(2),
+                            raw.isEmpty() ? null : Base64.decode(raw, Base64.NO_WRAP), edges));
+                }
+            } catch (JSONException e) {
+                current.onError("PARSE_SUCCESS", e);
+                return true;
+            }
+            current.onFinished();
+            return true;
+        }
+        if (data.hasExtra(EXTRA_VALUE)) {
+            current.onResult(new ScanResult(data.getStringExtra(EXTRA_VALUE),
+                    data.getIntExtra(EXTRA_FORMAT, 0), data.getIntExtra(EXTRA_TYPE, 0),
+                    data.getByteArrayExtra(EXTRA_RAW_BYTES), data.getIntArrayExtra(EXTRA_BOUNDING_BOX)));
+            return true;
+        }
+        current.onFinished();
+        return true;
+    }
+
+    @Override
+    public void release() {
+        listener = null;
+    }
+}
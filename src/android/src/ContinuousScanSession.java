@@ -0,0 +1,118 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner;
+
+/**
+ * State of a running continuous scan, shared between the plugin and the camera screen that feeds it.
+ *
+ * <p>Only one session can be active at a time. The camera screen reports every decoded barcode
+ * through {@link #offer}; a code is suppressed for as long as it keeps being seen within the
+ * duplicate window, so a label held in front of the camera is reported once. Sightings are tracked
+ * in the plugin's {@link ResultHistory}, so a code from the previous session is suppressed as well.
+ */
+public class ContinuousScanSession {
+
+    public interface Listener {
+        /** {@code rawBytes} and {@code boundingBox} are null when the camera screen does not provide them. */
+        void onResult(String value, int format, int type, byte[] rawBytes, int[] boundingBox, ResultHistory.Sighting sighting);
+
+        /** Called once when the camera screen goes away without {@link #stop} being called. */
+        void onClosed();
+    }
+
+    private static ContinuousScanSession active;
+
+    private final long duplicateWindowMs;
+    private final ResultHistory history;
+    private final Listener listener;
+    private Runnable stopHandler;
+    private boolean finished;
+
+    private ContinuousScanSession(long duplicateWindowMs, ResultHistory history, Listener listener) {
+        this.duplicateWindowMs = Math.max(0, duplicateWindowMs);
+        this.history = history;
+        this.listener = listener;
+    }
+
+    /** Starts a new session, stopping the previous one if there is any. */
+    public static synchronized ContinuousScanSession start(long duplicateWindowMs, ResultHistory history, Listener listener) {
+        if (active != null) {
+            active.stop();
+        }
+        active = new ContinuousScanSession(duplicateWindowMs, history, listener);
+        return active;
+    }
+
+    /** Returns the running session, or null when scanning is one-shot. */
+    public static synchronized ContinuousScanSession getActive() {
+        return active;
+    }
+
+    /**
+     * Reports a decoded barcode. Returns true if it was passed on to the listener, false if it was
+     * suppressed as a duplicate or the session is already over.
+     */
+    public boolean offer(String value, int format, int type) {
+        return offer(value, format, type, null, null);
+    }
+
+    /** Same as {@link #offer(String, int, int)}, with the raw bytes and box of the code if known. */
+    public boolean offer(String value, int format, int type, byte[] rawBytes, int[] boundingBox) {
+        return offer(value, format, type, rawBytes, boundingBox, System.currentTimeMillis());
+    }
+
+    synchronized boolean offer(String value, int format, int type, byte[] rawBytes, int[] boundingBox, long now) {
+        if (finished) {
+            return false;
+        }
+        ResultHistory.Sighting sighting = history.record(value, format, now);
+        if (sighting.seenBefore && now - sighting.lastSeenAt < duplicateWindowMs) {
+            return false;
+        }
+        listener.onResult(value == null ? "" : value, format, type, rawBytes, boundingBox, sighting);
+        return true;
+    }
+
+    /** Registers how the camera screen is closed when the session is stopped from JavaScript. */
+    public synchronized void setStopHandler(Runnable stopHandler) {
+        this.stopHandler = stopHandler;
+    }
+
+    /** Ends the session on request of the plugin and closes the camera screen, if one is attached. */
+    public void stop() {
+        Runnable handler;
+        synchronized (this) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            handler = stopHandler;
+            stopHandler = null;
+        }
+        clearActive(this);
+        if (handler != null) {
+            handler.run();
+        }
+    }
+
+    /** Called by the camera screen when it is closed, e.g. with the back button. */
+    public void closed() {
+        synchronized (this) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            stopHandler = null;
+        }
+        clearActive(this);
+        listener.onClosed();
+    }
+
+    public synchronized boolean isFinished() {
+        return finished;
+    }
+
+    private static synchronized void clearActive(ContinuousScanSession session) {
+        if (active == session) {
+            active = null;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner;
+
+/**
+ * A camera preview attached behind the Cordova WebView of the running activity, so the app's own
+ * HTML draws the scanner UI and no activity is started per scan.
+ *
+ * <p>The CameraX implementation needs the same dependencies as {@code CaptureActivity}, which
+ * plugin.xml does not add, so the plugin only loads it by name and reports an error when the app
+ * does not include it. Codes go to the {@link ContinuousScanSession} given to {@link #start}, which
+ * suppresses duplicates and streams them to JavaScript. All methods are called on the main thread.
+ */
+public interface EmbeddedPreview {
+
+    /** Implementation loaded by name, with a public {@code (Activity, View webView)} constructor. */
+    String IMPLEMENTATION = "com.mobisys.cordova.plugins.mlkit.barcode.scanner.CameraXEmbeddedPreview";
+
+    interface ErrorListener {
+        /** The preview could not be started or failed while running; it is already stopped. */
+        void onError(String code, Exception e);
+    }
+
+    /** Binds the camera and starts feeding {@code session}. A running preview is restarted. */
+    void start(ScanOptions options, ContinuousScanSession session, ErrorListener errors);
+
+    /** Stops detection; the camera stays bound and the preview keeps running. */
+    void pause();
+
+    void resume();
+
+    /** Unbinds the camera and removes the preview. Does nothing if it is not running. */
+    void stop();
+}
@@ -0,0 +1,143 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Rect;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.GoogleApiAvailability;
+import com.google.android.gms.common.moduleinstall.ModuleInstall;
+import com.google.android.gms.common.moduleinstall.ModuleInstallRequest;
+import com.google.mlkit.vision.barcode.common.Barcode;
+import com.google.mlkit.vision.codescanner.GmsBarcodeScanner;
+import com.google.mlkit.vision.codescanner.GmsBarcodeScannerOptions;
+import com.google.mlkit.vision.codescanner.GmsBarcodeScanning;
+
+import java.util.Arrays;
+
+/**
+ * Google's code scanner, running in Google Play services. No native libraries end up in the APK.
+ *
+ * <p>Scanner clients are cached per format mask and released after the idle timeout.
+ */
+public class GmsScanEngine implements ScanEngine {
+
+    private static final String TAG = "GmsScanEngine";
+
+    private final Activity activity;
+    private final ScannerCache<GmsBarcodeScanner> scanners;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable evictIdleScanners;
+
+    public GmsScanEngine(Activity activity, long idleTimeoutMs) {
+        this.activity = activity;
+        this.scanners = new ScannerCache<>(
+                formats -> GmsBarcodeScanning.getClient(activity, buildOptions(formats)),
+                null,
+                idleTimeoutMs);
+        this.evictIdleScanners = scanners::evictIdle;
+    }
+
+    @Override
+    public String getName() {
+        return "gms";
+    }
+
+    @Override
+    public int getCapabilities() {
+        return 0;
+    }
+
+    @Override
+    public int getLatencyClass() {
+        return LATENCY_MEDIUM;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return isPlayServicesAvailable(activity);
+    }
+
+    static boolean isPlayServicesAvailable(Context context) {
+        return GoogleApiAvailability.getInstance().isGooglePlayServicesAvailable(context)
+                == ConnectionResult.SUCCESS;
+    }
+
+    @Override
+    public boolean isWarm(int formats) {
+        return scanners.isWarm(formats);
+    }
+
+    @Override
+    public void start(ScanOptions options, int mode, Listener listener) {
+        GmsBarcodeScanner scanner;
+        try {
+            scanner = scanners.get(options.getFormats());
+        } catch (Exception e) {
+            listener.onError("GMS_START_FAILED", e);
+            return;
+        }
+        scheduleIdleEviction();
+        scanner.startScan().addOnSuccessListener(barcode -> {
+            Rect box = barcode.getBoundingBox();
+            ScanResult result = new ScanResult(barcode.getRawValue(), barcode.getFormat(), barcode.getValueType(),
+                    barcode.getRawBytes(), box == null ? null : new int[]{box.left, box.top, box.right, box.bottom});
+            // One code per launch, so continuous and batch scans relaunch the scanner per code
+            if (listener.onResult(result)) start(options, mode, listener);
+        }).addOnFailureListener(e -> {
+            // Old or outdated Play services close the UI right away; let the caller fall back
+            listener.onError("GMS_SCAN_FAILED", e);
+        }).addOnCanceledListener(listener::onFinished);
+    }
+
+    /**
+     * Creates the scanner client for the format mask ahead of time and makes sure the code scanner
+     * module is installed, so the next scan does not wait for either.
+     */
+    public void prewarm(int formats) {
+        if (!isAvailable()) return;
+        try {
+            GmsBarcodeScanner scanner = scanners.get(formats);
+            ModuleInstall.getClient(activity)
+                    .installModules(ModuleInstallRequest.newBuilder().addApi(scanner).build())
+                    .addOnFailureListener(e -> Log.w(TAG, "prewarm: module install failed", e));
+            scheduleIdleEviction();
+        } catch (Exception e) {
+            Log.w(TAG, "prewarm failed", e);
+        }
+    }
+
+    @Override
+    public boolean onActivityResult(int requestCode, int resultCode, Intent data) {
+        return false;
+    }
+
+    @Override
+    public void release() {
+        mainHandler.removeCallbacks(evictIdleScanners);
+        scanners.clear();
+    }
+
+    private void scheduleIdleEviction() {
+        mainHandler.removeCallbacks(evictIdleScanners);
+        mainHandler.postDelayed(evictIdleScanners, scanners.getIdleTimeoutMs());
+    }
+
+    private static GmsBarcodeScannerOptions buildOptions(int formats) {
+        ScanOptions scanOptions = ScanOptions.ofFormats(formats);
+        GmsBarcodeScannerOptions.Builder builder = new GmsBarcodeScannerOptions.Builder();
+        if (scanOptions.isAllFormats()) {
+            builder.setBarcodeFormats(Barcode.FORMAT_ALL_FORMATS);
+        } else {
+            int[] selected = scanOptions.getMlKitFormats();
+            builder.setBarcodeFormats(selected[0], Arrays.copyOfRange(selected, 1, selected.length));
+        }
+        return builder
+                .enableAutoZoom()
+                .build();
+    }
+}
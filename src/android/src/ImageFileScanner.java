@@ -0,0 +1,83 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner;
+
+import org.json.JSONArray;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decodes barcodes from a list of image files on a bounded pool of worker threads.
+ *
+ * <p>Every image is reported through the listener as soon as it is decoded, in completion order,
+ * together with its index in the request. At most one image per worker is decoded at a time, and
+ * the default worker count is bounded by the heap, so memory stays bounded no matter how many files
+ * a request names. The decoding itself is done by a
+ * {@link Decoder}, which keeps this class free of Android types.
+ */
+public class ImageFileScanner {
+
+    public static final int MAX_WORKERS = 4;
+
+    /** Decodes the barcodes of one image into an array of positional codes, see {@link BatchCollector}. */
+    public interface Decoder {
+        JSONArray decode(String uri) throws Exception;
+    }
+
+    public interface Listener {
+        void onImage(int index, String uri, JSONArray codes);
+
+        void onImageFailed(int index, String uri, Exception e);
+
+        /** Called once after every image of the request was reported. */
+        void onFinished(int scanned, int failed);
+    }
+
+    private final ExecutorService workers;
+
+    public ImageFileScanner(int workerCount) {
+        this.workers = Executors.newFixedThreadPool(Math.max(1, Math.min(MAX_WORKERS, workerCount)));
+    }
+
+    /**
+     * Worker count for this device: one core is left to the UI, and the images decoded at once, of
+     * up to {@code bytesPerImage} each, must fit in half of the heap.
+     */
+    public static int defaultWorkerCount(long bytesPerImage) {
+        Runtime runtime = Runtime.getRuntime();
+        long fitting = runtime.maxMemory() / 2 / Math.max(1, bytesPerImage);
+        return (int) Math.max(1, Math.min(Math.min(MAX_WORKERS, runtime.availableProcessors() - 1), fitting));
+    }
+
+    /** Queues every image of the request. Returns immediately; results arrive on worker threads. */
+    public void scan(List<String> uris, Decoder decoder, Listener listener) {
+        if (uris.isEmpty()) {
+            listener.onFinished(0, 0);
+            return;
+        }
+        AtomicInteger remaining = new AtomicInteger(uris.size());
+        AtomicInteger failed = new AtomicInteger();
+        for (int i = 0; i < uris.size(); i++) {
+            final int index = i;
+            final String uri = uris.get(i);
+            workers.execute(() -> {
+                try {
+                    listener.onImage(index, uri, decoder.decode(uri));
+                } catch (Exception | OutOfMemoryError e) {
+                    failed.incrementAndGet();
+                    listener.onImageFailed(index, uri, e instanceof Exception ? (Exception) e : new Exception(e));
+                } finally {
+                    if (remaining.decrementAndGet() == 0) {
+                        listener.onFinished(uris.size() - failed.get(), failed.get());
+                    }
+                }
+            });
+        }
+    }
+
+    /** Stops the workers; images still queued are dropped. */
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+}
@@ -1,23 +1,15 @@
 package com.mobisys.cordova.plugins.mlkit.barcode.scanner;
 
 import android.Manifest;
+import android.app.Activity;
 import android.content.Intent;
 import android.content.pm.PackageManager;
+import android.os.SystemClock;
 import android.util.Log;
+import android.view.View;
 
 import androidx.core.content.ContextCompat;
 
-import com.google.android.gms.common.ConnectionResult;
-import com.google.android.gms.common.GoogleApiAvailability;
-import com.google.android.gms.common.api.ApiException;
-import com.google.android.gms.tasks.Task;
-import com.google.mlkit.vision.barcode.common.Barcode;
-import com.google.mlkit.vision.codescanner.GmsBarcodeScanner;
-import com.google.mlkit.vision.codescanner.GmsBarcodeScannerOptions;
-import com.google.mlkit.vision.codescanner.GmsBarcodeScanning;
-import com.google.zxing.integration.android.IntentIntegrator;
-import com.google.zxing.integration.android.IntentResult;
-
 import org.apache.cordova.CallbackContext;
 import org.apache.cordova.CordovaInterface;
 import org.apache.cordova.CordovaPlugin;
@@ -26,138 +18,509 @@ import org.apache.cordova.PluginResult;
 import org.json.JSONArray;
 import org.json.JSONException;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 public class MLKitBarcodeScanner extends CordovaPlugin {
 
     private static final String TAG = "MLKitBarcodeScanner";
     private static final int REQ_CAMERA = 1001;
 
+    private static final String PREF_PREWARM = "MLKitBarcodeScannerPrewarm";
+    private static final String PREF_PREWARM_FORMATS = "MLKitBarcodeScannerPrewarmFormats";
+    private static final String PREF_IDLE_TIMEOUT = "MLKitBarcodeScannerIdleTimeout";
+    private static final long DEFAULT_IDLE_TIMEOUT_MS = 5 * 60 * 1000;
+    private static final String PREF_HISTORY_SIZE = "MLKitBarcodeScannerHistorySize";
+    private static final String PREF_HISTORY_WINDOW = "MLKitBarcodeScannerHistoryWindow";
+
+    // The request and session state below is only touched on the UI thread, where the engines, the
+    // camera screen and the embedded preview report as well.
     private CallbackContext callback;
+    private ScanOptions options;
+    private ContinuousScanSession session;
+    // Coalesces the results of the running continuous scan, null when every result is sent on its own.
+    private ResultDispatcher dispatcher;
+    private BatchCollector batch;
+
+    private GmsScanEngine gmsEngine;
+    private ZxingScanEngine zxingEngine;
+    private CaptureScanEngine captureEngine;
+    private CaptureScanEngine captureZxingEngine;
+    private ScanEngineSelector engines;
+    private ScanEngine engine;
+    private EngineListener engineListener;
+    // Engines that failed during the current request, so the next one is tried.
+    private final Set<String> failedEngines = new HashSet<>();
+    // Camera preview behind the WebView, loaded on first use.
+    private EmbeddedPreview embeddedPreview;
+    private ContinuousScanSession embeddedSession;
+    // Whether the current continuous scan runs in the embedded preview instead of an engine.
+    private boolean embeddedRequest;
+
+    private final ScanMetrics metrics = ScanMetrics.get();
+    private ResultHistory history;
+    private ImageFileScanner imageScanner;
+    private long scanStartedAt;
+    private boolean scanWarm;
+    private boolean firstResultPending;
 
     @Override
     public void initialize(CordovaInterface cordova, CordovaWebView webView) {
         super.initialize(cordova, webView);
+
+        long idleTimeout = preferences.getInteger(PREF_IDLE_TIMEOUT, (int) DEFAULT_IDLE_TIMEOUT_MS);
+        gmsEngine = new GmsScanEngine(cordova.getActivity(), idleTimeout);
+        zxingEngine = new ZxingScanEngine(this);
+        captureEngine = new CaptureScanEngine(this, CaptureScanEngine.DECODER_MLKIT);
+        captureZxingEngine = new CaptureScanEngine(this, CaptureScanEngine.DECODER_ZXING);
+        // Listed fastest first, which decides ties before any latency was measured
+        engines = new ScanEngineSelector(Arrays.asList(captureEngine, gmsEngine, captureZxingEngine, zxingEngine));
+
+        history = new ResultHistory(
+                preferences.getInteger(PREF_HISTORY_SIZE, ResultHistory.DEFAULT_CAPACITY),
+                preferences.getInteger(PREF_HISTORY_WINDOW, (int) ResultHistory.DEFAULT_WINDOW_MS));
+
+        if (preferences.getBoolean(PREF_PREWARM, false)) {
+            int formats = preferences.getInteger(PREF_PREWARM_FORMATS, ScanOptions.ALL_FORMATS);
+            cordova.getActivity().runOnUiThread(() -> gmsEngine.prewarm(formats));
+        }
     }
 
     @Override
     public boolean execute(String action, org.json.JSONArray args, CallbackContext cb) throws JSONException {
-        if (!"startScan".equals(action)) return false;
+        switch (action) {
+            case "startScan":
+            case "startBatchScan":
+            case "startContinuousScan":
+            case "startEmbedded":
+                ScanOptions requestOptions = ScanOptions.fromArgs(args);
+                cordova.getActivity().runOnUiThread(() -> startScan(action, requestOptions, cb));
+                return true;
+            case "pauseEmbedded":
+            case "resumeEmbedded":
+                boolean pause = action.equals("pauseEmbedded");
+                cordova.getActivity().runOnUiThread(() -> {
+                    if (embeddedSession == null) {
+                        cb.error("NOT_SCANNING");
+                        return;
+                    }
+                    if (pause) {
+                        embeddedPreview.pause();
+                    } else {
+                        embeddedPreview.resume();
+                    }
+                    cb.success();
+                });
+                return true;
+            case "prewarm":
+                int formats = ScanOptions.ofFormats(args.optInt(0, 0)).getFormats();
+                cordova.getActivity().runOnUiThread(() -> {
+                    gmsEngine.prewarm(formats);
+                    cb.success();
+                });
+                return true;
+            case "scanImages":
+                scanImages(args.optJSONArray(0), ScanOptions.ofFormats(args.optInt(1, 0)), cb);
+                return true;
+            case "getScanMetrics":
+                cb.success(metrics.toJSON()
+                        .put("resultHistory", history.toJSON())
+                        .put("engines", engines.toJSON()));
+                return true;
+            case "clearResultHistory":
+                history.clear();
+                cb.success();
+                return true;
+            case "resetScanMetrics":
+                metrics.reset();
+                cb.success();
+                return true;
+            case "ackResults":
+                // The page handled that many coalesced messages. Sent once per JavaScript turn
+                // without callbacks, so nothing is sent back.
+                int handled = args.optInt(0, 0);
+                cordova.getActivity().runOnUiThread(() -> {
+                    if (dispatcher != null) {
+                        dispatcher.acknowledge(handled);
+                    }
+                });
+                return true;
+            case "stopScan":
+                cordova.getActivity().runOnUiThread(() -> {
+                    stopContinuousScan();
+                    cb.success();
+                });
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /** Replaces any running scan with the requested one; runs on the UI thread. */
+    private void startScan(String action, ScanOptions requestOptions, CallbackContext cb) {
+        stopContinuousScan();
         this.callback = cb;
+        this.options = requestOptions;
+        this.batch = action.equals("startBatchScan")
+                ? new BatchCollector(options.getBatchTargetCount(), options.getBatchTimeoutMs())
+                : null;
+        this.embeddedRequest = action.equals("startEmbedded");
+        if (embeddedRequest || action.equals("startContinuousScan")) {
+            startContinuousSession(cb, options);
+        }
+        scanStartedAt = SystemClock.elapsedRealtime();
+        scanWarm = false;
+        firstResultPending = true;
+        failedEngines.clear();
 
-        cordova.getActivity().runOnUiThread(() -> {
-            if (ContextCompat.checkSelfPermission(cordova.getActivity(), Manifest.permission.CAMERA)
-                    != PackageManager.PERMISSION_GRANTED) {
-                cordova.requestPermission(this, REQ_CAMERA, Manifest.permission.CAMERA);
-                return;
+        if (ContextCompat.checkSelfPermission(cordova.getActivity(), Manifest.permission.CAMERA)
+                != PackageManager.PERMISSION_GRANTED) {
+            cordova.requestPermission(this, REQ_CAMERA, Manifest.permission.CAMERA);
+            return;
+        }
+        startRequest();
+    }
+
+    private void startContinuousSession(CallbackContext cb, ScanOptions sessionOptions) {
+        boolean binary = sessionOptions.isBinaryResults();
+        ResultDispatcher results = sessionOptions.getFlushIntervalMs() > 0
+                ? new ResultDispatcher(cb, sessionOptions.getFlushIntervalMs(), sessionOptions.getFlushSize(),
+                        sessionOptions.getOverflowPolicy(), metrics)
+                : null;
+        dispatcher = results;
+        session = ContinuousScanSession.start(sessionOptions.getDuplicateWindowMs(), history, new ContinuousScanSession.Listener() {
+            @Override
+            public void onResult(String value, int format, int type, byte[] rawBytes, int[] boundingBox,
+                                 ResultHistory.Sighting sighting) {
+                recordFirstResult();
+                Object payload = toPayload(value, format, type, rawBytes, boundingBox, sighting, binary);
+                if (results != null) {
+                    results.offer(format + ":" + value, payload);
+                    return;
+                }
+                PluginResult ok = toPluginResult(payload);
+                ok.setKeepCallback(true);
+                cb.sendPluginResult(ok);
+            }
+
+            @Override
+            public void onClosed() {
+                sendErr("USER_CANCELLED", null);
             }
-            startWithBestAvailableScanner();
         });
-        return true;
+    }
+
+    /**
+     * Decodes the barcodes of image files off the UI thread. Every image is streamed back through
+     * the kept-alive callback as {@code [index, uri, codes, error]} in completion order, followed by
+     * {@code [-1, scanned, failed]} once all are done.
+     */
+    private void scanImages(JSONArray uris, ScanOptions imageOptions, CallbackContext cb) {
+        List<String> list = new ArrayList<>();
+        for (int i = 0; uris != null && i < uris.length(); i++) {
+            list.add(uris.optString(i));
+        }
+        if (imageScanner == null) {
+            imageScanner = new ImageFileScanner(ImageFileScanner.defaultWorkerCount(ZxingImageDecoder.MAX_BYTES_PER_IMAGE));
+        }
+        ZxingImageDecoder decoder = new ZxingImageDecoder(
+                cordova.getActivity().getApplicationContext().getContentResolver(), imageOptions);
+        imageScanner.scan(list, decoder, new ImageFileScanner.Listener() {
+            @Override
+            public void onImage(int index, String uri, JSONArray codes) {
+                appendSightings(codes);
+                sendImage(cb, new JSONArray().put(index).put(uri).put(codes).put(""));
+            }
+
+            @Override
+            public void onImageFailed(int index, String uri, Exception e) {
+                Log.w(TAG, "IMAGE_DECODE_FAILED " + uri, e);
+                String code = e instanceof IOException ? "IMAGE_READ_FAILED" : "IMAGE_DECODE_FAILED";
+                sendImage(cb, new JSONArray().put(index).put(uri).put(new JSONArray()).put(code));
+            }
+
+            @Override
+            public void onFinished(int scanned, int failed) {
+                PluginResult done = new PluginResult(PluginResult.Status.OK,
+                        new JSONArray().put(-1).put(scanned).put(failed));
+                done.setKeepCallback(false);
+                cb.sendPluginResult(done);
+            }
+        });
+    }
+
+    private static void sendImage(CallbackContext cb, JSONArray image) {
+        PluginResult ok = new PluginResult(PluginResult.Status.OK, image);
+        ok.setKeepCallback(true);
+        cb.sendPluginResult(ok);
+    }
+
+    /** Ends a running continuous scan and releases its kept-alive callback. */
+    private void stopContinuousScan() {
+        ContinuousScanSession running = session;
+        if (running == null) {
+            return;
+        }
+        session = null;
+        running.stop();
+        closeDispatcher();
+        if (engineListener != null) engineListener.done = true;
+        if (callback != null) {
+            PluginResult done = new PluginResult(PluginResult.Status.NO_RESULT);
+            done.setKeepCallback(false);
+            callback.sendPluginResult(done);
+            callback = null;
+        }
     }
 
     @Override
     public void onRequestPermissionResult(int requestCode, String[] permissions, int[] grantResults) throws JSONException {
         if (requestCode == REQ_CAMERA) {
             if (grantResults.length > 0 && grantResults[0] == PackageManager.PERMISSION_GRANTED) {
-                cordova.getActivity().runOnUiThread(this::startWithBestAvailableScanner);
+                cordova.getActivity().runOnUiThread(this::startRequest);
             } else {
                 sendErr("CAMERA_PERMISSION_DENIED", null);
             }
         }
     }
 
-    private void startWithBestAvailableScanner() {
-        // Prefer GMS Code Scanner (no native .so in your APK; 16K friendly via GMS)
-        if (isPlayServicesOk()) {
-            startGmsScan();
+    private void startRequest() {
+        if (embeddedRequest) {
+            startEmbeddedPreview();
         } else {
-            // Fallback: ZXing (pure Java; 16K page size safe; no GMS required)
-            startZxingFallback();
+            startEngine();
         }
     }
 
-    private boolean isPlayServicesOk() {
-        int status = GoogleApiAvailability.getInstance()
-                .isGooglePlayServicesAvailable(cordova.getActivity());
-        return status == ConnectionResult.SUCCESS;
+    /**
+     * Runs the continuous scan in the camera preview behind the WebView. The implementation needs
+     * CameraX, which only apps that include the CameraX screen bring along, so it is loaded by name.
+     */
+    private void startEmbeddedPreview() {
+        ContinuousScanSession running = session;
+        if (running == null) {
+            // Stopped before the camera permission was granted.
+            return;
+        }
+        if (embeddedPreview == null) {
+            try {
+                embeddedPreview = (EmbeddedPreview) Class.forName(EmbeddedPreview.IMPLEMENTATION)
+                        .getConstructor(Activity.class, View.class)
+                        .newInstance(cordova.getActivity(), webView.getView());
+            } catch (Exception e) {
+                sendErr("EMBEDDED_UNAVAILABLE", e);
+                return;
+            }
+        }
+        engine = null;
+        if (engineListener != null) engineListener.done = true;
+        embeddedSession = running;
+        running.setStopHandler(() -> cordova.getActivity().runOnUiThread(() -> {
+            // A newer scan may already own the preview.
+            if (embeddedSession == running) {
+                embeddedSession = null;
+                embeddedPreview.stop();
+            }
+        }));
+        embeddedPreview.start(options, running, (code, e) -> {
+            if (session == running) sendErr(code, e);
+        });
     }
 
-    // --------- Primary: GMS Code Scanner ----------
-    private void startGmsScan() {
-        try {
-            GmsBarcodeScannerOptions options = new GmsBarcodeScannerOptions.Builder()
-                    .setBarcodeFormats(Barcode.FORMAT_ALL_FORMATS)
-                    .enableAutoZoom()
-                    .build();
-
-            GmsBarcodeScanner scanner = GmsBarcodeScanning.getClient(cordova.getActivity(), options);
-            Task<Barcode> task = scanner.startScan();
-
-            task.addOnSuccessListener(barcode -> {
-                try {
-                    JSONArray result = new JSONArray();
-                    result.put(barcode.getRawValue() == null ? "" : barcode.getRawValue());
-                    result.put(barcode.getFormat());     // int
-                    result.put(barcode.getValueType());  // int
-                    PluginResult ok = new PluginResult(PluginResult.Status.OK, result);
-                    ok.setKeepCallback(false);
-                    callback.sendPluginResult(ok);
-                } catch (Exception e) {
-                    sendErr("PARSE_SUCCESS", e);
-                }
-            }).addOnFailureListener(e -> {
-                // If GMS UI closes immediately (old/outdated GMS), fall back gracefully
-                if (e instanceof ApiException) {
-                    // Try fallback instead of bailing out
-                    startZxingFallback();
-                } else {
-                    startZxingFallback();
+    /** Starts the best engine for the request that has not failed yet. */
+    private void startEngine() {
+        int mode = session != null ? ScanEngine.MODE_CONTINUOUS
+                : batch != null ? ScanEngine.MODE_BATCH
+                : ScanEngine.MODE_SINGLE;
+        ScanEngine next = engines.select(mode, failedEngines);
+        if (next == null) {
+            sendErr("NO_SCAN_ENGINE", null);
+            return;
+        }
+        engine = next;
+        if (firstResultPending) scanWarm = next.isWarm(options.getFormats());
+        if (engineListener != null) engineListener.done = true;
+        engineListener = new EngineListener(next);
+        next.start(options, mode, engineListener);
+    }
+
+    /** Turns the codes of an engine into plugin results, for one engine run of one request. */
+    private class EngineListener implements ScanEngine.Listener {
+        private final ScanEngine owner;
+        boolean done;
+
+        EngineListener(ScanEngine owner) {
+            this.owner = owner;
+        }
+
+        @Override
+        public boolean onResult(ScanResult result) {
+            if (done) return false;
+            try {
+                if (batch != null) {
+                    if (collectBatch(result.value, result.format, result.type, result.rawBytes, result.boundingBox)) {
+                        done = true;
+                        return false;
+                    }
+                    return true;
                 }
-            }).addOnCanceledListener(() -> sendErr("USER_CANCELED", null));
-        } catch (Exception e) {
-            // Any unexpected issue → fallback
-            startZxingFallback();
+                sendResult(result);
+            } catch (Exception e) {
+                sendErr("PARSE_SUCCESS", e);
+                done = true;
+                return false;
+            }
+            // Continuous scans go on until stopScan
+            if (session == null) done = true;
+            return !done;
+        }
+
+        @Override
+        public void onFinished() {
+            if (done) return;
+            done = true;
+            if (!finishBatch()) sendErr("USER_CANCELLED", null);
+        }
+
+        @Override
+        public void onError(String code, Exception e) {
+            if (done) return;
+            done = true;
+            Log.w(TAG, code, e);
+            // Try the next engine, e.g. ZXing when Play services close the scanner right away
+            failedEngines.add(owner.getName());
+            startEngine();
         }
     }
 
-    // --------- Fallback: ZXing Embedded ----------
-    private void startZxingFallback() {
-        try {
-            IntentIntegrator integrator = new IntentIntegrator(cordova.getActivity());
-            integrator.setDesiredBarcodeFormats(IntentIntegrator.ALL_CODE_TYPES);
-            integrator.setPrompt("Point camera at a barcode");
-            integrator.setBeepEnabled(false);
-            integrator.setBarcodeImageEnabled(false);
-            integrator.setOrientationLocked(false);
-            this.cordova.setActivityResultCallback(this);
-            integrator.initiateScan();
-        } catch (Exception e) {
-            sendErr("ZXING_START_FAILED", e);
+    @Override
+    public void onDestroy() {
+        if (embeddedPreview != null) {
+            embeddedSession = null;
+            embeddedPreview.stop();
         }
+        gmsEngine.release();
+        zxingEngine.release();
+        captureEngine.release();
+        captureZxingEngine.release();
+        closeDispatcher();
+        if (imageScanner != null) imageScanner.shutdown();
+        super.onDestroy();
     }
 
     @Override
     public void onActivityResult(int requestCode, int resultCode, Intent intent) {
-        IntentResult res = IntentIntegrator.parseActivityResult(requestCode, resultCode, intent);
-        if (res != null) {
-            if (res.getContents() != null) {
-                try {
-                    JSONArray result = new JSONArray();
-                    result.put(res.getContents()); // rawValue
-                    result.put(0);                 // format (unknown here) -> keep int shape
-                    result.put(0);                 // valueType (not provided) -> keep int shape
-                    PluginResult ok = new PluginResult(PluginResult.Status.OK, result);
-                    ok.setKeepCallback(false);
-                    if (callback != null) callback.sendPluginResult(ok);
-                } catch (Exception e) {
-                    sendErr("ZXING_PARSE_SUCCESS", e);
-                }
-            } else {
-                sendErr("USER_CANCELED", null);
-            }
+        if (captureEngine.onActivityResult(requestCode, resultCode, intent)) return;
+        if (captureZxingEngine.onActivityResult(requestCode, resultCode, intent)) return;
+        zxingEngine.onActivityResult(requestCode, resultCode, intent);
+    }
+
+    private void recordFirstResult() {
+        if (!firstResultPending) return;
+        firstResultPending = false;
+        long latencyMs = SystemClock.elapsedRealtime() - scanStartedAt;
+        metrics.recordFirstResult(scanWarm, latencyMs);
+        if (engine != null) engines.recordLatency(engine, latencyMs);
+    }
+
+    /**
+     * Adds a code to the running batch. Returns true if the batch is complete and was sent, false if
+     * the scanner should look for more codes.
+     */
+    private boolean collectBatch(String value, int format, int type, byte[] rawBytes, int[] boundingBox) {
+        recordFirstResult();
+        batch.add(value, format, type, rawBytes, boundingBox);
+        if (!batch.isComplete()) return false;
+        sendBatch(batch.toJSON());
+        return true;
+    }
+
+    /** Sends what a batch collected so far, e.g. when the user closes the scanner. */
+    private boolean finishBatch() {
+        if (batch == null || batch.size() == 0) return false;
+        sendBatch(batch.toJSON());
+        return true;
+    }
+
+    private void sendBatch(JSONArray codes) {
+        batch = null;
+        appendSightings(codes);
+        PluginResult ok = new PluginResult(PluginResult.Status.OK, codes);
+        ok.setKeepCallback(false);
+        if (callback != null) callback.sendPluginResult(ok);
+    }
+
+    /** Positions 5 and 6 of every code tell whether it was seen in an earlier scan. */
+    private void appendSightings(JSONArray codes) {
+        for (int i = 0; i < codes.length(); i++) {
+            JSONArray code = codes.optJSONArray(i);
+            if (code == null) continue;
+            ResultHistory.Sighting sighting = history.record(code.optString(0), code.optInt(1));
+            code.put(sighting.seenBefore);
+            code.put(sighting.firstSeenAt);
+        }
+    }
+
+    /** Sends a final result, or streams it through the kept-alive callback of a continuous scan. */
+    private void sendResult(ScanResult result) {
+        recordFirstResult();
+        if (session != null) {
+            session.offer(result.value, result.format, result.type, result.rawBytes, result.boundingBox);
+            return;
+        }
+        ResultHistory.Sighting sighting = history.record(result.value, result.format);
+        PluginResult ok = toPluginResult(toPayload(result.value, result.format, result.type, result.rawBytes,
+                result.boundingBox, sighting, options.isBinaryResults()));
+        ok.setKeepCallback(false);
+        if (callback != null) callback.sendPluginResult(ok);
+    }
+
+    /**
+     * A single result as {@code [text, format, type, seenBefore, firstSeenAt]}, or packed as a
+     * {@link BinaryResult} byte array that keeps the raw bytes.
+     */
+    private static Object toPayload(String value, int format, int type, byte[] rawBytes,
+                                    int[] boundingBox, ResultHistory.Sighting sighting, boolean binary) {
+        if (binary) {
+            return BinaryResult.encode(value, format, type, rawBytes, boundingBox, sighting);
+        }
+        JSONArray result = new JSONArray();
+        result.put(value == null ? "" : value);
+        result.put(format);
+        result.put(type);
+        result.put(sighting.seenBefore);
+        result.put(sighting.firstSeenAt);
+        return result;
+    }
+
+    private static PluginResult toPluginResult(Object payload) {
+        return payload instanceof byte[]
+                ? new PluginResult(PluginResult.Status.OK, (byte[]) payload)
+                : new PluginResult(PluginResult.Status.OK, (JSONArray) payload);
+    }
+
+    /** Sends the results still held back before the continuous scan's callback is released. */
+    private void closeDispatcher() {
+        if (dispatcher != null) {
+            dispatcher.close();
+            dispatcher = null;
         }
     }
 
     private void sendErr(String code, Exception e) {
+        batch = null;
+        if (engineListener != null) engineListener.done = true;
+        // Any error ends a continuous scan, its callback is released below
+        if (session != null) {
+            ContinuousScanSession running = session;
+            session = null;
+            running.stop();
+            closeDispatcher();
+        }
         try {
             if (e != null) Log.w(TAG, code, e);
             JSONArray err = new JSONArray();
@@ -0,0 +1,245 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner;
+
+import android.util.Log;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+import org.json.JSONArray;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces the results of a continuous scan into fewer bridge messages.
+ *
+ * <p>Results are buffered in a bounded ring and sent as one message once {@code flushSize} of them
+ * are waiting, or {@code flushIntervalMs} after the first of them arrived, whichever comes first.
+ * Messages are sent from a dedicated thread, so a slow bridge never blocks the camera pipeline.
+ * Sending a plugin result only queues it for the WebView, so the page says when it has handled
+ * messages through {@link #acknowledge}; once {@link #MAX_UNACKED} messages are unacknowledged,
+ * new results pile up in the ring until the page catches up. When the ring is full the overflow
+ * policy decides: drop the oldest waiting result, drop the new one, or merge the new one into a
+ * waiting result of the same code and drop the oldest only if there is none.
+ *
+ * <p>A message is a JSON array of positional results, or for binary results a byte array holding
+ * {@link #BINARY_BATCH_MARKER}, three padding bytes, the uint32 count and then every {@link
+ * BinaryResult} prefixed with its uint32 length, all little endian. Flush latency, the time the
+ * oldest result of a message waited, and the drop and merge counts go to {@link ScanMetrics}.
+ */
+public class ResultDispatcher {
+
+    public static final String POLICY_DROP_OLDEST = "dropOldest";
+    public static final String POLICY_DROP_NEWEST = "dropNewest";
+    public static final String POLICY_MERGE = "merge";
+
+    public static final int DEFAULT_FLUSH_SIZE = 16;
+    /** Results the ring holds at least, beyond the flush size, while the page is behind. */
+    static final int MIN_CAPACITY = 64;
+    /** Messages sent but not yet acknowledged by the page before results are held back. */
+    static final int MAX_UNACKED = 4;
+    /** Never a {@link BinaryResult#VERSION}, so JavaScript can tell a batch from a single result. */
+    static final int BINARY_BATCH_MARKER = 0;
+
+    private static final String TAG = "ResultDispatcher";
+
+    private final CallbackContext callback;
+    private final long flushIntervalMs;
+    private final int flushSize;
+    private final String policy;
+    private final ScanMetrics metrics;
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor();
+    private final Runnable flush = this::flush;
+
+    // Ring of waiting results, guarded by this.
+    private final Object[] entries;
+    private final String[] keys;
+    private final long[] arrivedAt;
+    private int head;
+    private int size;
+    private int unacked;
+    private boolean intervalFlushScheduled;
+    private boolean immediateFlushScheduled;
+
+    // Held while draining and sending, so messages leave in order and none follows close().
+    private final Object sendLock = new Object();
+    private boolean closed;
+
+    /**
+     * @param flushIntervalMs longest time a result waits, greater than 0
+     * @param flushSize       results that are sent right away once waiting, at least 1
+     * @param policy          one of the {@code POLICY_*} names; unknown names drop the oldest result
+     */
+    public ResultDispatcher(CallbackContext callback, long flushIntervalMs, int flushSize, String policy,
+                            ScanMetrics metrics) {
+        this.callback = callback;
+        this.flushIntervalMs = Math.max(1, flushIntervalMs);
+        this.flushSize = Math.max(1, flushSize);
+        this.policy = policy;
+        this.metrics = metrics;
+        int capacity = Math.max(MIN_CAPACITY, 2 * this.flushSize);
+        entries = new Object[capacity];
+        keys = new String[capacity];
+        arrivedAt = new long[capacity];
+    }
+
+    /**
+     * Queues a result, a positional {@link JSONArray} or a {@link BinaryResult} byte array.
+     * {@code key} identifies the code for the merge policy.
+     */
+    public void offer(String key, Object entry) {
+        long now = System.nanoTime();
+        synchronized (this) {
+            if (size == entries.length && !makeRoom(key, entry)) {
+                return;
+            }
+            int index = (head + size) % entries.length;
+            entries[index] = entry;
+            keys[index] = key;
+            arrivedAt[index] = now;
+            size++;
+            if (size >= flushSize) {
+                schedule(0);
+            } else if (size == 1) {
+                schedule(flushIntervalMs);
+            }
+        }
+    }
+
+    /** The page handled {@code count} more messages; sends what waited for that right away. */
+    public synchronized void acknowledge(int count) {
+        unacked = Math.max(0, unacked - count);
+        if (size > 0) {
+            schedule(0);
+        }
+    }
+
+    /**
+     * Sends what is still waiting on the calling thread, acknowledged or not, and stops. Later offers
+     * are ignored.
+     */
+    public void close() {
+        synchronized (sendLock) {
+            sendWaiting(true);
+            closed = true;
+        }
+        flusher.shutdownNow();
+    }
+
+    /**
+     * Frees a slot of the full ring for {@code entry}. Returns false if the entry was merged into a
+     * waiting one or dropped itself.
+     */
+    private boolean makeRoom(String key, Object entry) {
+        if (POLICY_DROP_NEWEST.equals(policy)) {
+            metrics.recordDroppedResult();
+            return false;
+        }
+        if (POLICY_MERGE.equals(policy) && key != null) {
+            // The newest sighting of a code replaces the waiting one, keeping its place and age.
+            for (int i = size - 1; i >= 0; i--) {
+                int index = (head + i) % entries.length;
+                if (key.equals(keys[index])) {
+                    entries[index] = entry;
+                    metrics.recordMergedResult();
+                    return false;
+                }
+            }
+        }
+        entries[head] = null;
+        keys[head] = null;
+        head = (head + 1) % entries.length;
+        size--;
+        metrics.recordDroppedResult();
+        return true;
+    }
+
+    private void schedule(long delayMs) {
+        // While the page is behind, its next acknowledgement schedules the flush.
+        if (unacked >= MAX_UNACKED || immediateFlushScheduled
+                || (delayMs > 0 && intervalFlushScheduled)) {
+            return;
+        }
+        if (delayMs > 0) {
+            intervalFlushScheduled = true;
+        } else {
+            immediateFlushScheduled = true;
+        }
+        try {
+            flusher.schedule(flush, delayMs, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            // Closed; close() sent everything that was waiting.
+        }
+    }
+
+    private void flush() {
+        synchronized (sendLock) {
+            if (!closed) {
+                sendWaiting(false);
+            }
+        }
+    }
+
+    /**
+     * Drains the ring into one message unless the page is behind and {@code force} is false. Called
+     * with {@link #sendLock} held.
+     */
+    private void sendWaiting(boolean force) {
+        List<Object> batch;
+        long oldest;
+        synchronized (this) {
+            // A flush still scheduled from before only sends the next results a little early.
+            intervalFlushScheduled = false;
+            immediateFlushScheduled = false;
+            if (size == 0 || (!force && unacked >= MAX_UNACKED)) {
+                return;
+            }
+            unacked++;
+            batch = new ArrayList<>(size);
+            oldest = arrivedAt[head];
+            for (int i = 0; i < size; i++) {
+                int index = (head + i) % entries.length;
+                batch.add(entries[index]);
+                entries[index] = null;
+                keys[index] = null;
+            }
+            head = 0;
+            size = 0;
+        }
+        try {
+            PluginResult message = batch.get(0) instanceof byte[]
+                    ? new PluginResult(PluginResult.Status.OK, packBinary(batch))
+                    : new PluginResult(PluginResult.Status.OK, new JSONArray(batch));
+            message.setKeepCallback(true);
+            callback.sendPluginResult(message);
+            metrics.recordDispatch(batch.size(), (System.nanoTime() - oldest) / 1_000_000);
+        } catch (Exception e) {
+            Log.w(TAG, "flush failed", e);
+            // Never reaches the page, so no acknowledgement will come for it.
+            synchronized (this) {
+                unacked--;
+            }
+        }
+    }
+
+    private static byte[] packBinary(List<Object> batch) {
+        int length = 8;
+        for (Object entry : batch) {
+            length += 4 + ((byte[]) entry).length;
+        }
+        ByteBuffer out = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        out.put((byte) BINARY_BATCH_MARKER);
+        out.position(4);
+        out.putInt(batch.size());
+        for (Object entry : batch) {
+            byte[] record = (byte[]) entry;
+            out.putInt(record.length);
+            out.put(record);
+        }
+        return out.array();
+    }
+}
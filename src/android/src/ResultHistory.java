@@ -0,0 +1,112 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded, time-windowed LRU of recently decoded codes, kept across scan sessions.
+ *
+ * <p>Codes are keyed by format and raw value. Every sighting tells whether the code was seen before
+ * and when it was first and last seen, so the app can skip re-validating it and continuous scans can
+ * suppress repeats. Entries not seen for longer than the time window count as new again; when the
+ * history is full the least recently seen code is evicted.
+ */
+public class ResultHistory {
+
+    public static final int DEFAULT_CAPACITY = 256;
+    public static final long DEFAULT_WINDOW_MS = 24 * 60 * 60 * 1000L;
+
+    /** What the history knew about a code before it was recorded. */
+    public static class Sighting {
+        public final boolean seenBefore;
+        /** Epoch millis of the first sighting, equal to the current one for new codes. */
+        public final long firstSeenAt;
+        /** Epoch millis of the previous sighting, 0 for new codes. */
+        public final long lastSeenAt;
+
+        Sighting(boolean seenBefore, long firstSeenAt, long lastSeenAt) {
+            this.seenBefore = seenBefore;
+            this.firstSeenAt = firstSeenAt;
+            this.lastSeenAt = lastSeenAt;
+        }
+    }
+
+    private static class Entry {
+        long firstSeenAt;
+        long lastSeenAt;
+    }
+
+    private final int capacity;
+    private final long windowMs;
+    private final LinkedHashMap<String, Entry> entries;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+
+    public ResultHistory(int capacity, long windowMs) {
+        this.capacity = Math.max(1, capacity);
+        this.windowMs = windowMs;
+        // Inside the subclass, a plain Entry would name the inherited Map.Entry.
+        this.entries = new LinkedHashMap<String, Entry>(16, .75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ResultHistory.Entry> eldest) {
+                if (size() > ResultHistory.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public Sighting record(String value, int format) {
+        return record(value, format, System.currentTimeMillis());
+    }
+
+    synchronized Sighting record(String value, int format, long now) {
+        String key = format + ":" + (value == null ? "" : value);
+        Entry entry = entries.get(key);
+        if (entry != null && now - entry.lastSeenAt >= windowMs) {
+            entries.remove(key);
+            expirations++;
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            entry = new Entry();
+            entry.firstSeenAt = now;
+            entry.lastSeenAt = now;
+            entries.put(key, entry);
+            return new Sighting(false, now, 0);
+        }
+        hits++;
+        long previous = entry.lastSeenAt;
+        entry.lastSeenAt = now;
+        return new Sighting(true, entry.firstSeenAt, previous);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+        expirations = 0;
+    }
+
+    public synchronized JSONObject toJSON() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("size", entries.size());
+        json.put("capacity", capacity);
+        json.put("windowMs", windowMs);
+        json.put("hits", hits);
+        json.put("misses", misses);
+        json.put("evictions", evictions);
+        json.put("expirations", expirations);
+        return json;
+    }
+}
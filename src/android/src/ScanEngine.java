@@ -0,0 +1,65 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner;
+
+import android.content.Intent;
+
+/**
+ * A way of scanning barcodes with the camera, as picked by {@link ScanEngineSelector}.
+ *
+ * <p>Engines report what they support natively. An engine without {@link #CAP_CONTINUOUS} or
+ * {@link #CAP_BATCH} can still serve those modes: it scans one code at a time and is started again
+ * as long as the {@link Listener} asks for more. Every decoded code is reported as a normalized
+ * {@link ScanResult}.
+ */
+public interface ScanEngine {
+
+    /** Keeps one camera session open and streams every new code. */
+    int CAP_CONTINUOUS = 1;
+    /** Finds several codes in one frame. */
+    int CAP_BATCH = 2;
+    /** Detects in a region of the frame only, see the detector size. */
+    int CAP_ROI = 4;
+
+    /** In-process detection on camera frames. */
+    int LATENCY_FAST = 0;
+    /** Detection in another process, e.g. through Google Play services. */
+    int LATENCY_MEDIUM = 1;
+    /** Pure Java decoding. */
+    int LATENCY_SLOW = 2;
+
+    int MODE_SINGLE = 0;
+    int MODE_BATCH = 1;
+    int MODE_CONTINUOUS = 2;
+
+    interface Listener {
+        /** Called for every decoded code. Returns true if the scan should go on. */
+        boolean onResult(ScanResult result);
+
+        /** The engine's screen was closed, by the user or because it is done. */
+        void onFinished();
+
+        /** The engine failed; the caller may try another one. */
+        void onError(String code, Exception e);
+    }
+
+    String getName();
+
+    /** Bitmask of the {@code CAP_*} flags. */
+    int getCapabilities();
+
+    /** One of the {@code LATENCY_*} classes, used until real latencies were measured. */
+    int getLatencyClass();
+
+    boolean isAvailable();
+
+    /** True if a scan with these formats skips the engine's startup work. */
+    boolean isWarm(int formats);
+
+    /** Starts scanning. Must be called on the UI thread. */
+    void start(ScanOptions options, int mode, Listener listener);
+
+    /** Lets the engine handle the result of an activity it started. Returns true if it did. */
+    boolean onActivityResult(int requestCode, int resultCode, Intent data);
+
+    /** Frees whatever the engine keeps between scans. */
+    void release();
+}
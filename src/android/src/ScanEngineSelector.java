@@ -0,0 +1,112 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Picks the scan engine for a request.
+ *
+ * <p>Only available engines that have not failed for the request are considered. Engines that
+ * support the requested mode natively come first. Among those, the engine with the lowest measured
+ * latency wins: the smoothed time from the scan call to the first result, which covers both startup
+ * and decoding. An engine only counts as measured after a few samples; until then the engines are
+ * ranked by their declared latency class.
+ */
+public class ScanEngineSelector {
+
+    static final int MIN_SAMPLES = 3;
+    // Weight of a new sample in the smoothed latency.
+    private static final double SMOOTHING = .3;
+
+    private static class Latency {
+        int samples;
+        double averageMs;
+    }
+
+    private final List<ScanEngine> engines;
+    private final Map<String, Latency> latencies = new HashMap<>();
+
+    /** @param engines all engines, in the order used to break ties */
+    public ScanEngineSelector(List<ScanEngine> engines) {
+        this.engines = engines;
+    }
+
+    /**
+     * Returns the engine for a scan in the given {@code ScanEngine.MODE_*}, or null if none is
+     * left. Engines named in {@code excluded} are skipped.
+     */
+    public synchronized ScanEngine select(int mode, Collection<String> excluded) {
+        int required = requiredCapabilities(mode);
+        ScanEngine best = null;
+        for (ScanEngine engine : engines) {
+            if (excluded.contains(engine.getName()) || !engine.isAvailable()) {
+                continue;
+            }
+            if (best == null || compare(engine, best, required) < 0) {
+                best = engine;
+            }
+        }
+        return best;
+    }
+
+    /** Records the time from a scan call to its first result. */
+    public synchronized void recordLatency(ScanEngine engine, long latencyMs) {
+        Latency latency = latencies.get(engine.getName());
+        if (latency == null) {
+            latency = new Latency();
+            latency.averageMs = latencyMs;
+            latencies.put(engine.getName(), latency);
+        } else {
+            latency.averageMs += SMOOTHING * (latencyMs - latency.averageMs);
+        }
+        latency.samples++;
+    }
+
+    public synchronized JSONObject toJSON() throws JSONException {
+        JSONObject json = new JSONObject();
+        for (ScanEngine engine : engines) {
+            Latency latency = latencies.get(engine.getName());
+            JSONObject stats = new JSONObject();
+            stats.put("available", engine.isAvailable());
+            stats.put("capabilities", engine.getCapabilities());
+            stats.put("latencyClass", engine.getLatencyClass());
+            stats.put("samples", latency == null ? 0 : latency.samples);
+            stats.put("avgLatencyMs", latency == null ? 0 : Math.round(latency.averageMs));
+            json.put(engine.getName(), stats);
+        }
+        return json;
+    }
+
+    static int requiredCapabilities(int mode) {
+        switch (mode) {
+            case ScanEngine.MODE_CONTINUOUS:
+                return ScanEngine.CAP_CONTINUOUS;
+            case ScanEngine.MODE_BATCH:
+                return ScanEngine.CAP_BATCH;
+            default:
+                return 0;
+        }
+    }
+
+    /** Negative if {@code a} should be preferred over {@code b}. */
+    private int compare(ScanEngine a, ScanEngine b, int required) {
+        boolean aNative = (a.getCapabilities() & required) == required;
+        boolean bNative = (b.getCapabilities() & required) == required;
+        if (aNative != bNative) {
+            return aNative ? -1 : 1;
+        }
+        Latency aLatency = latencies.get(a.getName());
+        Latency bLatency = latencies.get(b.getName());
+        boolean aMeasured = aLatency != null && aLatency.samples >= MIN_SAMPLES;
+        boolean bMeasured = bLatency != null && bLatency.samples >= MIN_SAMPLES;
+        if (aMeasured && bMeasured) {
+            return Double.compare(aLatency.averageMs, bLatency.averageMs);
+        }
+        return Integer.compare(a.getLatencyClass(), b.getLatencyClass());
+    }
+}
@@ -0,0 +1,251 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+
+/**
+ * Scan latency counters reported to JavaScript by the {@code getScanMetrics} action.
+ *
+ * <p>Time to first result is split by whether the detector client was already warm when the scan
+ * started, so the effect of {@code prewarm} can be compared in the field. The camera pipeline records
+ * the duration of each frame stage into fixed-size histograms; recording never allocates, so it is
+ * safe to call for every frame on the analysis thread.
+ *
+ * <p>Coalesced continuous results are counted per bridge message: how many results it carried, how
+ * long its oldest result waited, and how many results were dropped or merged on overflow.
+ *
+ * <p>There is one process-wide instance, shared by the plugin and the camera screen.
+ */
+public class ScanMetrics {
+
+    /** Copying the detector region out of the frame. */
+    public static final int STAGE_CROP = 0;
+    /** {@code scanner.process} until its task completes. */
+    public static final int STAGE_DETECT = 1;
+    /**
+     * From the analyzer receiving a frame until the detector result for it is delivered, including
+     * the time the frame waits behind earlier ones in the pipeline.
+     */
+    public static final int STAGE_FRAME = 2;
+
+    private static final String[] STAGE_NAMES = {"crop", "detect", "frame"};
+
+    private static final ScanMetrics instance = new ScanMetrics();
+
+    private final Counter coldFirstResult = new Counter();
+    private final Counter warmFirstResult = new Counter();
+    private final Histogram[] stages = new Histogram[STAGE_NAMES.length];
+
+    private long framesAnalyzed;
+    private long framesDropped;
+    private long framesSkipped;
+    private long framesBusy;
+    private long lastFrameTimestampNs;
+    private long framePeriodNs;
+
+    private final Counter flushLatency = new Counter();
+    private long messagesSent;
+    private long resultsSent;
+    private long resultsDropped;
+    private long resultsMerged;
+
+    private ScanMetrics() {
+        for (int i = 0; i < stages.length; i++) {
+            stages[i] = new Histogram();
+        }
+    }
+
+    public static ScanMetrics get() {
+        return instance;
+    }
+
+    public synchronized void recordFirstResult(boolean warm, long millis) {
+        (warm ? warmFirstResult : coldFirstResult).add(millis);
+    }
+
+    /** Records the duration of a frame stage, see the {@code STAGE_*} constants. */
+    public synchronized void recordStage(int stage, long nanos) {
+        stages[stage].add(nanos / 1000);
+    }
+
+    /**
+     * Counts an analyzed frame by its sensor timestamp. Frames that the camera dropped in between,
+     * e.g. because of {@code STRATEGY_KEEP_ONLY_LATEST}, are estimated from the gap to the previous
+     * frame, measured against the shortest frame interval seen so far.
+     */
+    public synchronized void recordFrame(long timestampNs) {
+        framesAnalyzed++;
+        if (lastFrameTimestampNs != 0 && timestampNs > lastFrameTimestampNs) {
+            long gap = timestampNs - lastFrameTimestampNs;
+            if (framePeriodNs == 0 || gap < framePeriodNs) {
+                framePeriodNs = gap;
+            }
+            long missed = (gap + framePeriodNs / 2) / framePeriodNs - 1;
+            if (missed > 0) {
+                framesDropped += missed;
+            }
+        }
+        lastFrameTimestampNs = timestampNs;
+    }
+
+    /** Counts a frame that the frame scheduler kept away from the detector as blurry or moving. */
+    public synchronized void recordSkippedFrame() {
+        framesSkipped++;
+    }
+
+    /** Counts a frame dropped because every detector request or the tile search was still busy. */
+    public synchronized void recordBusyFrame() {
+        framesBusy++;
+    }
+
+    /** Counts a coalesced bridge message with {@code results} results, the oldest of which waited {@code latencyMs}. */
+    public synchronized void recordDispatch(int results, long latencyMs) {
+        messagesSent++;
+        resultsSent += results;
+        flushLatency.add(latencyMs);
+    }
+
+    public synchronized void recordDroppedResult() {
+        resultsDropped++;
+    }
+
+    public synchronized void recordMergedResult() {
+        resultsMerged++;
+    }
+
+    /** Marks the start of a new camera session, so the gap to the previous one is not counted. */
+    public synchronized void startSession() {
+        lastFrameTimestampNs = 0;
+    }
+
+    public synchronized void reset() {
+        coldFirstResult.reset();
+        warmFirstResult.reset();
+        for (Histogram stage : stages) {
+            stage.reset();
+        }
+        framesAnalyzed = 0;
+        framesDropped = 0;
+        framesSkipped = 0;
+        framesBusy = 0;
+        lastFrameTimestampNs = 0;
+        framePeriodNs = 0;
+        flushLatency.reset();
+        messagesSent = 0;
+        resultsSent = 0;
+        resultsDropped = 0;
+        resultsMerged = 0;
+    }
+
+    public synchronized JSONObject toJSON() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("coldTimeToFirstResult", coldFirstResult.toJSON());
+        json.put("warmTimeToFirstResult", warmFirstResult.toJSON());
+        json.put("framesAnalyzed", framesAnalyzed);
+        json.put("framesDropped", framesDropped);
+        json.put("framesSkipped", framesSkipped);
+        json.put("framesBusy", framesBusy);
+        JSONObject stageJson = new JSONObject();
+        for (int i = 0; i < stages.length; i++) {
+            stageJson.put(STAGE_NAMES[i], stages[i].toJSON());
+        }
+        json.put("stages", stageJson);
+        json.put("dispatch", new JSONObject()
+                .put("messages", messagesSent)
+                .put("results", resultsSent)
+                .put("dropped", resultsDropped)
+                .put("merged", resultsMerged)
+                .put("flushLatency", flushLatency.toJSON()));
+        return json;
+    }
+
+    private static class Counter {
+        long count;
+        long total;
+        long min = Long.MAX_VALUE;
+        long max;
+        long last;
+
+        void add(long value) {
+            count++;
+            total += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            last = value;
+        }
+
+        void reset() {
+            count = 0;
+            total = 0;
+            min = Long.MAX_VALUE;
+            max = 0;
+            last = 0;
+        }
+
+        JSONObject toJSON() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("count", count);
+            json.put("min", count == 0 ? 0 : min);
+            json.put("max", max);
+            json.put("avg", count == 0 ? 0 : total / count);
+            json.put("last", last);
+            return json;
+        }
+    }
+
+    /** Microsecond histogram with power-of-two buckets from 250 us to 512 ms plus an overflow bucket. */
+    private static class Histogram {
+        private static final long[] UPPER_BOUNDS_US = {
+                250, 500, 1000, 2000, 4000, 8000, 16000, 32000, 64000, 128000, 256000, 512000
+        };
+
+        final long[] buckets = new long[UPPER_BOUNDS_US.length + 1];
+        final Counter stats = new Counter();
+
+        void add(long micros) {
+            int bucket = 0;
+            while (bucket < UPPER_BOUNDS_US.length && micros > UPPER_BOUNDS_US[bucket]) {
+                bucket++;
+            }
+            buckets[bucket]++;
+            stats.add(micros);
+        }
+
+        void reset() {
+            Arrays.fill(buckets, 0);
+            stats.reset();
+        }
+
+        /** Upper bound of the bucket that holds the given fraction of samples, -1 for the overflow bucket. */
+        long percentile(double fraction) {
+            long rank = (long) Math.ceil(stats.count * fraction);
+            long seen = 0;
+            for (int i = 0; i < UPPER_BOUNDS_US.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    return UPPER_BOUNDS_US[i];
+                }
+            }
+            return -1;
+        }
+
+        JSONObject toJSON() throws JSONException {
+            JSONObject json = stats.toJSON();
+            json.put("p50", stats.count == 0 ? 0 : percentile(.5));
+            json.put("p90", stats.count == 0 ? 0 : percentile(.9));
+            json.put("p99", stats.count == 0 ? 0 : percentile(.99));
+            JSONArray bounds = new JSONArray();
+            JSONArray counts = new JSONArray();
+            for (int i = 0; i < buckets.length; i++) {
+                bounds.put(i < UPPER_BOUNDS_US.length ? UPPER_BOUNDS_US[i] : -1);
+                counts.put(buckets[i]);
+            }
+            json.put("bucketUpperBoundsUs", bounds);
+            json.put("bucketCounts", counts);
+            return json;
+        }
+    }
+}
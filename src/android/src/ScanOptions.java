@@ -0,0 +1,265 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner;
+
+import com.google.mlkit.vision.barcode.common.Barcode;
+import com.google.zxing.BarcodeFormat;
+
+import org.json.JSONArray;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Scan settings sent by www/main.js, shared by every scan engine.
+ *
+ * <p>The JS side sends a positional array: the format bitmask, the detector size, the duplicate
+ * window of continuous scans, the minimum and maximum detection rates of the camera pipeline and
+ * the target count and timeout of batch scans, the number of detector requests the camera
+ * pipeline keeps in flight, the tile size and parallelism of the whole-frame tile search, whether
+ * results are sent as binary, the flush interval, flush size and overflow policy of continuous
+ * scans and whether the CameraX screen switches the torch automatically, at positions 0 to 14.
+ * The bitmask uses the same bit values as ML Kit's {@code Barcode.FORMAT_*} constants.
+ */
+public class ScanOptions {
+
+    public static final double DEFAULT_DETECTOR_SIZE = .5;
+    public static final long DEFAULT_DUPLICATE_WINDOW_MS = 1500;
+    public static final double DEFAULT_MIN_DETECTION_RATE = 2;
+    public static final double DEFAULT_MAX_DETECTION_RATE = 15;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 2;
+    public static final int MAX_IN_FLIGHT_LIMIT = 3;
+    public static final int DEFAULT_TILE_PARALLELISM = 2;
+    public static final int MAX_TILE_PARALLELISM = 4;
+
+    private static final int[] FORMATS = {
+            Barcode.FORMAT_CODE_128,
+            Barcode.FORMAT_CODE_39,
+            Barcode.FORMAT_CODE_93,
+            Barcode.FORMAT_CODABAR,
+            Barcode.FORMAT_DATA_MATRIX,
+            Barcode.FORMAT_EAN_13,
+            Barcode.FORMAT_EAN_8,
+            Barcode.FORMAT_ITF,
+            Barcode.FORMAT_QR_CODE,
+            Barcode.FORMAT_UPC_A,
+            Barcode.FORMAT_UPC_E,
+            Barcode.FORMAT_PDF417,
+            Barcode.FORMAT_AZTEC
+    };
+
+    // Same order as FORMATS.
+    private static final BarcodeFormat[] ZXING_FORMATS = {
+            BarcodeFormat.CODE_128,
+            BarcodeFormat.CODE_39,
+            BarcodeFormat.CODE_93,
+            BarcodeFormat.CODABAR,
+            BarcodeFormat.DATA_MATRIX,
+            BarcodeFormat.EAN_13,
+            BarcodeFormat.EAN_8,
+            BarcodeFormat.ITF,
+            BarcodeFormat.QR_CODE,
+            BarcodeFormat.UPC_A,
+            BarcodeFormat.UPC_E,
+            BarcodeFormat.PDF_417,
+            BarcodeFormat.AZTEC
+    };
+
+    public static final int ALL_FORMATS = allFormats();
+
+    private final int formats;
+    private final double detectorSize;
+    private long duplicateWindowMs = DEFAULT_DUPLICATE_WINDOW_MS;
+    private double minDetectionRate = DEFAULT_MIN_DETECTION_RATE;
+    private double maxDetectionRate = DEFAULT_MAX_DETECTION_RATE;
+    private int batchTargetCount;
+    private long batchTimeoutMs;
+    private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+    private int tileSize;
+    private int tileParallelism = DEFAULT_TILE_PARALLELISM;
+    private boolean binaryResults;
+    private long flushIntervalMs;
+    private int flushSize = ResultDispatcher.DEFAULT_FLUSH_SIZE;
+    private String overflowPolicy = ResultDispatcher.POLICY_DROP_OLDEST;
+    private boolean autoTorch = true;
+
+    private ScanOptions(int formats, double detectorSize) {
+        this.formats = formats;
+        this.detectorSize = detectorSize;
+    }
+
+    /**
+     * Parses the positional arguments of a scan action. Unknown format bits are dropped and an
+     * empty mask means every format; a detector size outside of (0, 1) falls back to the default.
+     * Missing or invalid optional values keep their defaults.
+     */
+    public static ScanOptions fromArgs(JSONArray args) {
+        if (args == null) args = new JSONArray();
+        int formats = args.optInt(0, 0);
+        double detectorSize = args.optDouble(1, DEFAULT_DETECTOR_SIZE);
+        ScanOptions options = new ScanOptions(normalizeFormats(formats), normalizeDetectorSize(detectorSize));
+
+        long duplicateWindowMs = args.optLong(2, DEFAULT_DUPLICATE_WINDOW_MS);
+        if (duplicateWindowMs >= 0) options.duplicateWindowMs = duplicateWindowMs;
+
+        double minRate = args.optDouble(3, DEFAULT_MIN_DETECTION_RATE);
+        double maxRate = args.optDouble(4, DEFAULT_MAX_DETECTION_RATE);
+        if (minRate > 0) options.minDetectionRate = minRate;
+        if (maxRate > 0) options.maxDetectionRate = Math.max(maxRate, options.minDetectionRate);
+
+        options.batchTargetCount = Math.max(0, args.optInt(5, 0));
+        options.batchTimeoutMs = Math.max(0, args.optLong(6, 0));
+        options.maxInFlight = Math.max(1, Math.min(MAX_IN_FLIGHT_LIMIT, args.optInt(7, DEFAULT_MAX_IN_FLIGHT)));
+        options.tileSize = Math.max(0, args.optInt(8, 0));
+        options.tileParallelism = Math.max(1, Math.min(MAX_TILE_PARALLELISM, args.optInt(9, DEFAULT_TILE_PARALLELISM)));
+        options.binaryResults = args.optBoolean(10, false);
+        options.flushIntervalMs = Math.max(0, args.optLong(11, 0));
+        options.flushSize = Math.max(1, args.optInt(12, ResultDispatcher.DEFAULT_FLUSH_SIZE));
+        options.overflowPolicy = args.optString(13, ResultDispatcher.POLICY_DROP_OLDEST);
+        options.autoTorch = args.optBoolean(14, true);
+        return options;
+    }
+
+    /** Options for the given format mask with the default detector size. */
+    public static ScanOptions ofFormats(int formats) {
+        return new ScanOptions(normalizeFormats(formats), DEFAULT_DETECTOR_SIZE);
+    }
+
+    static int normalizeFormats(int formats) {
+        formats &= ALL_FORMATS;
+        return formats == 0 ? ALL_FORMATS : formats;
+    }
+
+    static double normalizeDetectorSize(double detectorSize) {
+        if (Double.isNaN(detectorSize) || detectorSize <= 0 || detectorSize >= 1) {
+            return DEFAULT_DETECTOR_SIZE;
+        }
+        return detectorSize;
+    }
+
+    /** ML Kit format bitmask, never 0. */
+    public int getFormats() {
+        return formats;
+    }
+
+    public double getDetectorSize() {
+        return detectorSize;
+    }
+
+    /** Continuous scans only: how long a code stays suppressed after it was last seen. */
+    public long getDuplicateWindowMs() {
+        return duplicateWindowMs;
+    }
+
+    /** Detections per second the camera pipeline runs at least, even on blurry frames. */
+    public double getMinDetectionRate() {
+        return minDetectionRate;
+    }
+
+    /** Detections per second the camera pipeline never exceeds. */
+    public double getMaxDetectionRate() {
+        return maxDetectionRate;
+    }
+
+    /** Batch scans only: distinct codes after which the batch is returned, 0 for no target. */
+    public int getBatchTargetCount() {
+        return batchTargetCount;
+    }
+
+    /** Batch scans only: milliseconds after which the batch is returned as is, 0 for no timeout. */
+    public long getBatchTimeoutMs() {
+        return batchTimeoutMs;
+    }
+
+    /** Detector requests the camera pipeline runs at once, 1 to {@link #MAX_IN_FLIGHT_LIMIT}. */
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /** Tile edge in sensor pixels of the whole-frame search, 0 when only the detector box is searched. */
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /** Tiles of the whole-frame search that are cropped and detected at once. */
+    public int getTileParallelism() {
+        return tileParallelism;
+    }
+
+    /** Single and continuous scans: results are sent as {@link BinaryResult} byte arrays. */
+    public boolean isBinaryResults() {
+        return binaryResults;
+    }
+
+    /** Continuous scans only: longest time a result is held back to share a message, 0 to send each right away. */
+    public long getFlushIntervalMs() {
+        return flushIntervalMs;
+    }
+
+    /** Continuous scans only: results that are sent at once, without waiting for the interval. */
+    public int getFlushSize() {
+        return flushSize;
+    }
+
+    /** Continuous scans only: what happens to results while the bridge falls behind, see {@link ResultDispatcher}. */
+    public String getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /** CameraX screen only: the torch follows the brightness of the detector box until it is switched by hand. */
+    public boolean isAutoTorch() {
+        return autoTorch;
+    }
+
+    public boolean isAllFormats() {
+        return formats == ALL_FORMATS;
+    }
+
+    /** The selected formats as single ML Kit format flags, for {@code setBarcodeFormats(int, int...)}. */
+    public int[] getMlKitFormats() {
+        int[] selected = new int[Integer.bitCount(formats)];
+        int i = 0;
+        for (int format : FORMATS) {
+            if ((formats & format) != 0) {
+                selected[i++] = format;
+            }
+        }
+        return selected;
+    }
+
+    /** The selected formats as ZXing format names, for {@code IntentIntegrator.setDesiredBarcodeFormats}. */
+    public List<String> getZxingFormats() {
+        List<String> selected = new ArrayList<>();
+        for (BarcodeFormat format : getZxingBarcodeFormats()) {
+            selected.add(format.name());
+        }
+        return selected;
+    }
+
+    /** The selected formats as ZXing formats, for the {@code POSSIBLE_FORMATS} decode hint. */
+    public List<BarcodeFormat> getZxingBarcodeFormats() {
+        List<BarcodeFormat> selected = new ArrayList<>();
+        for (int i = 0; i < FORMATS.length; i++) {
+            if ((formats & FORMATS[i]) != 0) {
+                selected.add(ZXING_FORMATS[i]);
+            }
+        }
+        return selected;
+    }
+
+    /** Maps a ZXing format to the ML Kit format flag used in results, 0 if there is none. */
+    public static int toMlKitFormat(BarcodeFormat format) {
+        for (int i = 0; i < ZXING_FORMATS.length; i++) {
+            if (ZXING_FORMATS[i] == format) {
+                return FORMATS[i];
+            }
+        }
+        return 0;
+    }
+
+    private static int allFormats() {
+        int all = 0;
+        for (int format : FORMATS) {
+            all |= format;
+        }
+        return all;
+    }
+}
@@ -0,0 +1,34 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner;
+
+/**
+ * One decoded barcode, the same for every {@link ScanEngine}.
+ *
+ * <p>Formats and value types use ML Kit's {@code Barcode.FORMAT_*} and {@code Barcode.TYPE_*}
+ * values whatever engine decoded the code; an engine that cannot tell the value type reports 0
+ * (unknown). Raw bytes, the bounding box and the corner points are null when the engine does not
+ * provide them.
+ */
+public class ScanResult {
+
+    public final String value;
+    public final int format;
+    public final int type;
+    public final byte[] rawBytes;
+    /** {@code [left, top, right, bottom]} or null. */
+    public final int[] boundingBox;
+    /** The four corners as {@code [x0, y0, ..., x3, y3]}, clockwise from the code's top left, or null. */
+    public final int[] cornerPoints;
+
+    public ScanResult(String value, int format, int type, byte[] rawBytes, int[] boundingBox) {
+        this(value, format, type, rawBytes, boundingBox, null);
+    }
+
+    public ScanResult(String value, int format, int type, byte[] rawBytes, int[] boundingBox, int[] cornerPoints) {
+        this.value = value == null ? "" : value;
+        this.format = format;
+        this.type = type;
+        this.rawBytes = rawBytes;
+        this.boundingBox = boundingBox;
+        this.cornerPoints = cornerPoints;
+    }
+}
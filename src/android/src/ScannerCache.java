@@ -0,0 +1,115 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Small cache of pre-initialized detector clients, keyed by the format mask they were built for.
+ *
+ * <p>Clients that have not been used for the idle timeout are released by {@link #evictIdle}. The
+ * cache is bounded, when it is full the least recently used client makes room for a new one.
+ */
+public class ScannerCache<T> {
+
+    public interface Factory<T> {
+        T create(int formats);
+    }
+
+    public interface Releaser<T> {
+        void release(T client);
+    }
+
+    private static final int MAX_CLIENTS = 4;
+
+    private static class Entry<T> {
+        final T client;
+        long lastUsed;
+
+        Entry(T client, long lastUsed) {
+            this.client = client;
+            this.lastUsed = lastUsed;
+        }
+    }
+
+    private final Factory<T> factory;
+    private final Releaser<T> releaser;
+    private final long idleTimeoutMs;
+    private final Map<Integer, Entry<T>> entries = new HashMap<>();
+
+    public ScannerCache(Factory<T> factory, Releaser<T> releaser, long idleTimeoutMs) {
+        this.factory = factory;
+        this.releaser = releaser;
+        this.idleTimeoutMs = idleTimeoutMs;
+    }
+
+    public long getIdleTimeoutMs() {
+        return idleTimeoutMs;
+    }
+
+    /** Returns true if a client for this format mask is already initialized. */
+    public synchronized boolean isWarm(int formats) {
+        return entries.containsKey(formats);
+    }
+
+    /** Returns the cached client for the format mask, creating it on a miss. */
+    public T get(int formats) {
+        return get(formats, System.currentTimeMillis());
+    }
+
+    synchronized T get(int formats, long now) {
+        Entry<T> entry = entries.get(formats);
+        if (entry == null) {
+            if (entries.size() >= MAX_CLIENTS) {
+                evictOldest();
+            }
+            entry = new Entry<>(factory.create(formats), now);
+            entries.put(formats, entry);
+        }
+        entry.lastUsed = now;
+        return entry.client;
+    }
+
+    /** Releases every client that has been idle for longer than the timeout. */
+    public void evictIdle() {
+        evictIdle(System.currentTimeMillis());
+    }
+
+    synchronized void evictIdle(long now) {
+        Iterator<Entry<T>> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry<T> entry = it.next();
+            if (now - entry.lastUsed >= idleTimeoutMs) {
+                it.remove();
+                release(entry.client);
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        for (Entry<T> entry : entries.values()) {
+            release(entry.client);
+        }
+        entries.clear();
+    }
+
+    private void evictOldest() {
+        Integer oldest = null;
+        long oldestUse = Long.MAX_VALUE;
+        for (Map.Entry<Integer, Entry<T>> e : entries.entrySet()) {
+            if (e.getValue().lastUsed < oldestUse) {
+                oldestUse = e.getValue().lastUsed;
+                oldest = e.getKey();
+            }
+        }
+        if (oldest != null) {
+            release(entries.remove(oldest).client);
+        }
+    }
+
+    private void release(T client) {
+        if (releaser != null) {
+            releaser.release(client);
+        }
+    }
+}
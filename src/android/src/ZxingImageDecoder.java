@@ -0,0 +1,232 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+
+import androidx.exifinterface.media.ExifInterface;
+
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.multi.GenericMultipleBarcodeReader;
+import com.mobisys.cordova.plugins.mlkit.barcode.scanner.utils.BitmapUtils;
+
+import org.json.JSONArray;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Decodes every barcode of an image file with ZXing, without ever loading the full-size photo.
+ *
+ * <p>The image is first decoded subsampled, so that its shorter side is close to what a barcode of
+ * the requested formats needs; a 12 MP photo is read at a quarter of its pixels or less. Only if
+ * nothing is found there is the next finer level tried, down to full resolution or {@link
+ * #MAX_DECODED_PIXELS}, whichever is smaller. Only luminance is kept, one byte per pixel, turned
+ * upright by the EXIF orientation on the way: ZXing cannot rotate a {@link
+ * PlanarYUVLuminanceSource} and 1D readers only scan rows, so 1D codes are only found when they lie
+ * horizontally in the upright photo. Bounding boxes are in full-resolution pixels of the upright
+ * photo.
+ */
+public class ZxingImageDecoder implements ImageFileScanner.Decoder {
+
+    // Shorter image side to start at. Dense 2D codes need more pixels across than 1D codes.
+    private static final int TARGET_SIDE_1D = 1024;
+    private static final int TARGET_SIDE_2D = 1600;
+    // Bit values of ML Kit's Barcode.FORMAT_DATA_MATRIX, FORMAT_QR_CODE, FORMAT_PDF417, FORMAT_AZTEC.
+    private static final int DENSE_FORMATS = 16 | 256 | 2048 | 4096;
+
+    /** Largest image decoded at once; larger ones stay subsampled at every level. */
+    public static final int MAX_DECODED_PIXELS = 12_000_000;
+    // RGB_565 bitmap, luminance copy and the binarizer's bit matrices.
+    private static final int BYTES_PER_PIXEL = 4;
+    /** Memory one decode needs at most, to size the worker pool. */
+    public static final long MAX_BYTES_PER_IMAGE = (long) MAX_DECODED_PIXELS * BYTES_PER_PIXEL;
+
+    private final ContentResolver resolver;
+    private final int targetSide;
+    private final Map<DecodeHintType, Object> hints = new EnumMap<>(DecodeHintType.class);
+    // MultiFormatReader keeps state per decode, so every worker thread gets its own.
+    private final ThreadLocal<GenericMultipleBarcodeReader> readers = new ThreadLocal<GenericMultipleBarcodeReader>() {
+        @Override
+        protected GenericMultipleBarcodeReader initialValue() {
+            return new GenericMultipleBarcodeReader(new MultiFormatReader());
+        }
+    };
+
+    public ZxingImageDecoder(ContentResolver resolver, ScanOptions options) {
+        this.resolver = resolver;
+        this.targetSide = (options.getFormats() & DENSE_FORMATS) != 0 ? TARGET_SIDE_2D : TARGET_SIDE_1D;
+        if (!options.isAllFormats()) {
+            hints.put(DecodeHintType.POSSIBLE_FORMATS, options.getZxingBarcodeFormats());
+        }
+        hints.put(DecodeHintType.TRY_HARDER, Boolean.TRUE);
+    }
+
+    @Override
+    public JSONArray decode(String uri) throws IOException {
+        Uri source = Uri.parse(uri);
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        decodeStream(source, bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            throw new IOException("not an image: " + uri);
+        }
+
+        int orientation = BitmapUtils.getExifOrientationTag(resolver, source);
+        int finestSampleSize = minSampleSize(bounds.outWidth, bounds.outHeight);
+        int sampleSize = Math.max(finestSampleSize, sampleSizeFor(Math.min(bounds.outWidth, bounds.outHeight), targetSide));
+        while (true) {
+            BatchCollector codes = decodeAt(source, sampleSize, orientation);
+            if (codes.size() > 0 || sampleSize <= finestSampleSize) {
+                return codes.toJSON();
+            }
+            sampleSize /= 2;
+        }
+    }
+
+    /**
+     * Largest power of two that keeps the shorter side at or above three quarters of the target.
+     * Rounding the target down lets a 4000 x 3000 photo start at 2000 x 1500 instead of full size.
+     */
+    static int sampleSizeFor(int shorterSide, int targetSide) {
+        int sampleSize = 1;
+        while (shorterSide / (sampleSize * 2) >= targetSide * 3 / 4) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /** Smallest power of two that keeps the image within {@link #MAX_DECODED_PIXELS}. */
+    static int minSampleSize(int width, int height) {
+        int sampleSize = 1;
+        while ((long) (width / sampleSize) * (height / sampleSize) > MAX_DECODED_PIXELS) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private BatchCollector decodeAt(Uri source, int sampleSize, int orientation) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+        Bitmap bitmap = decodeStream(source, options);
+        if (bitmap == null) {
+            throw new IOException("failed to decode " + source);
+        }
+
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        boolean swap = orientation >= ExifInterface.ORIENTATION_TRANSPOSE;
+        int uprightWidth = swap ? height : width;
+        int uprightHeight = swap ? width : height;
+        byte[] luminance = new byte[width * height];
+        try {
+            int[] row = new int[width];
+            for (int y = 0; y < height; y++) {
+                bitmap.getPixels(row, 0, width, 0, y, width, 1);
+                // Stored pixel x of this row lands at uprightIndex + x * step.
+                int uprightIndex;
+                int step;
+                switch (orientation) {
+                    case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                        uprightIndex = y * width + width - 1;
+                        step = -1;
+                        break;
+                    case ExifInterface.ORIENTATION_ROTATE_180:
+                        uprightIndex = (height - 1 - y) * width + width - 1;
+                        step = -1;
+                        break;
+                    case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                        uprightIndex = (height - 1 - y) * width;
+                        step = 1;
+                        break;
+                    case ExifInterface.ORIENTATION_TRANSPOSE:
+                        uprightIndex = y;
+                        step = height;
+                        break;
+                    case ExifInterface.ORIENTATION_ROTATE_90:
+                        uprightIndex = height - 1 - y;
+                        step = height;
+                        break;
+                    case ExifInterface.ORIENTATION_TRANSVERSE:
+                        uprightIndex = (width - 1) * height + height - 1 - y;
+                        step = -height;
+                        break;
+                    case ExifInterface.ORIENTATION_ROTATE_270:
+                        uprightIndex = (width - 1) * height + y;
+                        step = -height;
+                        break;
+                    default:
+                        uprightIndex = y * width;
+                        step = 1;
+                }
+                for (int x = 0; x < width; x++, uprightIndex += step) {
+                    int pixel = row[x];
+                    // Same weights as ZXing's RGBLuminanceSource: (R + 2G + B) / 4.
+                    luminance[uprightIndex] = (byte) ((((pixel >> 16) & 0xFF) + 2 * ((pixel >> 8) & 0xFF) + (pixel & 0xFF)) >> 2);
+                }
+            }
+        } finally {
+            bitmap.recycle();
+        }
+
+        BatchCollector codes = new BatchCollector(0, 0);
+        BinaryBitmap binary = new BinaryBitmap(new HybridBinarizer(new PlanarYUVLuminanceSource(
+                luminance, uprightWidth, uprightHeight, 0, 0, uprightWidth, uprightHeight, false)));
+        Result[] results;
+        try {
+            results = readers.get().decodeMultiple(binary, hints);
+        } catch (NotFoundException e) {
+            return codes;
+        }
+        for (Result result : results) {
+            codes.add(result.getText(), ScanOptions.toMlKitFormat(result.getBarcodeFormat()), 0,
+                    result.getRawBytes(), boundingBox(result.getResultPoints(), sampleSize));
+        }
+        return codes;
+    }
+
+    private Bitmap decodeStream(Uri source, BitmapFactory.Options options) throws IOException {
+        InputStream in = resolver.openInputStream(source);
+        if (in == null) {
+            throw new FileNotFoundException(source.toString());
+        }
+        try {
+            return BitmapFactory.decodeStream(in, null, options);
+        } finally {
+            in.close();
+        }
+    }
+
+    /** Bounding box of the result points in full-resolution pixels, or null without points. */
+    private static int[] boundingBox(ResultPoint[] points, int sampleSize) {
+        if (points == null || points.length == 0) {
+            return null;
+        }
+        float left = Float.MAX_VALUE, top = Float.MAX_VALUE, right = -Float.MAX_VALUE, bottom = -Float.MAX_VALUE;
+        for (ResultPoint point : points) {
+            if (point == null) continue;
+            left = Math.min(left, point.getX());
+            top = Math.min(top, point.getY());
+            right = Math.max(right, point.getX());
+            bottom = Math.max(bottom, point.getY());
+        }
+        if (left > right) {
+            return null;
+        }
+        return new int[]{
+                Math.round(left * sampleSize), Math.round(top * sampleSize),
+                Math.round(right * sampleSize), Math.round(bottom * sampleSize)};
+    }
+}
@@ -0,0 +1,105 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner;
+
+import android.content.Intent;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.integration.android.IntentIntegrator;
+import com.google.zxing.integration.android.IntentResult;
+
+import org.apache.cordova.CordovaPlugin;
+
+/**
+ * The embedded ZXing scanner screen. Pure Java, needs neither Play services nor native libraries,
+ * so it is the engine of last resort.
+ */
+public class ZxingScanEngine implements ScanEngine {
+
+    private final CordovaPlugin plugin;
+    private ScanOptions options;
+    private int mode;
+    private Listener listener;
+
+    public ZxingScanEngine(CordovaPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public String getName() {
+        return "zxing";
+    }
+
+    @Override
+    public int getCapabilities() {
+        return 0;
+    }
+
+    @Override
+    public int getLatencyClass() {
+        return LATENCY_SLOW;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    public boolean isWarm(int formats) {
+        return false;
+    }
+
+    @Override
+    public void start(ScanOptions options, int mode, Listener listener) {
+        this.options = options;
+        this.mode = mode;
+        this.listener = listener;
+        try {
+            IntentIntegrator integrator = new IntentIntegrator(plugin.cordova.getActivity());
+            integrator.setDesiredBarcodeFormats(options.isAllFormats()
+                    ? IntentIntegrator.ALL_CODE_TYPES
+                    : options.getZxingFormats());
+            integrator.setPrompt("Point camera at a barcode");
+            integrator.setBeepEnabled(false);
+            integrator.setBarcodeImageEnabled(false);
+            integrator.setOrientationLocked(false);
+            plugin.cordova.setActivityResultCallback(plugin);
+            integrator.initiateScan();
+        } catch (Exception e) {
+            listener.onError("ZXING_START_FAILED", e);
+        }
+    }
+
+    @Override
+    public boolean onActivityResult(int requestCode, int resultCode, Intent data) {
+        IntentResult res = IntentIntegrator.parseActivityResult(requestCode, resultCode, data);
+        if (res == null || listener == null) {
+            return false;
+        }
+        Listener current = listener;
+        listener = null;
+        if (res.getContents() == null) {
+            current.onFinished();
+            return true;
+        }
+        // The value type is not known to ZXing, so it stays 0 (unknown)
+        ScanResult result = new ScanResult(res.getContents(), toMlKitFormat(res.getFormatName()), 0,
+                res.getRawBytes(), null);
+        if (current.onResult(result)) start(options, mode, current);
+        return true;
+    }
+
+    @Override
+    public void release() {
+        listener = null;
+    }
+
+    /** Maps a ZXing format name such as {@code QR_CODE} to the ML Kit format flag, 0 if unknown. */
+    static int toMlKitFormat(String formatName) {
+        if (formatName == null) return 0;
+        try {
+            return ScanOptions.toMlKitFormat(BarcodeFormat.valueOf(formatName));
+        } catch (IllegalArgumentException e) {
+            return 0;
+        }
+    }
+}
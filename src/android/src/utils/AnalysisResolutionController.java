@@ -0,0 +1,197 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner.utils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Picks the analysis resolution for the CameraX analyzer and adapts it while scanning.
+ *
+ * <p>The starting level is the smallest resolution whose detector crop still has enough pixels for
+ * the requested formats: dense 2D codes need more pixels across the crop than 1D codes. After every
+ * window of frames the controller steps up when nothing was decoded and frames are cheap, and steps
+ * down when frames take longer than the latency budget. A level that was left because of latency is
+ * not tried again in the same session, so the controller does not oscillate. After a window with
+ * decodes the controller tries the next smaller level once; if that level decodes nothing it goes
+ * back up and stays there for the session.
+ *
+ * <p>The lowest level that decoded in a session is remembered per format mask for the lifetime of
+ * the process and used as the starting point of the next session, so it can go down as well as up.
+ * So is the average frame cost measured at each level, from the start of the crop to the end of the
+ * detection. Known costs only keep the next session from starting at a level above the latency
+ * budget; the level is still probed again when nothing is decoded below it, since a cost measured
+ * under load or by an older process may be stale. Both can be saved with {@link #exportLearned} and
+ * restored in a later process with {@link #importLearned}.
+ */
+public class AnalysisResolutionController {
+  /** Landscape analysis sizes, from smallest to largest. */
+  public static final int[][] LEVELS = {{640, 480}, {1280, 720}, {1920, 1080}};
+
+  // Bit values of ML Kit's Barcode.FORMAT_DATA_MATRIX, FORMAT_QR_CODE, FORMAT_PDF417, FORMAT_AZTEC.
+  private static final int DENSE_FORMATS = 16 | 256 | 2048 | 4096;
+  private static final int MIN_CROP_PIXELS_1D = 200;
+  private static final int MIN_CROP_PIXELS_2D = 300;
+
+  private static final int WINDOW_FRAMES = 30;
+
+  private static final Map<Integer, Integer> learnedLevels = new HashMap<>();
+  // Average frame cost of the last window measured at each level, 0 if unknown.
+  private static final long[] levelCostsNs = new long[LEVELS.length];
+
+  private final int formats;
+  private final long latencyBudgetNs;
+  private final int minLevel;
+  // Highest level measured within the budget in this session.
+  private int maxLevel = LEVELS.length - 1;
+  // Lowest level that may still be tried after a window with decodes.
+  private int floorLevel;
+  private int level;
+  private int lowestDecodedLevel = Integer.MAX_VALUE;
+  // Whether the current level was entered by stepping down after decodes.
+  private boolean probingDown;
+
+  private boolean pinned;
+
+  private int frames;
+  private int decodedFrames;
+  private long totalFrameNs;
+
+  public AnalysisResolutionController(int formats, double detectorSize, long latencyBudgetNs) {
+    this.formats = formats;
+    this.latencyBudgetNs = latencyBudgetNs;
+    this.minLevel = requiredLevel(formats, detectorSize);
+    this.floorLevel = minLevel;
+    int start;
+    synchronized (learnedLevels) {
+      Integer learned = learnedLevels.get(formats);
+      start = learned == null ? minLevel : Math.max(minLevel, learned);
+      // Start below levels measured above the budget; they are only probed again on demand.
+      while (start > minLevel && levelCostsNs[start] > latencyBudgetNs) {
+        start--;
+      }
+    }
+    this.level = start;
+  }
+
+  /**
+   * Copies the learned levels and level costs into the given containers. {@code costsNs} must have
+   * {@code LEVELS.length} entries.
+   */
+  public static void exportLearned(Map<Integer, Integer> levels, long[] costsNs) {
+    synchronized (learnedLevels) {
+      levels.putAll(learnedLevels);
+      System.arraycopy(levelCostsNs, 0, costsNs, 0, LEVELS.length);
+    }
+  }
+
+  /**
+   * Restores what a previous process learned. Values measured in this process win, invalid levels
+   * are ignored.
+   */
+  public static void importLearned(Map<Integer, Integer> levels, long[] costsNs) {
+    synchronized (learnedLevels) {
+      for (Map.Entry<Integer, Integer> entry : levels.entrySet()) {
+        int level = entry.getValue();
+        if (level >= 0 && level < LEVELS.length && !learnedLevels.containsKey(entry.getKey())) {
+          learnedLevels.put(entry.getKey(), level);
+        }
+      }
+      for (int i = 0; i < LEVELS.length && i < costsNs.length; i++) {
+        if (levelCostsNs[i] == 0 && costsNs[i] > 0) {
+          levelCostsNs[i] = costsNs[i];
+        }
+      }
+    }
+  }
+
+  /** Forgets everything learned in this process. */
+  static void resetLearned() {
+    synchronized (learnedLevels) {
+      learnedLevels.clear();
+      Arrays.fill(levelCostsNs, 0);
+    }
+  }
+
+  /** Smallest level whose detector crop has enough pixels for the given formats. */
+  static int requiredLevel(int formats, double detectorSize) {
+    int required = (formats & DENSE_FORMATS) != 0 ? MIN_CROP_PIXELS_2D : MIN_CROP_PIXELS_1D;
+    for (int i = 0; i < LEVELS.length; i++) {
+      if (Math.min(LEVELS[i][0], LEVELS[i][1]) * detectorSize >= required) {
+        return i;
+      }
+    }
+    return LEVELS.length - 1;
+  }
+
+  /** Fixes the largest level for the rest of the session, e.g. for a search over the whole frame. */
+  public void pinLargest() {
+    level = LEVELS.length - 1;
+    pinned = true;
+  }
+
+  public int getLevel() {
+    return level;
+  }
+
+  /** Analysis width for a landscape target; swap with the height for portrait targets. */
+  public int getWidth() {
+    return LEVELS[level][0];
+  }
+
+  public int getHeight() {
+    return LEVELS[level][1];
+  }
+
+  /**
+   * Records the outcome of one analyzed frame, with the time from the start of its crop to the end
+   * of its detection. Returns true if the level changed and the analysis use case has to be rebound
+   * with the new size.
+   */
+  public boolean onFrame(boolean decoded, long frameNs) {
+    if (pinned) {
+      return false;
+    }
+    frames++;
+    totalFrameNs += frameNs;
+    if (decoded) {
+      decodedFrames++;
+      if (level < lowestDecodedLevel) {
+        lowestDecodedLevel = level;
+        synchronized (learnedLevels) {
+          learnedLevels.put(formats, level);
+        }
+      }
+    }
+    if (frames < WINDOW_FRAMES) {
+      return false;
+    }
+
+    long averageNs = totalFrameNs / frames;
+    synchronized (learnedLevels) {
+      levelCostsNs[level] = averageNs;
+    }
+    int previous = level;
+    boolean probed = probingDown;
+    probingDown = false;
+    if (averageNs > latencyBudgetNs && level > minLevel) {
+      maxLevel = level - 1;
+      level--;
+    } else if (decodedFrames == 0) {
+      if (probed) {
+        // The larger level decoded and this one did not, so go back and stay there.
+        floorLevel = level + 1;
+        level++;
+      } else if (averageNs * 2 < latencyBudgetNs && level < maxLevel) {
+        level++;
+      }
+    } else if (level > floorLevel) {
+      level--;
+      probingDown = true;
+    }
+
+    frames = 0;
+    decodedFrames = 0;
+    totalFrameNs = 0;
+    return level != previous;
+  }
+}
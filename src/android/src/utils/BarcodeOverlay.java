@@ -0,0 +1,215 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner.utils;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PorterDuff;
+import android.graphics.RectF;
+import android.view.Choreographer;
+import android.view.SurfaceHolder;
+
+/**
+ * Draws the focus box and the outlines of the codes found last on the transparent overlay surface.
+ *
+ * <p>Codes are given in sensor frame coordinates, between {@link #beginFrame} and {@link #commit},
+ * and mapped into the FILL_CENTER preview right away. Every code is kept as a quad of four corners:
+ * the detector's corner points when it reports them, the corners of its box otherwise. A commit
+ * that shows the same quads as before is dropped, and a changed one is drawn on the next display
+ * frame, so the surface is locked at most once per refresh. Paints, the path and the point buffers
+ * are allocated once; nothing is allocated per frame. All methods must be called on the main thread.
+ */
+public class BarcodeOverlay implements Choreographer.FrameCallback {
+  /** Codes beyond this many per frame are not drawn. */
+  public static final int MAX_CODES = 16;
+  private static final int FLOATS_PER_CODE = 8;
+  // Focus boxes up to this detector size are drawn with square corners.
+  private static final double SQUARE_FOCUS_MAX_SIZE = .3;
+  private static final float FOCUS_CORNER_RADIUS = 100;
+
+  private final SurfaceHolder holder;
+  private final Paint focusPaint = new Paint();
+  private final Paint codePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+  private final Paint cornerPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+  private final Path path = new Path();
+  private final RectF focusRect = new RectF();
+  private final DetectorBox focusBox = new DetectorBox();
+
+  // Quads in view coordinates: being filled, and on screen.
+  private final float[] pending = new float[MAX_CODES * FLOATS_PER_CODE];
+  private final float[] shown = new float[MAX_CODES * FLOATS_PER_CODE];
+  private int pendingCodes;
+  private int shownCodes;
+
+  private int viewWidth;
+  private int viewHeight;
+  private double detectorSize;
+  private int frameWidth;
+  private int frameHeight;
+  private int rotationDegrees;
+  private boolean scheduled;
+
+  public BarcodeOverlay(SurfaceHolder holder, int focusColor, int codeColor) {
+    this.holder = holder;
+    focusPaint.setStyle(Paint.Style.STROKE);
+    focusPaint.setColor(focusColor);
+    focusPaint.setStrokeWidth(5);
+    codePaint.setStyle(Paint.Style.STROKE);
+    codePaint.setColor(codeColor);
+    codePaint.setStrokeWidth(4);
+    codePaint.setStrokeJoin(Paint.Join.ROUND);
+    cornerPaint.setColor(codeColor);
+    cornerPaint.setStrokeWidth(14);
+    cornerPaint.setStrokeCap(Paint.Cap.ROUND);
+  }
+
+  /** Sets the preview size and the focus box; codes on screen are dropped, they no longer fit. */
+  public void setView(int viewWidth, int viewHeight, double detectorSize) {
+    this.viewWidth = viewWidth;
+    this.viewHeight = viewHeight;
+    this.detectorSize = detectorSize;
+    shownCodes = 0;
+    pendingCodes = 0;
+    invalidate();
+  }
+
+  /** Starts the codes of a {@code frameWidth} x {@code frameHeight} sensor frame. */
+  public void beginFrame(int frameWidth, int frameHeight, int rotationDegrees) {
+    this.frameWidth = frameWidth;
+    this.frameHeight = frameHeight;
+    this.rotationDegrees = rotationDegrees;
+    pendingCodes = 0;
+  }
+
+  /**
+   * Adds a code by its four corners in sensor frame coordinates, as alternating x and y from
+   * {@code offset}.
+   */
+  public void addCorners(float[] corners, int offset) {
+    if (pendingCodes == MAX_CODES) {
+      return;
+    }
+    int start = pendingCodes * FLOATS_PER_CODE;
+    System.arraycopy(corners, offset, pending, start, FLOATS_PER_CODE);
+    addPending(start);
+  }
+
+  /** Adds a code by its {@code [left, top, right, bottom]} box in sensor frame coordinates. */
+  public void addBox(int[] box) {
+    if (box != null) {
+      addBox(box, 0);
+    }
+  }
+
+  /** Adds a code by the box stored in {@code boxes} from {@code offset}. */
+  public void addBox(int[] boxes, int offset) {
+    if (pendingCodes == MAX_CODES) {
+      return;
+    }
+    int start = pendingCodes * FLOATS_PER_CODE;
+    int left = boxes[offset];
+    int top = boxes[offset + 1];
+    int right = boxes[offset + 2];
+    int bottom = boxes[offset + 3];
+    pending[start] = left;
+    pending[start + 1] = top;
+    pending[start + 2] = right;
+    pending[start + 3] = top;
+    pending[start + 4] = right;
+    pending[start + 5] = bottom;
+    pending[start + 6] = left;
+    pending[start + 7] = bottom;
+    addPending(start);
+  }
+
+  /** Shows the codes added since {@link #beginFrame} from the next display frame on, if they changed. */
+  public void commit() {
+    if (pendingCodes == shownCodes && sameQuads()) {
+      return;
+    }
+    System.arraycopy(pending, 0, shown, 0, pendingCodes * FLOATS_PER_CODE);
+    shownCodes = pendingCodes;
+    invalidate();
+  }
+
+  /** Draws again on the next display frame, e.g. after the surface was recreated. */
+  public void invalidate() {
+    if (!scheduled) {
+      scheduled = true;
+      Choreographer.getInstance().postFrameCallback(this);
+    }
+  }
+
+  /** Stops pending redraws; call when the surface goes away. */
+  public void cancel() {
+    if (scheduled) {
+      scheduled = false;
+      Choreographer.getInstance().removeFrameCallback(this);
+    }
+  }
+
+  @Override
+  public void doFrame(long frameTimeNanos) {
+    scheduled = false;
+    if (viewWidth <= 0 || viewHeight <= 0) {
+      return;
+    }
+    Canvas canvas = holder.lockCanvas();
+    if (canvas == null) {
+      // The surface is not there (yet); surfaceChanged invalidates again.
+      return;
+    }
+    try {
+      canvas.drawColor(0, PorterDuff.Mode.CLEAR);
+      drawFocusBox(canvas);
+      drawCodes(canvas);
+    } finally {
+      holder.unlockCanvasAndPost(canvas);
+    }
+  }
+
+  private void addPending(int start) {
+    SensorRegionMapper.sensorToView(
+        pending, start, 4, frameWidth, frameHeight, rotationDegrees, viewWidth, viewHeight);
+    // Whole pixels, so sub-pixel jitter of the detector does not count as a change.
+    for (int i = start; i < start + FLOATS_PER_CODE; i++) {
+      pending[i] = Math.round(pending[i]);
+    }
+    pendingCodes++;
+  }
+
+  private boolean sameQuads() {
+    for (int i = 0, end = pendingCodes * FLOATS_PER_CODE; i < end; i++) {
+      if (pending[i] != shown[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void drawFocusBox(Canvas canvas) {
+    focusBox.set(viewWidth, viewHeight, detectorSize, false);
+    focusRect.set(focusBox.left, focusBox.top, focusBox.right(), focusBox.bottom());
+    if (detectorSize <= SQUARE_FOCUS_MAX_SIZE) {
+      canvas.drawRect(focusRect, focusPaint);
+    } else {
+      canvas.drawRoundRect(focusRect, FOCUS_CORNER_RADIUS, FOCUS_CORNER_RADIUS, focusPaint);
+    }
+  }
+
+  private void drawCodes(Canvas canvas) {
+    if (shownCodes == 0) {
+      return;
+    }
+    path.rewind();
+    for (int code = 0; code < shownCodes; code++) {
+      int start = code * FLOATS_PER_CODE;
+      path.moveTo(shown[start], shown[start + 1]);
+      for (int i = start + 2; i < start + FLOATS_PER_CODE; i += 2) {
+        path.lineTo(shown[i], shown[i + 1]);
+      }
+      path.close();
+    }
+    canvas.drawPath(path, codePaint);
+    canvas.drawPoints(shown, 0, shownCodes * FLOATS_PER_CODE, cornerPaint);
+  }
+}
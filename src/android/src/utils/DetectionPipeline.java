@@ -0,0 +1,196 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner.utils;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Overlaps the crop of the next frame with the detection of the previous ones.
+ *
+ * <p>The pipeline owns a fixed number of slots, one per detector request that may be in flight.
+ * Each slot has its own {@link LuminanceCropper}, so the camera frame can be closed as soon as its
+ * pixels are copied, and the next frame is cropped while the detector still works on the earlier
+ * ones. When every slot is busy, {@link #acquire} returns null and the caller drops the frame, which
+ * bounds both memory and detector latency. Results are handed to the listener in the order the
+ * frames were submitted, even when the detector completes them out of order.
+ *
+ * <p>{@link #acquire} and {@link #submit} are called by the analysis thread, {@link Slot#complete}
+ * by the thread the detector reports on. Ordering holds as long as that is always the same thread,
+ * as it is for ML Kit tasks, whose listeners run on the main thread.
+ */
+public class DetectionPipeline<R> {
+  public static final int MIN_IN_FLIGHT = 1;
+  public static final int MAX_IN_FLIGHT = 3;
+  public static final int DEFAULT_IN_FLIGHT = 2;
+
+  /** Runs the detector on a cropped frame and reports through {@link Slot#complete}. */
+  public interface Detector<R> {
+    void detect(Slot<R> slot);
+  }
+
+  /** Receives results in submission order; {@code result} is null if the detector failed. */
+  public interface Listener<R> {
+    void onResult(Slot<R> slot, R result);
+  }
+
+  /** One in-flight request: the cropped frame and what is known about it. */
+  public static class Slot<R> {
+    private final DetectionPipeline<R> pipeline;
+    private final LuminanceCropper cropper = new LuminanceCropper();
+
+    private ByteBuffer data;
+    private int left;
+    private int top;
+    private int width;
+    private int height;
+    private int rotationDegrees;
+    private long startNs;
+    private long cropStartNs;
+    private long completedNs;
+    private boolean done;
+    private R result;
+
+    Slot(DetectionPipeline<R> pipeline) {
+      this.pipeline = pipeline;
+    }
+
+    /** Copies the region out of the Y plane into this slot's NV21 buffer. */
+    public void crop(
+        ByteBuffer yBuffer,
+        int rowStride,
+        int left,
+        int top,
+        int width,
+        int height,
+        int rotationDegrees,
+        long startNs) {
+      this.cropStartNs = System.nanoTime();
+      this.data = cropper.crop(yBuffer, rowStride, left, top, width, height);
+      this.left = left;
+      this.top = top;
+      this.width = width;
+      this.height = height;
+      this.rotationDegrees = rotationDegrees;
+      this.startNs = startNs;
+    }
+
+    public ByteBuffer getData() {
+      return data;
+    }
+
+    /** Left edge of the crop in the sensor frame. */
+    public int getLeft() {
+      return left;
+    }
+
+    /** Top edge of the crop in the sensor frame. */
+    public int getTop() {
+      return top;
+    }
+
+    public int getWidth() {
+      return width;
+    }
+
+    public int getHeight() {
+      return height;
+    }
+
+    public int getRotationDegrees() {
+      return rotationDegrees;
+    }
+
+    /** {@link System#nanoTime()} at which the frame arrived. */
+    public long getStartNs() {
+      return startNs;
+    }
+
+    /**
+     * Time from the start of the crop until the detector reported, without the time the frame
+     * waited for the analyzer or behind earlier frames. Valid once the result is delivered.
+     */
+    public long getProcessingNs() {
+      return completedNs - cropStartNs;
+    }
+
+    /** Reports the detector result, null on failure. Must be called exactly once per submit. */
+    public void complete(R result) {
+      pipeline.complete(this, result);
+    }
+  }
+
+  private final Detector<R> detector;
+  private final Listener<R> listener;
+  private final ArrayDeque<Slot<R>> free = new ArrayDeque<>();
+  // Submitted slots in submission order, completed or not.
+  private final ArrayDeque<Slot<R>> inFlight = new ArrayDeque<>();
+
+  public DetectionPipeline(int maxInFlight, Detector<R> detector, Listener<R> listener) {
+    this.detector = detector;
+    this.listener = listener;
+    int slots = Math.max(MIN_IN_FLIGHT, Math.min(MAX_IN_FLIGHT, maxInFlight));
+    for (int i = 0; i < slots; i++) {
+      free.add(new Slot<>(this));
+    }
+  }
+
+  /** True if a frame submitted now would get a slot. */
+  public synchronized boolean hasCapacity() {
+    return !free.isEmpty();
+  }
+
+  /** Number of submitted frames whose result was not delivered yet. */
+  public synchronized int getInFlight() {
+    return inFlight.size();
+  }
+
+  /** Takes a free slot to crop into, or returns null if the in-flight limit is reached. */
+  public synchronized Slot<R> acquire() {
+    return free.pollFirst();
+  }
+
+  /** Gives back a slot that was acquired but not submitted. */
+  public synchronized void cancel(Slot<R> slot) {
+    free.addFirst(slot);
+  }
+
+  /** Hands a cropped slot to the detector. */
+  public void submit(Slot<R> slot) {
+    synchronized (this) {
+      slot.done = false;
+      slot.result = null;
+      inFlight.addLast(slot);
+    }
+    detector.detect(slot);
+  }
+
+  private void complete(Slot<R> slot, R result) {
+    synchronized (this) {
+      if (slot.done || !inFlight.contains(slot)) {
+        return;
+      }
+      slot.done = true;
+      slot.completedNs = System.nanoTime();
+      slot.result = result;
+    }
+    // Only deliver from the head, so a slow earlier frame holds back later results. Completions
+    // come from one thread, so the head cannot be taken by anyone else in between.
+    while (true) {
+      Slot<R> delivered;
+      synchronized (this) {
+        if (inFlight.isEmpty() || !inFlight.peekFirst().done) {
+          return;
+        }
+        delivered = inFlight.pollFirst();
+      }
+      R value = delivered.result;
+      delivered.result = null;
+      try {
+        listener.onResult(delivered, value);
+      } finally {
+        synchronized (this) {
+          free.addLast(delivered);
+        }
+      }
+    }
+  }
+}
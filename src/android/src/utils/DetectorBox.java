@@ -0,0 +1,42 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner.utils;
+
+/**
+ * The centered square the detector looks at, as a fraction of the shorter side of a frame or view.
+ *
+ * <p>Shared by the analyzer crop and the on-screen focus rectangle so both agree on the same box.
+ * Instances are mutable and meant to be reused; the arithmetic has no Android dependencies.
+ */
+public class DetectorBox {
+  public int left;
+  public int top;
+  public int size;
+
+  /**
+   * Centers the box in a {@code width} x {@code height} area. With {@code alignEven} the position and
+   * size are rounded down to even numbers, as needed for cropping NV21 data.
+   */
+  public DetectorBox set(int width, int height, double detectorSize, boolean alignEven) {
+    int diameter = Math.min(width, height);
+    int offset = (int) ((1 - detectorSize) * diameter);
+    diameter -= offset;
+
+    if (alignEven) {
+      diameter = LuminanceCropper.even(diameter);
+      left = LuminanceCropper.even(width / 2 - diameter / 2);
+      top = LuminanceCropper.even(height / 2 - diameter / 2);
+    } else {
+      left = width / 2 - diameter / 2;
+      top = height / 2 - diameter / 2;
+    }
+    size = diameter;
+    return this;
+  }
+
+  public int right() {
+    return left + size;
+  }
+
+  public int bottom() {
+    return top + size;
+  }
+}
@@ -0,0 +1,157 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner.utils;
+
+import android.os.Build;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * What earlier sessions learned about this device's camera, so later sessions start with it.
+ *
+ * <p>The profile holds the lowest analysis resolution level that decoded each format mask, the
+ * measured frame cost of every level and the zoom the user picked. Profiles are stored in one small
+ * JSON file, keyed by device model and camera. The file carries a version; a file of another
+ * version is ignored and rewritten on the next save. Loading and saving touch the disk, so both
+ * must run off the UI thread.
+ */
+public class DeviceProfile {
+  static final int VERSION = 2;
+
+  private static final String TAG = "DeviceProfile";
+  private static final String FILE_NAME = "mlkit_barcode_scanner_profile.json";
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  public final Map<Integer, Integer> levels = new HashMap<>();
+  /** Average frame cost per analysis level in nanoseconds, 0 if unknown. */
+  public final long[] levelCostsNs = new long[AnalysisResolutionController.LEVELS.length];
+  /** Zoom ratio the user left the camera at, 0 if unknown. */
+  public float zoomRatio;
+
+  /** Profile key of the given camera on this device model. */
+  public static String key(String cameraId) {
+    return Build.MANUFACTURER + " " + Build.MODEL + "/" + cameraId;
+  }
+
+  /** Reads the profile stored under {@code key}, or returns an empty one. Never throws. */
+  public static DeviceProfile load(File dir, String key) {
+    DeviceProfile profile = new DeviceProfile();
+    try {
+      JSONObject stored = readProfiles(dir).optJSONObject(key);
+      if (stored != null) {
+        profile.read(stored);
+      }
+    } catch (JSONException e) {
+      Log.w(TAG, "ignoring unreadable profile " + key, e);
+    }
+    return profile;
+  }
+
+  /** Stores this profile under {@code key}, keeping the profiles of other cameras. */
+  public void save(File dir, String key) {
+    File file = new File(dir, FILE_NAME);
+    File temp = new File(dir, FILE_NAME + ".tmp");
+    try {
+      JSONObject profiles = readProfiles(dir);
+      profiles.put(key, write());
+      JSONObject root = new JSONObject();
+      root.put("version", VERSION);
+      root.put("profiles", profiles);
+
+      // Write next to the file and rename, so a crash never leaves a half-written profile behind.
+      OutputStream out = new FileOutputStream(temp);
+      try {
+        out.write(root.toString().getBytes(UTF_8));
+      } finally {
+        out.close();
+      }
+      if (!temp.renameTo(file)) {
+        Log.w(TAG, "failed to replace " + file);
+      }
+    } catch (IOException | JSONException e) {
+      Log.w(TAG, "failed to save profile " + key, e);
+    }
+  }
+
+  private static JSONObject readProfiles(File dir) {
+    File file = new File(dir, FILE_NAME);
+    if (!file.isFile()) {
+      return new JSONObject();
+    }
+    try {
+      byte[] bytes = new byte[(int) file.length()];
+      InputStream in = new FileInputStream(file);
+      try {
+        int read = 0;
+        while (read < bytes.length) {
+          int count = in.read(bytes, read, bytes.length - read);
+          if (count < 0) {
+            break;
+          }
+          read += count;
+        }
+      } finally {
+        in.close();
+      }
+      JSONObject root = new JSONObject(new String(bytes, UTF_8));
+      if (root.optInt("version") != VERSION) {
+        return new JSONObject();
+      }
+      JSONObject profiles = root.optJSONObject("profiles");
+      return profiles == null ? new JSONObject() : profiles;
+    } catch (IOException | JSONException e) {
+      Log.w(TAG, "ignoring unreadable " + file, e);
+      return new JSONObject();
+    }
+  }
+
+  private void read(JSONObject json) throws JSONException {
+    JSONObject storedLevels = json.optJSONObject("levels");
+    if (storedLevels != null) {
+      Iterator<String> formats = storedLevels.keys();
+      while (formats.hasNext()) {
+        String format = formats.next();
+        try {
+          levels.put(Integer.parseInt(format), storedLevels.getInt(format));
+        } catch (NumberFormatException e) {
+          // Skip entries written by someone else.
+        }
+      }
+    }
+    JSONArray costs = json.optJSONArray("levelCostsUs");
+    for (int i = 0; costs != null && i < costs.length() && i < levelCostsNs.length; i++) {
+      levelCostsNs[i] = Math.max(0, costs.optLong(i)) * 1000;
+    }
+    zoomRatio = (float) json.optDouble("zoomRatio", 0);
+  }
+
+  private JSONObject write() throws JSONException {
+    JSONObject json = new JSONObject();
+    JSONObject storedLevels = new JSONObject();
+    for (Map.Entry<Integer, Integer> entry : levels.entrySet()) {
+      storedLevels.put(String.valueOf(entry.getKey()), entry.getValue());
+    }
+    json.put("levels", storedLevels);
+    JSONArray costs = new JSONArray();
+    for (long costNs : levelCostsNs) {
+      costs.put(costNs / 1000);
+    }
+    json.put("levelCostsUs", costs);
+    if (zoomRatio > 0) {
+      json.put("zoomRatio", zoomRatio);
+    }
+    return json;
+  }
+}
@@ -0,0 +1,170 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner.utils;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Decides from the luminance of the detector region when to meter the camera on it and when to
+ * switch the torch.
+ *
+ * <p>For every frame a 256 bin histogram of a sparse grid of Y plane samples inside the region is
+ * built. The region is under-exposed when its median is dark, and over-exposed when its median is
+ * bright or a large share of it is clipped, e.g. by glare on a glossy label. A badly exposed region
+ * asks for metering on it, at most once per metering interval. The torch goes on once the region
+ * stayed under-exposed for the switch delay, and off once it stayed over-exposed for as long. The
+ * gap between the two thresholds and a hold time after every switch keep the torch from flickering;
+ * each time the torch has to go off again the hold time doubles, up to {@link #MAX_HOLD_SHIFT}
+ * times. Only the analysis thread calls {@link #update}.
+ */
+public class ExposureController {
+  /** Meter the camera on the region just scored. */
+  public static final int METER = 1;
+  public static final int TORCH_ON = 2;
+  public static final int TORCH_OFF = 4;
+
+  static final int UNDER_EXPOSED_MEDIAN = 45;
+  static final int OVER_EXPOSED_MEDIAN = 200;
+  static final int CLIPPED_LEVEL = 250;
+  static final int OVER_EXPOSED_CLIPPED_PERCENT = 20;
+  static final long DEFAULT_SWITCH_DELAY_NS = 1_000_000_000L;
+  static final long DEFAULT_HOLD_NS = 3_000_000_000L;
+  static final long DEFAULT_METER_INTERVAL_NS = 2_000_000_000L;
+  static final int MAX_HOLD_SHIFT = 3;
+
+  private static final int GRID = 32;
+  private static final long NEVER = Long.MIN_VALUE;
+
+  private final long switchDelayNs;
+  private final long holdNs;
+  private final long meterIntervalNs;
+  private final int[] histogram = new int[256];
+
+  private volatile boolean autoTorch;
+  private boolean torchOn;
+  private int torchOffs;
+  private long underSinceNs = NEVER;
+  private long overSinceNs = NEVER;
+  private long lastSwitchNs = NEVER;
+  private long lastMeterNs = NEVER;
+
+  private int samples;
+  private int median;
+  private int clippedPercent;
+
+  public ExposureController(boolean autoTorch) {
+    this(autoTorch, DEFAULT_SWITCH_DELAY_NS, DEFAULT_HOLD_NS, DEFAULT_METER_INTERVAL_NS);
+  }
+
+  ExposureController(boolean autoTorch, long switchDelayNs, long holdNs, long meterIntervalNs) {
+    this.autoTorch = autoTorch;
+    this.switchDelayNs = switchDelayNs;
+    this.holdNs = holdNs;
+    this.meterIntervalNs = meterIntervalNs;
+  }
+
+  /**
+   * Stops switching the torch, e.g. once the user switched it by hand. May be called from any
+   * thread.
+   */
+  public void disableAutoTorch() {
+    autoTorch = false;
+  }
+
+  /**
+   * Scores the given region of the Y plane and returns what to do about it, a combination of
+   * {@link #METER}, {@link #TORCH_ON} and {@link #TORCH_OFF}, or 0.
+   */
+  public int update(
+      ByteBuffer yBuffer, int rowStride, int left, int top, int width, int height, long nowNs) {
+    score(yBuffer, rowStride, left, top, width, height);
+    if (samples == 0) {
+      return 0;
+    }
+    boolean under = median < UNDER_EXPOSED_MEDIAN;
+    boolean over = median > OVER_EXPOSED_MEDIAN || clippedPercent >= OVER_EXPOSED_CLIPPED_PERCENT;
+    underSinceNs = under ? (underSinceNs == NEVER ? nowNs : underSinceNs) : NEVER;
+    overSinceNs = over ? (overSinceNs == NEVER ? nowNs : overSinceNs) : NEVER;
+
+    int actions = 0;
+    if (lastMeterNs == NEVER || ((under || over) && nowNs - lastMeterNs >= meterIntervalNs)) {
+      lastMeterNs = nowNs;
+      actions |= METER;
+    }
+    if (!autoTorch
+        || (lastSwitchNs != NEVER
+            && nowNs - lastSwitchNs < holdNs << Math.min(torchOffs, MAX_HOLD_SHIFT))) {
+      return actions;
+    }
+    if (!torchOn && under && nowNs - underSinceNs >= switchDelayNs) {
+      torchOn = true;
+      lastSwitchNs = nowNs;
+      // The metering from before the torch no longer fits the scene.
+      lastMeterNs = nowNs;
+      actions |= TORCH_ON | METER;
+    } else if (torchOn && over && nowNs - overSinceNs >= switchDelayNs) {
+      torchOn = false;
+      torchOffs++;
+      lastSwitchNs = nowNs;
+      lastMeterNs = nowNs;
+      actions |= TORCH_OFF | METER;
+    }
+    return actions;
+  }
+
+  /** Whether this controller switched the torch on last. */
+  public boolean isTorchOn() {
+    return torchOn;
+  }
+
+  /** Median luminance of the last scored region, 0..255. */
+  public int getMedian() {
+    return median;
+  }
+
+  /** Share of clipped samples in the last scored region, 0..100. */
+  public int getClippedPercent() {
+    return clippedPercent;
+  }
+
+  void score(ByteBuffer yBuffer, int rowStride, int left, int top, int width, int height) {
+    Arrays.fill(histogram, 0);
+    int stepX = Math.max(1, width / GRID);
+    int stepY = Math.max(1, height / GRID);
+    int limit = yBuffer.limit();
+    int count = 0;
+
+    for (int y = top; y < top + height; y += stepY) {
+      int rowStart = y * rowStride;
+      for (int x = left; x < left + width; x += stepX) {
+        int pos = rowStart + x;
+        if (pos >= limit) {
+          break;
+        }
+        histogram[yBuffer.get(pos) & 0xFF]++;
+        count++;
+      }
+    }
+
+    samples = count;
+    if (count == 0) {
+      median = 0;
+      clippedPercent = 0;
+      return;
+    }
+    int half = (count + 1) / 2;
+    int seen = 0;
+    int level = 0;
+    for (; level < 255; level++) {
+      seen += histogram[level];
+      if (seen >= half) {
+        break;
+      }
+    }
+    median = level;
+    int clipped = 0;
+    for (int i = CLIPPED_LEVEL; i < 256; i++) {
+      clipped += histogram[i];
+    }
+    clippedPercent = clipped * 100 / count;
+  }
+}
@@ -0,0 +1,132 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner.utils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Decides which analysis frames are worth cropping and sending to the detector.
+ *
+ * <p>For every frame a cheap score is computed from a sparse grid of luminance samples inside the
+ * detector region: sharpness is the mean absolute difference between each sample and its right and
+ * bottom neighbour pixels, motion is the mean absolute difference of the samples to the same
+ * samples of the previous frame. Blurry or moving frames are skipped, but detection still runs at
+ * least at the minimum rate and never above the maximum rate. When the region moves or changes size,
+ * e.g. because the detector box follows a code, the samples no longer line up with the previous
+ * ones, so that frame counts as not moving.
+ */
+public class FrameScheduler {
+  static final int DEFAULT_SHARPNESS_THRESHOLD = 6;
+  static final int DEFAULT_MOTION_THRESHOLD = 24;
+
+  private static final int GRID = 24;
+
+  private final long minIntervalNs;
+  private final long maxIntervalNs;
+  private final int sharpnessThreshold;
+  private final int motionThreshold;
+
+  private final int[] previousSamples = new int[GRID * GRID];
+  private final int[] samples = new int[GRID * GRID];
+  private boolean hasPrevious;
+  private int previousLeft;
+  private int previousTop;
+  private int previousWidth;
+  private int previousHeight;
+  private long lastDetectionNs = Long.MIN_VALUE;
+
+  private int sharpness;
+  private int motion;
+
+  public FrameScheduler(double minDetectionRate, double maxDetectionRate) {
+    this(minDetectionRate, maxDetectionRate, DEFAULT_SHARPNESS_THRESHOLD, DEFAULT_MOTION_THRESHOLD);
+  }
+
+  FrameScheduler(
+      double minDetectionRate, double maxDetectionRate, int sharpnessThreshold, int motionThreshold) {
+    if (minDetectionRate <= 0) {
+      throw new IllegalArgumentException("minDetectionRate must be positive");
+    }
+    if (maxDetectionRate < minDetectionRate) {
+      maxDetectionRate = minDetectionRate;
+    }
+    this.maxIntervalNs = (long) (1e9 / minDetectionRate);
+    this.minIntervalNs = (long) (1e9 / maxDetectionRate);
+    this.sharpnessThreshold = sharpnessThreshold;
+    this.motionThreshold = motionThreshold;
+  }
+
+  /**
+   * Scores the given region of the Y plane and returns true if this frame should be sent to the
+   * detector.
+   */
+  public boolean shouldDetect(
+      ByteBuffer yBuffer, int rowStride, int left, int top, int width, int height, long nowNs) {
+    long sinceLast = nowNs - lastDetectionNs;
+    if (lastDetectionNs != Long.MIN_VALUE && sinceLast < minIntervalNs) {
+      return false;
+    }
+
+    score(yBuffer, rowStride, left, top, width, height);
+
+    boolean detect =
+        lastDetectionNs == Long.MIN_VALUE
+            || sinceLast >= maxIntervalNs
+            || (sharpness >= sharpnessThreshold && motion <= motionThreshold);
+    if (detect) {
+      lastDetectionNs = nowNs;
+    }
+    return detect;
+  }
+
+  /** Sharpness of the last scored frame, the mean absolute neighbour gradient in 0..255. */
+  public int getSharpness() {
+    return sharpness;
+  }
+
+  /** Motion of the last scored frame, the mean absolute sample difference in 0..255. */
+  public int getMotion() {
+    return motion;
+  }
+
+  void score(ByteBuffer yBuffer, int rowStride, int left, int top, int width, int height) {
+    if (left != previousLeft
+        || top != previousTop
+        || width != previousWidth
+        || height != previousHeight) {
+      hasPrevious = false;
+      previousLeft = left;
+      previousTop = top;
+      previousWidth = width;
+      previousHeight = height;
+    }
+    int stepX = Math.max(1, (width - 1) / GRID);
+    int stepY = Math.max(1, (height - 1) / GRID);
+    int limit = yBuffer.limit();
+    long gradientSum = 0;
+    long motionSum = 0;
+    int count = 0;
+
+    for (int gy = 0; gy < GRID; gy++) {
+      int rowStart = (top + gy * stepY) * rowStride + left;
+      for (int gx = 0; gx < GRID; gx++) {
+        int pos = rowStart + gx * stepX;
+        if (pos + rowStride + 1 >= limit) {
+          continue;
+        }
+        int value = yBuffer.get(pos) & 0xFF;
+        gradientSum += Math.abs(value - (yBuffer.get(pos + 1) & 0xFF));
+        gradientSum += Math.abs(value - (yBuffer.get(pos + rowStride) & 0xFF));
+        int index = gy * GRID + gx;
+        if (hasPrevious) {
+          motionSum += Math.abs(value - previousSamples[index]);
+        }
+        samples[index] = value;
+        count++;
+      }
+    }
+
+    sharpness = count == 0 ? 0 : (int) (gradientSum / (2L * count));
+    motion = count == 0 || !hasPrevious ? 0 : (int) (motionSum / count);
+    System.arraycopy(samples, 0, previousSamples, 0, samples.length);
+    hasPrevious = count > 0;
+  }
+}
@@ -0,0 +1,122 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner.utils;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Crops a rectangle straight out of the Y plane of a YUV_420_888 frame into a reused NV21 buffer.
+ *
+ * <p>Barcode detection only needs luminance, so the chroma part of the output is filled with
+ * neutral grey (0x80) whenever the crop size changes and never touched otherwise. Per frame only
+ * {@code cropWidth * cropHeight} bytes are copied, with one bulk copy per row. The buffer only
+ * grows: a smaller crop reuses it and the returned buffer's limit marks the current NV21 size. It
+ * is owned by the cropper and overwritten by the next call, so callers must not crop again until
+ * the detector has finished with the previous result.
+ */
+public class LuminanceCropper {
+  private static final byte[] NEUTRAL_CHROMA = neutralChroma(4096);
+
+  private ByteBuffer out;
+  private int outWidth;
+  private int outHeight;
+  // Row scratch of cropHalf.
+  private byte[] inRow;
+  private byte[] outRow;
+
+  /**
+   * Copies the given region of a Y plane with the given row stride into the reused NV21 buffer. The
+   * region is expected to have even coordinates and dimensions, see {@link #even(int)}.
+   */
+  public ByteBuffer crop(
+      ByteBuffer yBuffer, int rowStride, int left, int top, int cropWidth, int cropHeight) {
+    ByteBuffer target = ensureCapacity(cropWidth, cropHeight);
+
+    // Move the source window row by row instead of duplicating the buffer, and restore it after.
+    int position = yBuffer.position();
+    int limit = yBuffer.limit();
+    try {
+      int rowStart = top * rowStride + left;
+      for (int row = 0; row < cropHeight; row++) {
+        yBuffer.limit(rowStart + cropWidth);
+        yBuffer.position(rowStart);
+        target.put(yBuffer);
+        rowStart += rowStride;
+      }
+    } finally {
+      yBuffer.limit(limit);
+      yBuffer.position(position);
+    }
+
+    target.rewind();
+    return target;
+  }
+
+  /**
+   * Copies the given region of the Y plane at half resolution, keeping every other pixel of every
+   * other row. The output is {@code cropWidth / 2} x {@code cropHeight / 2}, so both should be
+   * multiples of four to keep the output NV21 aligned.
+   */
+  public ByteBuffer cropHalf(
+      ByteBuffer yBuffer, int rowStride, int left, int top, int cropWidth, int cropHeight) {
+    int outRowWidth = cropWidth / 2;
+    int outRows = cropHeight / 2;
+    ByteBuffer target = ensureCapacity(outRowWidth, outRows);
+    if (inRow == null || inRow.length < cropWidth) {
+      inRow = new byte[cropWidth];
+      outRow = new byte[outRowWidth];
+    }
+
+    int position = yBuffer.position();
+    try {
+      int rowStart = top * rowStride + left;
+      for (int row = 0; row < outRows; row++) {
+        yBuffer.position(rowStart);
+        yBuffer.get(inRow, 0, cropWidth);
+        for (int x = 0; x < outRowWidth; x++) {
+          outRow[x] = inRow[2 * x];
+        }
+        target.put(outRow, 0, outRowWidth);
+        rowStart += 2 * rowStride;
+      }
+    } finally {
+      yBuffer.position(position);
+    }
+
+    target.rewind();
+    return target;
+  }
+
+  /** Rounds a coordinate or length down to the next even number, as required by NV21. */
+  public static int even(int value) {
+    return value & ~1;
+  }
+
+  /** Returns the buffer with room for the given NV21 size, positioned at 0 and limited to it. */
+  private ByteBuffer ensureCapacity(int width, int height) {
+    int lumaSize = width * height;
+    int size = lumaSize + 2 * (lumaSize / 4);
+    if (out == null || out.capacity() < size) {
+      out = ByteBuffer.allocateDirect(size);
+      outWidth = 0;
+      outHeight = 0;
+    }
+    out.limit(size);
+    if (width != outWidth || height != outHeight) {
+      // The chroma of a new size may start inside the luma of the previous one.
+      out.position(lumaSize);
+      while (out.hasRemaining()) {
+        out.put(NEUTRAL_CHROMA, 0, Math.min(NEUTRAL_CHROMA.length, out.remaining()));
+      }
+      outWidth = width;
+      outHeight = height;
+    }
+    out.position(0);
+    return out;
+  }
+
+  private static byte[] neutralChroma(int length) {
+    byte[] chroma = new byte[length];
+    Arrays.fill(chroma, (byte) 0x80);
+    return chroma;
+  }
+}
@@ -0,0 +1,150 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner.utils;
+
+/**
+ * Narrows the detector crop to a padded window around the codes found last.
+ *
+ * <p>While scanning at a high rate, a code usually stays where it was in the previous frame. After
+ * a detection the tracker keeps the union of the returned boxes, in sensor frame coordinates, and
+ * proposes that area padded on every side by a fraction of its size as the next crop. After {@code
+ * maxMisses} frames in a row without a code the tracker lets go and the caller falls back to the
+ * full detector box. The arithmetic has no Android dependencies.
+ */
+public class RoiTracker {
+  public static final double DEFAULT_PADDING = .5;
+  public static final int DEFAULT_MAX_MISSES = 5;
+  /** Smallest window edge, so a tiny code still gets some surrounding quiet zone. */
+  static final int MIN_WINDOW = 96;
+
+  private final double padding;
+  private final int maxMisses;
+
+  private boolean tracking;
+  private int misses;
+  private int boxLeft;
+  private int boxTop;
+  private int boxRight;
+  private int boxBottom;
+
+  /** Window of the last {@link #window} call, even-aligned for NV21 crops. */
+  public int left;
+  public int top;
+  public int width;
+  public int height;
+
+  public RoiTracker() {
+    this(DEFAULT_PADDING, DEFAULT_MAX_MISSES);
+  }
+
+  public RoiTracker(double padding, int maxMisses) {
+    this.padding = Math.max(0, padding);
+    this.maxMisses = Math.max(1, maxMisses);
+  }
+
+  /** Tracks the union of the given sensor frame boxes; null boxes are ignored. */
+  public synchronized void onDetected(Iterable<int[]> boxes) {
+    boolean any = false;
+    for (int[] box : boxes) {
+      if (box != null) {
+        any |= include(box, 0, any);
+      }
+    }
+    endDetection(any);
+  }
+
+  /**
+   * Tracks the union of {@code count} sensor frame boxes stored one after the other as {@code
+   * [left, top, right, bottom]} in {@code boxes}, so callers can reuse one array every frame.
+   */
+  public synchronized void onDetected(int[] boxes, int count) {
+    boolean any = false;
+    for (int i = 0; i < count; i++) {
+      any |= include(boxes, 4 * i, any);
+    }
+    endDetection(any);
+  }
+
+  private boolean include(int[] box, int offset, boolean any) {
+    int l = box[offset];
+    int t = box[offset + 1];
+    int r = box[offset + 2];
+    int b = box[offset + 3];
+    if (r <= l || b <= t) {
+      return false;
+    }
+    if (!any) {
+      boxLeft = l;
+      boxTop = t;
+      boxRight = r;
+      boxBottom = b;
+    } else {
+      boxLeft = Math.min(boxLeft, l);
+      boxTop = Math.min(boxTop, t);
+      boxRight = Math.max(boxRight, r);
+      boxBottom = Math.max(boxBottom, b);
+    }
+    return true;
+  }
+
+  private void endDetection(boolean any) {
+    if (any) {
+      tracking = true;
+      misses = 0;
+    } else {
+      onMissed();
+    }
+  }
+
+  /** Counts a frame without a code; enough of them in a row end the tracking. */
+  public synchronized void onMissed() {
+    if (tracking && ++misses >= maxMisses) {
+      reset();
+    }
+  }
+
+  public synchronized void reset() {
+    tracking = false;
+    misses = 0;
+  }
+
+  public synchronized boolean isTracking() {
+    return tracking;
+  }
+
+  /**
+   * Computes the window for a {@code frameWidth} x {@code frameHeight} frame into {@link #left},
+   * {@link #top}, {@link #width} and {@link #height}. Returns false if nothing is tracked and the
+   * caller should crop the full detector box instead.
+   */
+  public synchronized boolean window(int frameWidth, int frameHeight) {
+    if (!tracking) {
+      return false;
+    }
+    int boxWidth = boxRight - boxLeft;
+    int boxHeight = boxBottom - boxTop;
+    int padX = (int) (boxWidth * padding);
+    int padY = (int) (boxHeight * padding);
+    int windowWidth = Math.max(MIN_WINDOW, boxWidth + 2 * padX);
+    int windowHeight = Math.max(MIN_WINDOW, boxHeight + 2 * padY);
+    int centerX = (boxLeft + boxRight) / 2;
+    int centerY = (boxTop + boxBottom) / 2;
+
+    int l = clamp(centerX - windowWidth / 2, 0, frameWidth);
+    int t = clamp(centerY - windowHeight / 2, 0, frameHeight);
+    int r = clamp(centerX + windowWidth / 2, 0, frameWidth);
+    int b = clamp(centerY + windowHeight / 2, 0, frameHeight);
+
+    left = LuminanceCropper.even(l);
+    top = LuminanceCropper.even(t);
+    width = LuminanceCropper.even(r - left);
+    height = LuminanceCropper.even(b - top);
+    if (width <= 0 || height <= 0) {
+      reset();
+      return false;
+    }
+    return true;
+  }
+
+  private static int clamp(int value, int min, int max) {
+    return Math.max(min, Math.min(value, max));
+  }
+}
@@ -0,0 +1,283 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner.utils;
+
+/**
+ * Maps a rectangle drawn on the preview into the coordinates of the unrotated analysis frame.
+ *
+ * <p>The preview shows the frame rotated upright by {@code rotationDegrees} and scaled to fill the
+ * view, centered (PreviewView's default FILL_CENTER). Cropping the mapped rectangle straight out of
+ * the sensor data and passing the rotation to the detector as metadata means no frame is ever
+ * rotated pixel by pixel. The mapping only changes when the view, frame size or rotation change, so
+ * {@link #update} recomputes it only then.
+ */
+public class SensorRegionMapper {
+  public int left;
+  public int top;
+  public int width;
+  public int height;
+
+  private int viewWidth = -1;
+  private int viewHeight = -1;
+  private int frameWidth = -1;
+  private int frameHeight = -1;
+  private int rotationDegrees = -1;
+  private double detectorSize = -1;
+
+  private final DetectorBox viewBox = new DetectorBox();
+
+  /**
+   * Maps the centered detector box of a {@code viewWidth} x {@code viewHeight} preview into a
+   * {@code frameWidth} x {@code frameHeight} frame. Returns false if the view has no size yet.
+   */
+  public boolean update(
+      int viewWidth,
+      int viewHeight,
+      int frameWidth,
+      int frameHeight,
+      int rotationDegrees,
+      double detectorSize) {
+    if (viewWidth <= 0 || viewHeight <= 0) {
+      return false;
+    }
+    if (viewWidth == this.viewWidth
+        && viewHeight == this.viewHeight
+        && frameWidth == this.frameWidth
+        && frameHeight == this.frameHeight
+        && rotationDegrees == this.rotationDegrees
+        && detectorSize == this.detectorSize) {
+      return true;
+    }
+    this.viewWidth = viewWidth;
+    this.viewHeight = viewHeight;
+    this.frameWidth = frameWidth;
+    this.frameHeight = frameHeight;
+    this.rotationDegrees = rotationDegrees;
+    this.detectorSize = detectorSize;
+
+    viewBox.set(viewWidth, viewHeight, detectorSize, false);
+    map(viewBox.left, viewBox.top, viewBox.right(), viewBox.bottom());
+    return true;
+  }
+
+  /** Maps the view rectangle given by its edges, using the parameters of the last update. */
+  void map(int viewLeft, int viewTop, int viewRight, int viewBottom) {
+    boolean swapped = rotationDegrees == 90 || rotationDegrees == 270;
+    int uprightWidth = swapped ? frameHeight : frameWidth;
+    int uprightHeight = swapped ? frameWidth : frameHeight;
+
+    // FILL_CENTER: scale the upright frame until it covers the view, then center it.
+    double scale = Math.max((double) viewWidth / uprightWidth, (double) viewHeight / uprightHeight);
+    double dx = (viewWidth - uprightWidth * scale) / 2;
+    double dy = (viewHeight - uprightHeight * scale) / 2;
+
+    double u1 = (viewLeft - dx) / scale;
+    double v1 = (viewTop - dy) / scale;
+    double u2 = (viewRight - dx) / scale;
+    double v2 = (viewBottom - dy) / scale;
+
+    double x1, y1, x2, y2;
+    switch (rotationDegrees) {
+      case 90:
+        x1 = v1;
+        y1 = frameHeight - u1;
+        x2 = v2;
+        y2 = frameHeight - u2;
+        break;
+      case 180:
+        x1 = frameWidth - u1;
+        y1 = frameHeight - v1;
+        x2 = frameWidth - u2;
+        y2 = frameHeight - v2;
+        break;
+      case 270:
+        x1 = frameWidth - v1;
+        y1 = u1;
+        x2 = frameWidth - v2;
+        y2 = u2;
+        break;
+      default:
+        x1 = u1;
+        y1 = v1;
+        x2 = u2;
+        y2 = v2;
+    }
+
+    int l = clamp((int) Math.round(Math.min(x1, x2)), frameWidth);
+    int t = clamp((int) Math.round(Math.min(y1, y2)), frameHeight);
+    int r = clamp((int) Math.round(Math.max(x1, x2)), frameWidth);
+    int b = clamp((int) Math.round(Math.max(y1, y2)), frameHeight);
+
+    // NV21 crops need even coordinates and sizes.
+    left = LuminanceCropper.even(l);
+    top = LuminanceCropper.even(t);
+    width = LuminanceCropper.even(r - left);
+    height = LuminanceCropper.even(b - top);
+  }
+
+  /**
+   * Maps a box of an upright detector image back into sensor frame coordinates. The detector image
+   * is the {@code regionWidth} x {@code regionHeight} sensor region at {@code (regionLeft,
+   * regionTop)}, downscaled by {@code scale} and rotated upright by {@code rotationDegrees}. Boxes
+   * are {@code [left, top, right, bottom]}; returns null for a null box.
+   */
+  public static int[] uprightToSensor(
+      int[] box,
+      int regionLeft,
+      int regionTop,
+      int regionWidth,
+      int regionHeight,
+      int scale,
+      int rotationDegrees) {
+    if (box == null) {
+      return null;
+    }
+    int[] mapped = new int[4];
+    uprightToSensor(
+        box, mapped, 0, regionLeft, regionTop, regionWidth, regionHeight, scale, rotationDegrees);
+    return mapped;
+  }
+
+  /**
+   * Allocation-free version of {@link #uprightToSensor(int[], int, int, int, int, int, int)}:
+   * writes the mapped box to {@code out} from {@code outOffset}. Returns false, leaving {@code out}
+   * untouched, for a null box.
+   */
+  public static boolean uprightToSensor(
+      int[] box,
+      int[] out,
+      int outOffset,
+      int regionLeft,
+      int regionTop,
+      int regionWidth,
+      int regionHeight,
+      int scale,
+      int rotationDegrees) {
+    if (box == null) {
+      return false;
+    }
+    int w = regionWidth / scale;
+    int h = regionHeight / scale;
+    int x1, y1, x2, y2;
+    switch (rotationDegrees) {
+      case 90:
+        x1 = box[1];
+        y1 = h - box[0];
+        x2 = box[3];
+        y2 = h - box[2];
+        break;
+      case 180:
+        x1 = w - box[0];
+        y1 = h - box[1];
+        x2 = w - box[2];
+        y2 = h - box[3];
+        break;
+      case 270:
+        x1 = w - box[1];
+        y1 = box[0];
+        x2 = w - box[3];
+        y2 = box[2];
+        break;
+      default:
+        x1 = box[0];
+        y1 = box[1];
+        x2 = box[2];
+        y2 = box[3];
+    }
+    out[outOffset] = regionLeft + Math.min(x1, x2) * scale;
+    out[outOffset + 1] = regionTop + Math.min(y1, y2) * scale;
+    out[outOffset + 2] = regionLeft + Math.max(x1, x2) * scale;
+    out[outOffset + 3] = regionTop + Math.max(y1, y2) * scale;
+    return true;
+  }
+
+  /**
+   * Point version of {@link #uprightToSensor(int[], int, int, int, int, int, int)}: maps {@code
+   * count} points, stored as alternating x and y from {@code offset}, in place.
+   */
+  public static void uprightToSensor(
+      float[] points,
+      int offset,
+      int count,
+      int regionLeft,
+      int regionTop,
+      int regionWidth,
+      int regionHeight,
+      int scale,
+      int rotationDegrees) {
+    int w = regionWidth / scale;
+    int h = regionHeight / scale;
+    for (int i = offset, end = offset + 2 * count; i < end; i += 2) {
+      float u = points[i];
+      float v = points[i + 1];
+      float x, y;
+      switch (rotationDegrees) {
+        case 90:
+          x = v;
+          y = h - u;
+          break;
+        case 180:
+          x = w - u;
+          y = h - v;
+          break;
+        case 270:
+          x = w - v;
+          y = u;
+          break;
+        default:
+          x = u;
+          y = v;
+      }
+      points[i] = regionLeft + x * scale;
+      points[i + 1] = regionTop + y * scale;
+    }
+  }
+
+  /**
+   * Maps {@code count} points of a {@code frameWidth} x {@code frameHeight} sensor frame into a
+   * FILL_CENTER preview of {@code viewWidth} x {@code viewHeight}, the reverse of {@link #update}.
+   * Points are stored as alternating x and y from {@code offset} and mapped in place.
+   */
+  public static void sensorToView(
+      float[] points,
+      int offset,
+      int count,
+      int frameWidth,
+      int frameHeight,
+      int rotationDegrees,
+      int viewWidth,
+      int viewHeight) {
+    boolean swapped = rotationDegrees == 90 || rotationDegrees == 270;
+    int uprightWidth = swapped ? frameHeight : frameWidth;
+    int uprightHeight = swapped ? frameWidth : frameHeight;
+    float scale = Math.max((float) viewWidth / uprightWidth, (float) viewHeight / uprightHeight);
+    float dx = (viewWidth - uprightWidth * scale) / 2;
+    float dy = (viewHeight - uprightHeight * scale) / 2;
+    for (int i = offset, end = offset + 2 * count; i < end; i += 2) {
+      float x = points[i];
+      float y = points[i + 1];
+      float u, v;
+      switch (rotationDegrees) {
+        case 90:
+          u = frameHeight - y;
+          v = x;
+          break;
+        case 180:
+          u = frameWidth - x;
+          v = frameHeight - y;
+          break;
+        case 270:
+          u = y;
+          v = frameWidth - x;
+          break;
+        default:
+          u = x;
+          v = y;
+      }
+      points[i] = u * scale + dx;
+      points[i + 1] = v * scale + dy;
+    }
+  }
+
+  private static int clamp(int value, int max) {
+    return Math.max(0, Math.min(value, max));
+  }
+}
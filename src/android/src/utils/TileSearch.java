@@ -0,0 +1,297 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner.utils;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Searches a whole high-resolution frame for codes too small or too far off-center for the
+ * detector crop.
+ *
+ * <p>Every frame is searched at two levels. The coarse level is the full frame at half resolution,
+ * for codes larger than a tile. The fine level splits the frame into square tiles at full
+ * resolution that overlap by a quarter of their size, so any code up to that size lies completely
+ * inside at least one tile. Tiles are cropped in parallel on a fixed pool, after which the frame can
+ * be released, and at most {@code parallelism} tiles are with the detector at a time. Once every
+ * tile has reported, codes found in several tiles are merged: two hits are the same code when
+ * their keys match and their boxes, mapped back into frame coordinates, overlap.
+ *
+ * <p>One frame is searched at a time; {@link #isBusy} tells the caller to drop frames meanwhile.
+ */
+public class TileSearch<B> {
+  public static final int MAX_PARALLELISM = 4;
+  public static final int DEFAULT_PARALLELISM = 2;
+  /** Smallest tile edge that still gives the detector enough context. */
+  public static final int MIN_TILE_SIZE = 240;
+
+  // Hits whose boxes overlap by more than this fraction of the smaller box are the same code.
+  private static final double SAME_CODE_OVERLAP = .5;
+
+  /** Runs the detector on one tile and reports through {@link #onTileDetected}. */
+  public interface Detector {
+    void detect(Tile tile, ByteBuffer nv21, int width, int height, int rotationDegrees);
+  }
+
+  /** Identity and position of a detected code, used to merge hits of overlapping tiles. */
+  public interface Codes<B> {
+    String key(B code);
+
+    /** Box as {@code [left, top, right, bottom]} in the upright tile image, or null if unknown. */
+    int[] box(B code);
+  }
+
+  /** Receives the merged codes of a frame; {@code frameBoxes} are in sensor frame coordinates. */
+  public interface Listener<B> {
+    void onResult(List<B> codes, List<int[]> frameBoxes, long startNs);
+  }
+
+  /** A region of the sensor frame; the coarse level has a scale of 2. */
+  public static class Tile {
+    public final int left;
+    public final int top;
+    public final int width;
+    public final int height;
+    public final int scale;
+
+    Tile(int left, int top, int width, int height, int scale) {
+      this.left = left;
+      this.top = top;
+      this.width = width;
+      this.height = height;
+      this.scale = scale;
+    }
+  }
+
+  private final int tileSize;
+  private final int parallelism;
+  private final Detector detector;
+  private final Codes<B> codes;
+  private final Listener<B> listener;
+  private final ExecutorService croppers;
+
+  private final List<LuminanceCropper> buffers = new ArrayList<>();
+  private List<Tile> tiles = new ArrayList<>();
+  private final List<ByteBuffer> crops = new ArrayList<>();
+  private int frameWidth = -1;
+  private int frameHeight = -1;
+
+  // State of the frame being searched, guarded by this.
+  private boolean busy;
+  private int rotationDegrees;
+  private long startNs;
+  private int nextTile;
+  private int pendingTiles;
+  private final List<B> hits = new ArrayList<>();
+  private final List<int[]> hitBoxes = new ArrayList<>();
+
+  public TileSearch(
+      int tileSize, int parallelism, Detector detector, Codes<B> codes, Listener<B> listener) {
+    this.tileSize = LuminanceCropper.even(Math.max(MIN_TILE_SIZE, tileSize));
+    this.parallelism = Math.max(1, Math.min(MAX_PARALLELISM, parallelism));
+    this.detector = detector;
+    this.codes = codes;
+    this.listener = listener;
+    this.croppers = Executors.newFixedThreadPool(this.parallelism);
+  }
+
+  public synchronized boolean isBusy() {
+    return busy;
+  }
+
+  /**
+   * Copies every tile of the frame and starts detection. Returns once the frame's pixels are no
+   * longer needed, so the caller can release it right after. Returns false if a search is running.
+   */
+  public boolean search(
+      final ByteBuffer yBuffer,
+      final int rowStride,
+      int width,
+      int height,
+      int rotationDegrees,
+      long startNs) {
+    synchronized (this) {
+      if (busy) {
+        return false;
+      }
+      busy = true;
+      this.rotationDegrees = rotationDegrees;
+      this.startNs = startNs;
+      hits.clear();
+      hitBoxes.clear();
+    }
+    if (width != frameWidth || height != frameHeight) {
+      layout(width, height);
+    }
+
+    // Each task reads through its own view of the buffer, so positions do not interfere.
+    final CountDownLatch copied = new CountDownLatch(tiles.size());
+    for (int i = 0; i < tiles.size(); i++) {
+      final int index = i;
+      croppers.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            Tile tile = tiles.get(index);
+            ByteBuffer source = yBuffer.duplicate();
+            LuminanceCropper cropper = buffers.get(index);
+            crops.set(index, tile.scale == 2
+                ? cropper.cropHalf(source, rowStride, tile.left, tile.top, tile.width, tile.height)
+                : cropper.crop(source, rowStride, tile.left, tile.top, tile.width, tile.height));
+          } finally {
+            copied.countDown();
+          }
+        }
+      });
+    }
+    try {
+      copied.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      synchronized (this) {
+        busy = false;
+      }
+      return false;
+    }
+
+    int first;
+    synchronized (this) {
+      nextTile = 0;
+      pendingTiles = tiles.size();
+      first = Math.min(parallelism, tiles.size());
+      nextTile = first;
+    }
+    for (int i = 0; i < first; i++) {
+      detectTile(i);
+    }
+    return true;
+  }
+
+  /** Reports the codes of a tile, null if its detection failed. */
+  public void onTileDetected(Tile tile, List<B> found) {
+    int next = -1;
+    List<B> result = null;
+    List<int[]> resultBoxes = null;
+    long frameStartNs = 0;
+    synchronized (this) {
+      if (!busy) {
+        return;
+      }
+      if (found != null) {
+        for (B code : found) {
+          merge(code, toFrame(tile, codes.box(code)));
+        }
+      }
+      if (nextTile < tiles.size()) {
+        next = nextTile++;
+      }
+      if (--pendingTiles == 0) {
+        result = new ArrayList<>(hits);
+        resultBoxes = new ArrayList<>(hitBoxes);
+        frameStartNs = startNs;
+        busy = false;
+      }
+    }
+    if (next >= 0) {
+      detectTile(next);
+    }
+    if (result != null) {
+      listener.onResult(result, resultBoxes, frameStartNs);
+    }
+  }
+
+  public void shutdown() {
+    croppers.shutdownNow();
+  }
+
+  private void detectTile(int index) {
+    Tile tile = tiles.get(index);
+    int width = tile.width / tile.scale;
+    int height = tile.height / tile.scale;
+    detector.detect(tile, crops.get(index), width, height, rotationDegrees);
+  }
+
+  /** Lays out the coarse level and the overlapping fine tiles for a frame size. */
+  private void layout(int width, int height) {
+    List<Tile> layout = new ArrayList<>();
+    // Multiples of four, so the half-resolution crop stays NV21 aligned.
+    layout.add(new Tile(0, 0, width & ~3, height & ~3, 2));
+    int tileWidth = Math.min(tileSize, LuminanceCropper.even(width));
+    int tileHeight = Math.min(tileSize, LuminanceCropper.even(height));
+    int overlap = tileSize / 4;
+    int[] xs = positions(width, tileWidth, overlap);
+    int[] ys = positions(height, tileHeight, overlap);
+    for (int y : ys) {
+      for (int x : xs) {
+        layout.add(new Tile(x, y, tileWidth, tileHeight, 1));
+      }
+    }
+
+    while (buffers.size() < layout.size()) {
+      buffers.add(new LuminanceCropper());
+    }
+    crops.clear();
+    for (int i = 0; i < layout.size(); i++) {
+      crops.add(null);
+    }
+    tiles = layout;
+    frameWidth = width;
+    frameHeight = height;
+  }
+
+  /** Evenly spread tile origins along one axis, with at least {@code overlap} between neighbours. */
+  static int[] positions(int length, int tile, int overlap) {
+    if (length <= tile) {
+      return new int[] {0};
+    }
+    int step = tile - overlap;
+    int count = (length - tile + step - 1) / step + 1;
+    int[] origins = new int[count];
+    for (int i = 0; i < count; i++) {
+      origins[i] = LuminanceCropper.even((int) ((long) i * (length - tile) / (count - 1)));
+    }
+    return origins;
+  }
+
+  /** Maps a box of the upright tile image back into sensor frame coordinates. */
+  int[] toFrame(Tile tile, int[] box) {
+    return SensorRegionMapper.uprightToSensor(
+        box, tile.left, tile.top, tile.width, tile.height, tile.scale, rotationDegrees);
+  }
+
+  /** Adds a hit unless an earlier hit with the same key covers the same place. */
+  private void merge(B code, int[] frameBox) {
+    String key = codes.key(code);
+    for (int i = 0; i < hits.size(); i++) {
+      if (!key.equals(codes.key(hits.get(i)))) {
+        continue;
+      }
+      int[] other = hitBoxes.get(i);
+      if (frameBox == null || other == null || overlaps(frameBox, other)) {
+        // Keep the larger box, it is the one that saw the whole code.
+        if (frameBox != null && (other == null || area(frameBox) > area(other))) {
+          hits.set(i, code);
+          hitBoxes.set(i, frameBox);
+        }
+        return;
+      }
+    }
+    hits.add(code);
+    hitBoxes.add(frameBox);
+  }
+
+  static boolean overlaps(int[] a, int[] b) {
+    long width = Math.min(a[2], b[2]) - Math.max(a[0], b[0]);
+    long height = Math.min(a[3], b[3]) - Math.max(a[1], b[1]);
+    if (width <= 0 || height <= 0) {
+      return false;
+    }
+    return width * height > SAME_CODE_OVERLAP * Math.min(area(a), area(b));
+  }
+
+  private static long area(int[] box) {
+    return (long) (box[2] - box[0]) * (box[3] - box[1]);
+  }
+}
@@ -0,0 +1,131 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner.utils;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.common.HybridBinarizer;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Decodes the luminance crops of the analysis pipeline with an in-process ZXing reader, for
+ * devices where the ML Kit detector is not usable.
+ *
+ * <p>The input is the NV21 buffer of a {@link LuminanceCropper}; only its Y part is read. Camera
+ * crops live in direct buffers, so the luminance is copied once into a reused array, turned upright
+ * on the way because ZXing cannot rotate a {@link PlanarYUVLuminanceSource} and 1D readers only scan
+ * rows. Boxes are therefore in upright crop coordinates, like the ones ML Kit reports. The reader
+ * keeps state between calls and the array is reused, so an instance must only be used by one thread
+ * at a time. At most one code is returned per crop.
+ */
+public class ZxingFrameDecoder {
+  private final MultiFormatReader reader = new MultiFormatReader();
+  // Sensor orientation rows of the crop, only used when it has to be rotated.
+  private byte[] sensor;
+  private byte[] upright;
+  private int uprightWidth;
+  private int uprightHeight;
+
+  /** @param formats the formats to look for, or null or empty for every format ZXing knows */
+  public ZxingFrameDecoder(Collection<BarcodeFormat> formats) {
+    Map<DecodeHintType, Object> hints = new EnumMap<>(DecodeHintType.class);
+    if (formats != null && !formats.isEmpty()) {
+      hints.put(DecodeHintType.POSSIBLE_FORMATS, formats);
+    }
+    reader.setHints(hints);
+  }
+
+  /**
+   * Decodes a {@code width} x {@code height} NV21 crop that needs {@code rotationDegrees} clockwise
+   * to be upright. Returns null if no code was found. The buffer's position is left untouched.
+   */
+  public Result decode(ByteBuffer nv21, int width, int height, int rotationDegrees) {
+    toUpright(nv21, width, height, rotationDegrees);
+    PlanarYUVLuminanceSource source = new PlanarYUVLuminanceSource(
+        upright, uprightWidth, uprightHeight, 0, 0, uprightWidth, uprightHeight, false);
+    try {
+      return reader.decodeWithState(new BinaryBitmap(new HybridBinarizer(source)));
+    } catch (ReaderException e) {
+      return null;
+    } finally {
+      reader.reset();
+    }
+  }
+
+  /** Bounding box of the result points as {@code [left, top, right, bottom]}, or null if none. */
+  public static int[] boundingBox(Result result) {
+    ResultPoint[] points = result.getResultPoints();
+    if (points == null || points.length == 0) {
+      return null;
+    }
+    float left = Float.MAX_VALUE;
+    float top = Float.MAX_VALUE;
+    float right = -Float.MAX_VALUE;
+    float bottom = -Float.MAX_VALUE;
+    int count = 0;
+    for (ResultPoint point : points) {
+      if (point == null) {
+        continue;
+      }
+      left = Math.min(left, point.getX());
+      top = Math.min(top, point.getY());
+      right = Math.max(right, point.getX());
+      bottom = Math.max(bottom, point.getY());
+      count++;
+    }
+    if (count == 0) {
+      return null;
+    }
+    return new int[] {(int) left, (int) top, (int) Math.ceil(right), (int) Math.ceil(bottom)};
+  }
+
+  private void toUpright(ByteBuffer nv21, int width, int height, int rotationDegrees) {
+    int size = width * height;
+    boolean swap = rotationDegrees == 90 || rotationDegrees == 270;
+    uprightWidth = swap ? height : width;
+    uprightHeight = swap ? width : height;
+    if (upright == null || upright.length < size) {
+      upright = new byte[size];
+    }
+
+    ByteBuffer y = nv21.duplicate();
+    y.rewind();
+    if (rotationDegrees != 90 && rotationDegrees != 180 && rotationDegrees != 270) {
+      y.get(upright, 0, size);
+      return;
+    }
+    if (sensor == null || sensor.length < size) {
+      sensor = new byte[size];
+    }
+    y.get(sensor, 0, size);
+
+    if (rotationDegrees == 180) {
+      for (int i = 0, j = size - 1; i < size; i++, j--) {
+        upright[j] = sensor[i];
+      }
+      return;
+    }
+    // 90: (col, row) -> (height - 1 - row, col); 270: (col, row) -> (row, width - 1 - col).
+    // Every sensor row becomes an output column, so the reads stay sequential.
+    for (int row = 0; row < height; row++) {
+      int i = row * width;
+      if (rotationDegrees == 90) {
+        for (int j = height - 1 - row; j < size; j += height, i++) {
+          upright[j] = sensor[i];
+        }
+      } else {
+        for (int j = (width - 1) * height + row; j >= 0; j -= height, i++) {
+          upright[j] = sensor[i];
+        }
+      }
+    }
+  }
+}
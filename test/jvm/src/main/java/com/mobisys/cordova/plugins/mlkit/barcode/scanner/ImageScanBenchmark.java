@@ -0,0 +1,92 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONArray;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Images per second of the {@link ImageFileScanner} pool for a request of {@link #IMAGES} files,
+ * with a fake decoder that burns a fixed amount of CPU per image. The score is per image, so it
+ * shows how well the pool scales with the worker count and what the dispatch costs on top.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImageScanBenchmark {
+  static final int IMAGES = 64;
+
+  @Param({"1", "2", "4"})
+  public int workers;
+
+  /** CPU work per image, in JMH tokens; 0 measures the pool alone. */
+  @Param({"0", "100000"})
+  public long decodeTokens;
+
+  private ImageFileScanner scanner;
+  private List<String> uris;
+  private ImageFileScanner.Decoder decoder;
+
+  @Setup
+  public void setUp() {
+    scanner = new ImageFileScanner(workers);
+    uris = new ArrayList<>();
+    for (int i = 0; i < IMAGES; i++) {
+      uris.add("file://" + i);
+    }
+    final JSONArray codes = new JSONArray();
+    decoder =
+        uri -> {
+          Blackhole.consumeCPU(decodeTokens);
+          return codes;
+        };
+  }
+
+  @TearDown
+  public void tearDown() {
+    scanner.shutdown();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(IMAGES)
+  public int scan() throws InterruptedException {
+    final CountDownLatch done = new CountDownLatch(1);
+    final int[] scanned = new int[1];
+    scanner.scan(
+        uris,
+        decoder,
+        new ImageFileScanner.Listener() {
+          @Override
+          public void onImage(int index, String uri, JSONArray codes) {}
+
+          @Override
+          public void onImageFailed(int index, String uri, Exception e) {}
+
+          @Override
+          public void onFinished(int scannedImages, int failed) {
+            scanned[0] = scannedImages;
+            done.countDown();
+          }
+        });
+    done.await();
+    return scanned[0];
+  }
+}
@@ -0,0 +1,59 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner.utils;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per-frame cost of the crops the analyzer makes: the detector box at full resolution, and the
+ * whole frame at half resolution as the tile search does. Run with {@code -prof gc} to check that
+ * steady-state cropping allocates nothing.
+ *
+ * <p>Only the Y plane is measured because it is all the camera path reads: the detector gets an
+ * NV21 crop whose chroma is constant gray, so there is no UV plane conversion left to benchmark.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CropBenchmark {
+  @Param({"640x480", "1280x720", "1920x1080"})
+  public String resolution;
+
+  @Param({YuvFrames.TIGHT, YuvFrames.PADDED})
+  public String layout;
+
+  private YuvFrames frame;
+  private final LuminanceCropper cropper = new LuminanceCropper();
+  private final DetectorBox box = new DetectorBox();
+
+  @Setup
+  public void setUp() {
+    frame = YuvFrames.of(resolution, layout);
+    box.set(frame.width, frame.height, .6, true);
+  }
+
+  @Benchmark
+  public ByteBuffer detectorBox() {
+    return cropper.crop(frame.y, frame.rowStride, box.left, box.top, box.size, box.size);
+  }
+
+  @Benchmark
+  public ByteBuffer halfFrame() {
+    int width = frame.width & ~3;
+    int height = frame.height & ~3;
+    return cropper.cropHalf(frame.y, frame.rowStride, 0, 0, width, height);
+  }
+}
@@ -0,0 +1,55 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner.utils;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of the sharpness and motion score that decides whether a frame is cropped at all. It runs on
+ * every analysis frame, so it has to stay far below the crop it saves.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameSchedulerBenchmark {
+  @Param({"640x480", "1280x720", "1920x1080"})
+  public String resolution;
+
+  @Param({YuvFrames.TIGHT, YuvFrames.PADDED})
+  public String layout;
+
+  private YuvFrames[] frames;
+  private final FrameScheduler scheduler = new FrameScheduler(2, 15);
+  private final DetectorBox box = new DetectorBox();
+  private int next;
+  private long nowNs;
+
+  @Setup
+  public void setUp() {
+    YuvFrames frame = YuvFrames.of(resolution, layout);
+    frames = new YuvFrames[] {frame, YuvFrames.shifted(frame, layout, 12)};
+    box.set(frame.width, frame.height, .6, true);
+  }
+
+  /** Scores alternating frames of a moving scene, at the maximum detection rate. */
+  @Benchmark
+  public boolean shouldDetect() {
+    YuvFrames frame = frames[next ^= 1];
+    // One maximum-rate interval per call, so every frame is scored.
+    nowNs += 70_000_000L;
+    return scheduler.shouldDetect(
+        frame.y, frame.rowStride, box.left, box.top, box.size, box.size, nowNs);
+  }
+}
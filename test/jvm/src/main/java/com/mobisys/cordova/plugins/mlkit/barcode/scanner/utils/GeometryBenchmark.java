@@ -0,0 +1,41 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner.utils;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The detector box arithmetic: centering the box, and mapping it from the preview into the sensor
+ * frame for every rotation. The mapper caches its result, so the view size alternates to make every
+ * call recompute it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeometryBenchmark {
+  private final DetectorBox box = new DetectorBox();
+  private final SensorRegionMapper mapper = new SensorRegionMapper();
+  private int call;
+
+  @Benchmark
+  public int detectorBox() {
+    return box.set(1920, 1080, .6, true).left;
+  }
+
+  @Benchmark
+  public int sensorRegion() {
+    call++;
+    mapper.update(1080 + (call & 1), 2340, 1280, 720, (call & 3) * 90, .6);
+    return mapper.left;
+  }
+}
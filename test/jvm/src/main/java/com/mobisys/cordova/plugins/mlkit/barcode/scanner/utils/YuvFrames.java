@@ -0,0 +1,168 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner.utils;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.MultiFormatWriter;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Synthetic Y planes of YUV_420_888 camera frames, for benchmarks and tests.
+ *
+ * <p>Frames are direct buffers like the ones CameraX hands out, with an optional row padding: some
+ * devices deliver rows exactly {@code width} bytes apart, others pad every row to an alignment. The
+ * content is a vertical bar pattern with noise, so it has edges to score and something to detect;
+ * {@link #shifted} gives the same scene moved sideways, as seen by a moving camera, and {@link
+ * #blurred} the same scene out of focus. {@link #barcode} frames show a real code, for decoding.
+ */
+public final class YuvFrames {
+  /** Resolutions of the analysis ladder, as {@code "<width>x<height>"}. */
+  public static final String[] RESOLUTIONS = {"640x480", "1280x720", "1920x1080"};
+
+  /** Rows exactly {@code width} bytes apart. */
+  public static final String TIGHT = "tight";
+  /** Rows padded to a multiple of 256 bytes, plus 256 if that adds nothing. */
+  public static final String PADDED = "padded";
+
+  public final int width;
+  public final int height;
+  public final int rowStride;
+  public final ByteBuffer y;
+
+  private YuvFrames(int width, int height, int rowStride, ByteBuffer y) {
+    this.width = width;
+    this.height = height;
+    this.rowStride = rowStride;
+    this.y = y;
+  }
+
+  /** A frame of the given {@code "<width>x<height>"} resolution and row layout. */
+  public static YuvFrames of(String resolution, String layout) {
+    String[] size = resolution.split("x");
+    return create(Integer.parseInt(size[0]), Integer.parseInt(size[1]), layout, 0);
+  }
+
+  /** The same scene as {@code frame}, moved {@code dx} pixels to the right. */
+  public static YuvFrames shifted(YuvFrames frame, String layout, int dx) {
+    return create(frame.width, frame.height, layout, dx);
+  }
+
+  /** The same scene as {@code frame}, averaged over {@code radius} pixels to each side. */
+  public static YuvFrames blurred(YuvFrames frame, int radius) {
+    ByteBuffer y = ByteBuffer.allocateDirect(frame.rowStride * frame.height);
+    for (int r = 0; r < frame.height; r++) {
+      for (int x = 0; x < frame.rowStride; x++) {
+        int value = frame.y.get(r * frame.rowStride + x) & 0xFF;
+        if (x < frame.width) {
+          int sum = 0;
+          int count = 0;
+          for (int dy = -radius; dy <= radius; dy++) {
+            for (int dx = -radius; dx <= radius; dx++) {
+              int sx = Math.min(frame.width - 1, Math.max(0, x + dx));
+              int sy = Math.min(frame.height - 1, Math.max(0, r + dy));
+              sum += frame.get(sx, sy);
+              count++;
+            }
+          }
+          value = sum / count;
+        }
+        y.put(r * frame.rowStride + x, (byte) value);
+      }
+    }
+    return new YuvFrames(frame.width, frame.height, frame.rowStride, y);
+  }
+
+  /** A frame of uniform luminance {@code value}. */
+  public static YuvFrames uniform(int width, int height, int value) {
+    ByteBuffer y = ByteBuffer.allocateDirect(width * height);
+    for (int i = 0; i < width * height; i++) {
+      y.put(i, (byte) value);
+    }
+    return new YuvFrames(width, height, width, y);
+  }
+
+  /**
+   * A tight frame showing a code generated by ZXing, turned so that it needs {@code
+   * rotationDegrees} clockwise to be upright, like a camera frame of a code held in front of a
+   * rotated sensor. The code fills the left half of the upright frame, so a frame turned the wrong
+   * way shows the code elsewhere even if it still decodes.
+   */
+  public static YuvFrames barcode(
+      BarcodeFormat format, String contents, int width, int height, int rotationDegrees) {
+    boolean swap = rotationDegrees == 90 || rotationDegrees == 270;
+    int uprightWidth = swap ? height : width;
+    int uprightHeight = swap ? width : height;
+    int codeWidth = uprightWidth / 2;
+    BitMatrix code;
+    try {
+      code = new MultiFormatWriter().encode(contents, format, codeWidth, uprightHeight);
+    } catch (WriterException e) {
+      throw new IllegalArgumentException(e);
+    }
+    int left = (code.getWidth() - codeWidth) / 2;
+    int top = (code.getHeight() - uprightHeight) / 2;
+    ByteBuffer y = ByteBuffer.allocateDirect(width * height);
+    Random noise = new Random(42);
+    for (int row = 0; row < height; row++) {
+      for (int col = 0; col < width; col++) {
+        // The upright pixel this sensor pixel shows, the inverse of the decoder's rotation.
+        int ux;
+        int uy;
+        switch (rotationDegrees) {
+          case 90:
+            ux = height - 1 - row;
+            uy = col;
+            break;
+          case 180:
+            ux = width - 1 - col;
+            uy = height - 1 - row;
+            break;
+          case 270:
+            ux = row;
+            uy = width - 1 - col;
+            break;
+          default:
+            ux = col;
+            uy = row;
+        }
+        int value = ux < codeWidth && code.get(left + ux, top + uy) ? 30 : 220;
+        y.put(row * width + col, (byte) (value + noise.nextInt(16)));
+      }
+    }
+    return new YuvFrames(width, height, width, y);
+  }
+
+  /** Luminance at {@code (x, y)}. */
+  public int get(int x, int y) {
+    return this.y.get(y * rowStride + x) & 0xFF;
+  }
+
+  private static YuvFrames create(int width, int height, String layout, int dx) {
+    int rowStride = width;
+    if (PADDED.equals(layout)) {
+      rowStride = (width + 255) / 256 * 256;
+      if (rowStride == width) {
+        rowStride += 256;
+      }
+    }
+    ByteBuffer y = ByteBuffer.allocateDirect(rowStride * height);
+    Random noise = new Random(42);
+    byte[] row = new byte[rowStride];
+    for (int r = 0; r < height; r++) {
+      for (int x = 0; x < width; x++) {
+        // Bars of 8 to 24 pixels, like a 1D code seen from a short distance.
+        int bar = ((x - dx) & 0x3FF) * 7 / 64 % 3;
+        int value = bar == 0 ? 40 : 210;
+        row[x] = (byte) (value + noise.nextInt(16));
+      }
+      // Padding bytes are garbage on real devices.
+      for (int x = width; x < rowStride; x++) {
+        row[x] = (byte) 0xEE;
+      }
+      y.put(row);
+    }
+    y.clear();
+    return new YuvFrames(width, height, rowStride, y);
+  }
+}
@@ -0,0 +1,56 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner.utils;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Result;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per-crop cost of the in-process ZXing fallback on a detector box that shows a code, generated
+ * with ZXing's writer. Rotations other than 0 include turning the crop upright; {@code -prof gc}
+ * shows what the reader itself allocates per decode.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ZxingDecodeBenchmark {
+  private static final int SIZE = 640;
+
+  @Param({"QR_CODE", "CODE_128", "EAN_13"})
+  public String format;
+
+  @Param({"0", "90"})
+  public int rotation;
+
+  private YuvFrames crop;
+  private ZxingFrameDecoder decoder;
+
+  @Setup
+  public void setUp() {
+    BarcodeFormat barcodeFormat = BarcodeFormat.valueOf(format);
+    String contents = barcodeFormat == BarcodeFormat.EAN_13 ? "4006381333931" : "12345678";
+    crop = YuvFrames.barcode(barcodeFormat, contents, SIZE, SIZE, rotation);
+    decoder = new ZxingFrameDecoder(null);
+    if (decoder.decode(crop.y, SIZE, SIZE, rotation) == null) {
+      throw new IllegalStateException("the synthetic " + format + " does not decode");
+    }
+  }
+
+  @Benchmark
+  public Result decode() {
+    return decoder.decode(crop.y, SIZE, SIZE, rotation);
+  }
+}
@@ -0,0 +1,4 @@
+package android.content;
+
+/** Compile stub: the plugin sources only pass intents through on the JVM. */
+public class Intent {}
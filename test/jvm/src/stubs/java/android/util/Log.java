@@ -0,0 +1,11 @@
+package android.util;
+
+/** Compile stub that writes to standard error. */
+public final class Log {
+  private Log() {}
+
+  public static int w(String tag, String msg, Throwable tr) {
+    System.err.println(tag + ": " + msg + ": " + tr);
+    return 0;
+  }
+}
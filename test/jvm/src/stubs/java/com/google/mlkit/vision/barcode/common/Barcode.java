@@ -0,0 +1,18 @@
+package com.google.mlkit.vision.barcode.common;
+
+/** Compile stub with the values of ML Kit's format constants. */
+public class Barcode {
+  public static final int FORMAT_CODE_128 = 1;
+  public static final int FORMAT_CODE_39 = 2;
+  public static final int FORMAT_CODE_93 = 4;
+  public static final int FORMAT_CODABAR = 8;
+  public static final int FORMAT_DATA_MATRIX = 16;
+  public static final int FORMAT_EAN_13 = 32;
+  public static final int FORMAT_EAN_8 = 64;
+  public static final int FORMAT_ITF = 128;
+  public static final int FORMAT_QR_CODE = 256;
+  public static final int FORMAT_UPC_A = 512;
+  public static final int FORMAT_UPC_E = 1024;
+  public static final int FORMAT_PDF417 = 2048;
+  public static final int FORMAT_AZTEC = 4096;
+}
@@ -0,0 +1,6 @@
+package org.apache.cordova;
+
+/** Compile stub; tests override {@link #sendPluginResult} to see what the plugin sends. */
+public class CallbackContext {
+  public void sendPluginResult(PluginResult result) {}
+}
@@ -0,0 +1,42 @@
+package org.apache.cordova;
+
+import org.json.JSONArray;
+
+/** Compile stub holding what the plugin puts into a result. */
+public class PluginResult {
+  public enum Status {
+    OK,
+    ERROR
+  }
+
+  private final Status status;
+  private final Object message;
+  private boolean keepCallback;
+
+  public PluginResult(Status status, JSONArray message) {
+    this.status = status;
+    this.message = message;
+  }
+
+  public PluginResult(Status status, byte[] message) {
+    this.status = status;
+    this.message = message;
+  }
+
+  public Status getStatus() {
+    return status;
+  }
+
+  /** The {@link JSONArray} or byte array passed in. */
+  public Object getMessage() {
+    return message;
+  }
+
+  public boolean getKeepCallback() {
+    return keepCallback;
+  }
+
+  public void setKeepCallback(boolean keepCallback) {
+    this.keepCallback = keepCallback;
+  }
+}
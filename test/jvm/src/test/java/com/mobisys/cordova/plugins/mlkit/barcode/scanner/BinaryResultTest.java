@@ -0,0 +1,90 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.junit.Test;
+
+public class BinaryResultTest {
+  private static final ResultHistory.Sighting NEW =
+      new ResultHistory.Sighting(false, 1_700_000_000_123L, 0);
+  private static final ResultHistory.Sighting SEEN =
+      new ResultHistory.Sighting(true, 1_700_000_000_123L, 1_700_000_000_500L);
+
+  @Test
+  public void resultWithBoxFillsEveryHeaderField() {
+    byte[] packed =
+        BinaryResult.encode("ABC-123", 256, 7, null, new int[] {10, -20, 300, 400}, SEEN);
+
+    assertEquals(BinaryResult.HEADER_SIZE + 7, packed.length);
+    assertEquals(BinaryResult.VERSION, packed[0]);
+    assertEquals(BinaryResult.FLAG_SEEN_BEFORE | BinaryResult.FLAG_BOUNDING_BOX, packed[1]);
+    ByteBuffer in = little(packed);
+    assertEquals(7, in.getShort(2));
+    assertEquals(256, in.getInt(4));
+    assertEquals(10, in.getInt(8));
+    assertEquals(-20, in.getInt(12));
+    assertEquals(300, in.getInt(16));
+    assertEquals(400, in.getInt(20));
+    assertEquals(1_700_000_000_123.0, in.getDouble(24), 0);
+    assertEquals(7, in.getInt(32));
+    assertEquals("ABC-123", text(packed, 36, 7));
+  }
+
+  @Test
+  public void numbersAreLittleEndian() {
+    byte[] packed = BinaryResult.encode("", 0x01020304, 0x0506, null, new int[] {1, 0, 0, 0}, NEW);
+
+    assertArrayEquals(new byte[] {0x06, 0x05}, Arrays.copyOfRange(packed, 2, 4));
+    assertArrayEquals(new byte[] {0x04, 0x03, 0x02, 0x01}, Arrays.copyOfRange(packed, 4, 8));
+    assertArrayEquals(new byte[] {1, 0, 0, 0}, Arrays.copyOfRange(packed, 8, 12));
+    long bits = Double.doubleToLongBits(1_700_000_000_123.0);
+    assertEquals((byte) bits, packed[24]);
+    assertEquals((byte) (bits >>> 56), packed[31]);
+  }
+
+  @Test
+  public void resultWithoutBoxHasZerosAndNoBoxFlag() {
+    byte[] packed = BinaryResult.encode("x", 1, 2, null, null, NEW);
+
+    assertEquals(BinaryResult.HEADER_SIZE + 1, packed.length);
+    assertEquals(0, packed[1]);
+    assertArrayEquals(new byte[16], Arrays.copyOfRange(packed, 8, 24));
+    assertEquals(1, little(packed).getInt(32));
+  }
+
+  @Test
+  public void textLengthCountsUtf8BytesAndRawBytesFollowTheText() {
+    String value = "Gr\u00fc\u00dfe \ud83d\ude42";
+    byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+    byte[] raw = {(byte) 0xff, 0, (byte) 0xc3};
+    byte[] packed = BinaryResult.encode(value, 1, 2, raw, null, NEW);
+
+    assertEquals(12, utf8.length);
+    assertEquals(BinaryResult.HEADER_SIZE + utf8.length + raw.length, packed.length);
+    assertEquals(BinaryResult.FLAG_RAW_BYTES, packed[1]);
+    assertEquals(utf8.length, little(packed).getInt(32));
+    assertEquals(value, text(packed, 36, utf8.length));
+    assertArrayEquals(raw, Arrays.copyOfRange(packed, 36 + utf8.length, packed.length));
+  }
+
+  @Test
+  public void nullTextIsEmpty() {
+    byte[] packed = BinaryResult.encode(null, 1, 2, null, null, NEW);
+
+    assertEquals(BinaryResult.HEADER_SIZE, packed.length);
+    assertEquals(0, little(packed).getInt(32));
+  }
+
+  static ByteBuffer little(byte[] packed) {
+    return ByteBuffer.wrap(packed).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  private static String text(byte[] packed, int offset, int length) {
+    return new String(packed, offset, length, StandardCharsets.UTF_8);
+  }
+}
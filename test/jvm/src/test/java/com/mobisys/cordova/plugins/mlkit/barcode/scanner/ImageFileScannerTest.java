@@ -0,0 +1,178 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.json.JSONArray;
+import org.junit.After;
+import org.junit.Test;
+
+public class ImageFileScannerTest {
+  private ImageFileScanner scanner;
+  private final Recorder recorder = new Recorder();
+
+  @After
+  public void shutDown() {
+    if (scanner != null) {
+      scanner.shutdown();
+    }
+  }
+
+  @Test
+  public void noMoreImagesThanWorkersAreDecodedAtOnce() throws Exception {
+    scanner = new ImageFileScanner(3);
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger maxRunning = new AtomicInteger();
+    scanner.scan(
+        uris(20),
+        uri -> {
+          maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+          Thread.sleep(5);
+          running.decrementAndGet();
+          return codes(uri);
+        },
+        recorder);
+    recorder.await();
+    assertEquals(3, maxRunning.get());
+    assertEquals(20, recorder.images.size());
+  }
+
+  @Test
+  public void workerCountIsClamped() throws Exception {
+    scanner = new ImageFileScanner(100);
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger maxRunning = new AtomicInteger();
+    scanner.scan(
+        uris(20),
+        uri -> {
+          maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+          Thread.sleep(5);
+          running.decrementAndGet();
+          return codes(uri);
+        },
+        recorder);
+    recorder.await();
+    assertTrue(maxRunning.get() <= ImageFileScanner.MAX_WORKERS);
+  }
+
+  @Test
+  public void failedImagesAreCountedAndTheRestStillReported() throws Exception {
+    scanner = new ImageFileScanner(2);
+    scanner.scan(
+        uris(6),
+        uri -> {
+          if (uri.endsWith("1")) {
+            throw new FileNotFoundException(uri);
+          }
+          if (uri.endsWith("4")) {
+            throw new OutOfMemoryError("too large");
+          }
+          return codes(uri);
+        },
+        recorder);
+    recorder.await();
+    assertEquals(Arrays.asList(1, 4), sorted(recorder.failedIndexes));
+    assertEquals(Arrays.asList(0, 2, 3, 5), sorted(recorder.indexes));
+    assertEquals(Collections.singletonList("4 2"), recorder.finished);
+  }
+
+  @Test
+  public void imagesAreReportedInCompletionOrderWithTheirIndex() throws Exception {
+    scanner = new ImageFileScanner(2);
+    final CountDownLatch secondDone = new CountDownLatch(1);
+    Recorder ordered =
+        new Recorder() {
+          @Override
+          public void onImage(int index, String uri, JSONArray codes) {
+            super.onImage(index, uri, codes);
+            secondDone.countDown();
+          }
+        };
+    scanner.scan(
+        uris(2),
+        uri -> {
+          if (uri.endsWith("0")) {
+            // The first image waits until the second one was reported.
+            assertTrue(secondDone.await(2, TimeUnit.SECONDS));
+          }
+          return codes(uri);
+        },
+        ordered);
+    ordered.await();
+    assertEquals(Arrays.asList(1, 0), ordered.indexes);
+    assertEquals("file://1", ordered.images.get(0).getString(0));
+  }
+
+  @Test
+  public void finishedIsCalledExactlyOnce() throws Exception {
+    scanner = new ImageFileScanner(4);
+    scanner.scan(uris(50), ImageFileScannerTest::codes, recorder);
+    recorder.await();
+    // Give a late duplicate the chance to arrive.
+    Thread.sleep(50);
+    assertEquals(Collections.singletonList("50 0"), recorder.finished);
+  }
+
+  @Test
+  public void emptyRequestFinishesRightAway() {
+    scanner = new ImageFileScanner(1);
+    scanner.scan(Collections.<String>emptyList(), ImageFileScannerTest::codes, recorder);
+    assertEquals(Collections.singletonList("0 0"), recorder.finished);
+  }
+
+  private static List<String> uris(int count) {
+    List<String> uris = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      uris.add("file://" + i);
+    }
+    return uris;
+  }
+
+  // One positional code per image, holding its uri as the value.
+  private static JSONArray codes(String uri) {
+    return new JSONArray().put(new JSONArray().put(uri).put(256));
+  }
+
+  private static List<Integer> sorted(List<Integer> values) {
+    List<Integer> copy = new ArrayList<>(values);
+    Collections.sort(copy);
+    return copy;
+  }
+
+  private static class Recorder implements ImageFileScanner.Listener {
+    final List<JSONArray> images = Collections.synchronizedList(new ArrayList<JSONArray>());
+    final List<Integer> indexes = Collections.synchronizedList(new ArrayList<Integer>());
+    final List<Integer> failedIndexes = Collections.synchronizedList(new ArrayList<Integer>());
+    final List<String> finished = Collections.synchronizedList(new ArrayList<String>());
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    @Override
+    public void onImage(int index, String uri, JSONArray codes) {
+      indexes.add(index);
+      images.add(codes.getJSONArray(0));
+    }
+
+    @Override
+    public void onImageFailed(int index, String uri, Exception e) {
+      failedIndexes.add(index);
+    }
+
+    @Override
+    public void onFinished(int scanned, int failed) {
+      finished.add(scanned + " " + failed);
+      done.countDown();
+    }
+
+    void await() throws InterruptedException {
+      assertTrue("not finished", done.await(5, TimeUnit.SECONDS));
+    }
+  }
+}
@@ -0,0 +1,206 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ResultDispatcherTest {
+  private static final int FLUSH_SIZE = 4;
+
+  private final ScanMetrics metrics = ScanMetrics.get();
+  private final FakeCallback callback = new FakeCallback();
+
+  @Before
+  public void resetMetrics() {
+    metrics.reset();
+  }
+
+  @Test
+  public void fullBatchIsSentRightAway() throws Exception {
+    ResultDispatcher dispatcher = dispatcher(ResultDispatcher.POLICY_DROP_OLDEST);
+    offer(dispatcher, 0, FLUSH_SIZE);
+    JSONArray message = (JSONArray) callback.next().getMessage();
+    assertEquals(FLUSH_SIZE, message.length());
+    assertEquals("code0", message.getJSONArray(0).getString(0));
+    dispatcher.close();
+  }
+
+  @Test
+  public void binaryBatchIsFramedAsLengthPrefixedRecords() throws Exception {
+    ResultDispatcher dispatcher = dispatcher(ResultDispatcher.POLICY_DROP_OLDEST);
+    byte[][] records = new byte[FLUSH_SIZE][];
+    for (int i = 0; i < FLUSH_SIZE; i++) {
+      records[i] =
+          BinaryResult.encode(
+              "code" + i + "\u00e9", i, 1, null, null, new ResultHistory.Sighting(false, i, 0));
+      dispatcher.offer("code" + i, records[i]);
+    }
+    byte[] message = (byte[]) callback.next().getMessage();
+
+    ByteBuffer in = BinaryResultTest.little(message);
+    assertEquals(ResultDispatcher.BINARY_BATCH_MARKER, message[0]);
+    assertEquals(FLUSH_SIZE, in.getInt(4));
+    int offset = 8;
+    for (byte[] record : records) {
+      assertEquals(record.length, in.getInt(offset));
+      offset += 4;
+      assertArrayEquals(record, Arrays.copyOfRange(message, offset, offset + record.length));
+      offset += record.length;
+    }
+    assertEquals(message.length, offset);
+    dispatcher.close();
+  }
+
+  @Test
+  public void unacknowledgedMessagesHoldBackTheNextOnes() throws Exception {
+    ResultDispatcher dispatcher = dispatcher(ResultDispatcher.POLICY_DROP_OLDEST);
+    int sent = fillUnacked(dispatcher);
+    offer(dispatcher, sent, 2 * FLUSH_SIZE);
+    callback.assertNothingSent();
+
+    // Both waiting batches leave as one message.
+    dispatcher.acknowledge(1);
+    assertEquals(2 * FLUSH_SIZE, ((JSONArray) callback.next().getMessage()).length());
+    dispatcher.close();
+  }
+
+  @Test
+  public void fullRingAppliesTheOverflowPolicyWhileThePageIsBehind() throws Exception {
+    ResultDispatcher dispatcher = dispatcher(ResultDispatcher.POLICY_DROP_OLDEST);
+    int sent = fillUnacked(dispatcher);
+    offer(dispatcher, sent, ResultDispatcher.MIN_CAPACITY + 10);
+    assertEquals(10, dispatch().getLong("dropped"));
+
+    dispatcher.close();
+    JSONArray waiting = (JSONArray) callback.next().getMessage();
+    assertEquals(ResultDispatcher.MIN_CAPACITY, waiting.length());
+    assertEquals("code" + (sent + 10), waiting.getJSONArray(0).getString(0));
+  }
+
+  @Test
+  public void mergePolicyKeepsTheNewestSightingOfAWaitingCode() throws Exception {
+    ResultDispatcher dispatcher = dispatcher(ResultDispatcher.POLICY_MERGE);
+    int sent = fillUnacked(dispatcher);
+    offer(dispatcher, sent, ResultDispatcher.MIN_CAPACITY);
+    dispatcher.offer("code" + sent, new JSONArray().put("code" + sent).put("again"));
+    assertEquals(1, dispatch().getLong("merged"));
+    assertEquals(0, dispatch().getLong("dropped"));
+
+    dispatcher.close();
+    JSONArray first = ((JSONArray) callback.next().getMessage()).getJSONArray(0);
+    assertEquals("again", first.getString(1));
+  }
+
+  @Test
+  public void messageRateFollowsThePage() throws Exception {
+    // A page that needs 2 ms per message while results arrive as fast as they can.
+    callback.ackDelayMs = 2;
+    ResultDispatcher dispatcher = dispatcher(ResultDispatcher.POLICY_DROP_OLDEST);
+    callback.startPage(dispatcher);
+    int results = 20_000;
+    long start = System.nanoTime();
+    offer(dispatcher, 0, results);
+    Thread.sleep(200);
+    long elapsedNs = System.nanoTime() - start;
+    dispatcher.close();
+    callback.stopPage();
+
+    double messagesPerSecond = callback.messages * 1e9 / elapsedNs;
+    JSONObject dispatch = dispatch();
+    assertTrue("messages/s " + messagesPerSecond, messagesPerSecond < 1.2 * 1000 / 2);
+    assertTrue(callback.maxUnacked <= ResultDispatcher.MAX_UNACKED + 1);
+    assertTrue(dispatch.getLong("dropped") > 0);
+    assertEquals(results, dispatch.getLong("results") + dispatch.getLong("dropped"));
+  }
+
+  private ResultDispatcher dispatcher(String policy) {
+    return new ResultDispatcher(callback, 1000, FLUSH_SIZE, policy, metrics);
+  }
+
+  // Sends as many single batch messages as the page may leave unacknowledged.
+  private int fillUnacked(ResultDispatcher dispatcher) throws InterruptedException {
+    for (int i = 0; i < ResultDispatcher.MAX_UNACKED; i++) {
+      offer(dispatcher, i * FLUSH_SIZE, FLUSH_SIZE);
+      assertEquals(FLUSH_SIZE, ((JSONArray) callback.next().getMessage()).length());
+    }
+    return ResultDispatcher.MAX_UNACKED * FLUSH_SIZE;
+  }
+
+  private JSONObject dispatch() throws Exception {
+    return metrics.toJSON().getJSONObject("dispatch");
+  }
+
+  private static void offer(ResultDispatcher dispatcher, int first, int count) {
+    for (int i = first; i < first + count; i++) {
+      dispatcher.offer("code" + i, new JSONArray().put("code" + i).put(i));
+    }
+  }
+
+  // The WebView side of the bridge; an optional page thread handles and acknowledges messages.
+  private static class FakeCallback extends CallbackContext {
+    final BlockingQueue<PluginResult> sent = new LinkedBlockingQueue<>();
+    long ackDelayMs;
+    volatile int messages;
+    volatile int maxUnacked;
+    private int unacked;
+    private Thread page;
+    private volatile boolean stopped;
+
+    @Override
+    public synchronized void sendPluginResult(PluginResult result) {
+      assertTrue(result.getKeepCallback());
+      messages++;
+      maxUnacked = Math.max(maxUnacked, ++unacked);
+      sent.add(result);
+    }
+
+    PluginResult next() throws InterruptedException {
+      PluginResult result = sent.poll(2, TimeUnit.SECONDS);
+      assertTrue("no message sent", result != null);
+      return result;
+    }
+
+    void assertNothingSent() throws InterruptedException {
+      assertEquals(null, sent.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    void startPage(ResultDispatcher dispatcher) {
+      page =
+          new Thread(
+              () -> {
+                try {
+                  while (!stopped) {
+                    if (sent.poll(10, TimeUnit.MILLISECONDS) == null) {
+                      continue;
+                    }
+                    Thread.sleep(ackDelayMs);
+                    synchronized (this) {
+                      unacked--;
+                    }
+                    dispatcher.acknowledge(1);
+                  }
+                } catch (InterruptedException e) {
+                  // Stopped.
+                }
+              });
+      page.start();
+    }
+
+    void stopPage() throws InterruptedException {
+      stopped = true;
+      page.join();
+    }
+  }
+}
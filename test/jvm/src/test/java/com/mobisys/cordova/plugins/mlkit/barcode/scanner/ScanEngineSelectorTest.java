@@ -0,0 +1,138 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import android.content.Intent;
+import java.util.Arrays;
+import java.util.Collections;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class ScanEngineSelectorTest {
+  private final StubEngine capture =
+      new StubEngine(
+          "capture",
+          ScanEngine.CAP_CONTINUOUS | ScanEngine.CAP_BATCH | ScanEngine.CAP_ROI,
+          ScanEngine.LATENCY_FAST);
+  private final StubEngine gms = new StubEngine("gms", 0, ScanEngine.LATENCY_MEDIUM);
+  private final StubEngine zxing = new StubEngine("zxing", 0, ScanEngine.LATENCY_SLOW);
+  private final ScanEngineSelector selector =
+      new ScanEngineSelector(Arrays.<ScanEngine>asList(zxing, gms, capture));
+
+  @Test
+  public void unmeasuredEnginesAreRankedByLatencyClass() {
+    assertSame(capture, select(ScanEngine.MODE_SINGLE));
+    assertSame(gms, select(ScanEngine.MODE_SINGLE, "capture"));
+  }
+
+  @Test
+  public void measuredLatencyWinsOnceBothEnginesHaveEnoughSamples() {
+    record(capture, 900, ScanEngineSelector.MIN_SAMPLES);
+    record(gms, 300, ScanEngineSelector.MIN_SAMPLES - 1);
+    assertSame(capture, select(ScanEngine.MODE_SINGLE));
+    record(gms, 300, 1);
+    assertSame(gms, select(ScanEngine.MODE_SINGLE));
+  }
+
+  @Test
+  public void nativeSupportOfTheModeComesBeforeLatency() {
+    record(capture, 900, ScanEngineSelector.MIN_SAMPLES);
+    record(gms, 300, ScanEngineSelector.MIN_SAMPLES);
+    assertSame(capture, select(ScanEngine.MODE_CONTINUOUS));
+    assertSame(capture, select(ScanEngine.MODE_BATCH));
+    assertSame(gms, select(ScanEngine.MODE_SINGLE));
+  }
+
+  @Test
+  public void engineWithoutNativeSupportStillServesTheMode() {
+    assertSame(gms, select(ScanEngine.MODE_CONTINUOUS, "capture"));
+  }
+
+  @Test
+  public void unavailableAndFailedEnginesAreSkipped() {
+    capture.available = false;
+    assertSame(gms, select(ScanEngine.MODE_SINGLE));
+    assertSame(zxing, select(ScanEngine.MODE_SINGLE, "gms"));
+    assertNull(select(ScanEngine.MODE_SINGLE, "gms", "zxing"));
+  }
+
+  @Test
+  public void tiesKeepTheListOrder() {
+    StubEngine first = new StubEngine("first", 0, ScanEngine.LATENCY_MEDIUM);
+    StubEngine second = new StubEngine("second", 0, ScanEngine.LATENCY_MEDIUM);
+    ScanEngineSelector selector =
+        new ScanEngineSelector(Arrays.<ScanEngine>asList(first, second));
+    assertSame(first, selector.select(ScanEngine.MODE_SINGLE, Collections.<String>emptySet()));
+  }
+
+  @Test
+  public void latencyIsSmoothed() throws Exception {
+    selector.recordLatency(gms, 100);
+    selector.recordLatency(gms, 200);
+    JSONObject stats = selector.toJSON().getJSONObject("gms");
+    assertEquals(2, stats.getInt("samples"));
+    assertEquals(130, stats.getLong("avgLatencyMs"));
+    assertEquals(0, selector.toJSON().getJSONObject("zxing").getInt("samples"));
+  }
+
+  private ScanEngine select(int mode, String... excluded) {
+    return selector.select(mode, Arrays.asList(excluded));
+  }
+
+  private void record(ScanEngine engine, long latencyMs, int samples) {
+    for (int i = 0; i < samples; i++) {
+      selector.recordLatency(engine, latencyMs);
+    }
+  }
+
+  private static class StubEngine implements ScanEngine {
+    private final String name;
+    private final int capabilities;
+    private final int latencyClass;
+    boolean available = true;
+
+    StubEngine(String name, int capabilities, int latencyClass) {
+      this.name = name;
+      this.capabilities = capabilities;
+      this.latencyClass = latencyClass;
+    }
+
+    @Override
+    public String getName() {
+      return name;
+    }
+
+    @Override
+    public int getCapabilities() {
+      return capabilities;
+    }
+
+    @Override
+    public int getLatencyClass() {
+      return latencyClass;
+    }
+
+    @Override
+    public boolean isAvailable() {
+      return available;
+    }
+
+    @Override
+    public boolean isWarm(int formats) {
+      return false;
+    }
+
+    @Override
+    public void start(ScanOptions options, int mode, Listener listener) {}
+
+    @Override
+    public boolean onActivityResult(int requestCode, int resultCode, Intent data) {
+      return false;
+    }
+
+    @Override
+    public void release() {}
+  }
+}
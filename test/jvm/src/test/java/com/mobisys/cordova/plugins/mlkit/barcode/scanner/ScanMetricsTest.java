@@ -0,0 +1,43 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner;
+
+import static org.junit.Assert.assertEquals;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ScanMetricsTest {
+  private final ScanMetrics metrics = ScanMetrics.get();
+
+  @Before
+  public void resetMetrics() {
+    metrics.reset();
+  }
+
+  @Test
+  public void skippedAndBusyFramesAreCountedApart() throws Exception {
+    metrics.recordSkippedFrame();
+    metrics.recordBusyFrame();
+    metrics.recordBusyFrame();
+    JSONObject json = metrics.toJSON();
+    assertEquals(1, json.getLong("framesSkipped"));
+    assertEquals(2, json.getLong("framesBusy"));
+
+    metrics.reset();
+    json = metrics.toJSON();
+    assertEquals(0, json.getLong("framesSkipped"));
+    assertEquals(0, json.getLong("framesBusy"));
+  }
+
+  @Test
+  public void cameraGapsCountAsDroppedFrames() throws Exception {
+    long periodNs = 33_000_000L;
+    metrics.recordFrame(periodNs);
+    metrics.recordFrame(2 * periodNs);
+    // Two frames missing in between.
+    metrics.recordFrame(5 * periodNs);
+    JSONObject json = metrics.toJSON();
+    assertEquals(3, json.getLong("framesAnalyzed"));
+    assertEquals(2, json.getLong("framesDropped"));
+  }
+}
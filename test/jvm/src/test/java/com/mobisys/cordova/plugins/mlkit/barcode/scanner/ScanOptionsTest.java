@@ -0,0 +1,175 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.mlkit.vision.barcode.common.Barcode;
+import com.google.zxing.BarcodeFormat;
+import java.util.Arrays;
+import java.util.Collections;
+import org.json.JSONArray;
+import org.junit.Test;
+
+public class ScanOptionsTest {
+  // Every ML Kit format flag and its ZXing counterpart, in mask order.
+  private static final int[] ML_KIT = {
+    Barcode.FORMAT_CODE_128,
+    Barcode.FORMAT_CODE_39,
+    Barcode.FORMAT_CODE_93,
+    Barcode.FORMAT_CODABAR,
+    Barcode.FORMAT_DATA_MATRIX,
+    Barcode.FORMAT_EAN_13,
+    Barcode.FORMAT_EAN_8,
+    Barcode.FORMAT_ITF,
+    Barcode.FORMAT_QR_CODE,
+    Barcode.FORMAT_UPC_A,
+    Barcode.FORMAT_UPC_E,
+    Barcode.FORMAT_PDF417,
+    Barcode.FORMAT_AZTEC
+  };
+  private static final BarcodeFormat[] ZXING = {
+    BarcodeFormat.CODE_128,
+    BarcodeFormat.CODE_39,
+    BarcodeFormat.CODE_93,
+    BarcodeFormat.CODABAR,
+    BarcodeFormat.DATA_MATRIX,
+    BarcodeFormat.EAN_13,
+    BarcodeFormat.EAN_8,
+    BarcodeFormat.ITF,
+    BarcodeFormat.QR_CODE,
+    BarcodeFormat.UPC_A,
+    BarcodeFormat.UPC_E,
+    BarcodeFormat.PDF_417,
+    BarcodeFormat.AZTEC
+  };
+
+  @Test
+  public void maskSelectsMlKitAndZxingFormats() {
+    ScanOptions options = ScanOptions.ofFormats(Barcode.FORMAT_QR_CODE | Barcode.FORMAT_EAN_13);
+    assertEquals(Barcode.FORMAT_QR_CODE | Barcode.FORMAT_EAN_13, options.getFormats());
+    assertFalse(options.isAllFormats());
+    assertArrayEquals(
+        new int[] {Barcode.FORMAT_EAN_13, Barcode.FORMAT_QR_CODE}, options.getMlKitFormats());
+    assertEquals(
+        Arrays.asList(BarcodeFormat.EAN_13, BarcodeFormat.QR_CODE),
+        options.getZxingBarcodeFormats());
+    assertEquals(Arrays.asList("EAN_13", "QR_CODE"), options.getZxingFormats());
+  }
+
+  @Test
+  public void everySingleFormatMapsToItsZxingFormat() {
+    for (int i = 0; i < ML_KIT.length; i++) {
+      ScanOptions options = ScanOptions.ofFormats(ML_KIT[i]);
+      assertArrayEquals(new int[] {ML_KIT[i]}, options.getMlKitFormats());
+      assertEquals(Collections.singletonList(ZXING[i]), options.getZxingBarcodeFormats());
+    }
+  }
+
+  @Test
+  public void emptyMaskMeansEveryFormat() {
+    ScanOptions options = ScanOptions.ofFormats(0);
+    assertTrue(options.isAllFormats());
+    assertEquals(ScanOptions.ALL_FORMATS, options.getFormats());
+    assertArrayEquals(ML_KIT, options.getMlKitFormats());
+    assertEquals(Arrays.asList(ZXING), options.getZxingBarcodeFormats());
+    assertEquals(8191, ScanOptions.ALL_FORMATS);
+  }
+
+  @Test
+  public void unknownBitsAreDropped() {
+    int withUnknown = Barcode.FORMAT_QR_CODE | 1 << 13;
+    assertEquals(Barcode.FORMAT_QR_CODE, ScanOptions.ofFormats(withUnknown).getFormats());
+    // Only unknown bits leave nothing selected, which means every format.
+    assertTrue(ScanOptions.ofFormats(1 << 13 | 1 << 20).isAllFormats());
+    assertTrue(ScanOptions.ofFormats(-1).isAllFormats());
+  }
+
+  @Test
+  public void everyZxingFormatMapsBackToMlKit() {
+    for (int i = 0; i < ZXING.length; i++) {
+      assertEquals(ZXING[i].name(), ML_KIT[i], ScanOptions.toMlKitFormat(ZXING[i]));
+    }
+    assertEquals(0, ScanOptions.toMlKitFormat(BarcodeFormat.MAXICODE));
+    assertEquals(0, ScanOptions.toMlKitFormat(BarcodeFormat.RSS_14));
+  }
+
+  @Test
+  public void missingArgsKeepTheDefaults() {
+    ScanOptions options = ScanOptions.fromArgs(null);
+    assertTrue(options.isAllFormats());
+    assertEquals(ScanOptions.DEFAULT_DETECTOR_SIZE, options.getDetectorSize(), 0);
+    assertEquals(ScanOptions.DEFAULT_DUPLICATE_WINDOW_MS, options.getDuplicateWindowMs());
+    assertEquals(ScanOptions.DEFAULT_MIN_DETECTION_RATE, options.getMinDetectionRate(), 0);
+    assertEquals(ScanOptions.DEFAULT_MAX_DETECTION_RATE, options.getMaxDetectionRate(), 0);
+    assertEquals(0, options.getBatchTargetCount());
+    assertEquals(0, options.getBatchTimeoutMs());
+    assertEquals(ScanOptions.DEFAULT_MAX_IN_FLIGHT, options.getMaxInFlight());
+    assertEquals(0, options.getTileSize());
+    assertEquals(ScanOptions.DEFAULT_TILE_PARALLELISM, options.getTileParallelism());
+    assertFalse(options.isBinaryResults());
+    assertEquals(0, options.getFlushIntervalMs());
+    assertEquals(ResultDispatcher.DEFAULT_FLUSH_SIZE, options.getFlushSize());
+    assertEquals(ResultDispatcher.POLICY_DROP_OLDEST, options.getOverflowPolicy());
+    assertTrue(options.isAutoTorch());
+  }
+
+  @Test
+  public void everyPositionIsRead() {
+    JSONArray args =
+        new JSONArray(
+            "[256, 0.7, 3000, 4, 20, 5, 8000, 3, 320, 3, true, 50, 8, \"merge\", false]");
+    ScanOptions options = ScanOptions.fromArgs(args);
+    assertEquals(Barcode.FORMAT_QR_CODE, options.getFormats());
+    assertEquals(0.7, options.getDetectorSize(), 0);
+    assertEquals(3000, options.getDuplicateWindowMs());
+    assertEquals(4, options.getMinDetectionRate(), 0);
+    assertEquals(20, options.getMaxDetectionRate(), 0);
+    assertEquals(5, options.getBatchTargetCount());
+    assertEquals(8000, options.getBatchTimeoutMs());
+    assertEquals(3, options.getMaxInFlight());
+    assertEquals(320, options.getTileSize());
+    assertEquals(3, options.getTileParallelism());
+    assertTrue(options.isBinaryResults());
+    assertEquals(50, options.getFlushIntervalMs());
+    assertEquals(8, options.getFlushSize());
+    assertEquals(ResultDispatcher.POLICY_MERGE, options.getOverflowPolicy());
+    assertFalse(options.isAutoTorch());
+  }
+
+  @Test
+  public void outOfRangeArgsAreClamped() {
+    JSONArray args = new JSONArray("[0, 1.5, -1, -2, 1, -5, -100, 9, -240, 0, false, -10, 0]");
+    ScanOptions options = ScanOptions.fromArgs(args);
+    assertEquals(ScanOptions.DEFAULT_DETECTOR_SIZE, options.getDetectorSize(), 0);
+    assertEquals(ScanOptions.DEFAULT_DUPLICATE_WINDOW_MS, options.getDuplicateWindowMs());
+    assertEquals(ScanOptions.DEFAULT_MIN_DETECTION_RATE, options.getMinDetectionRate(), 0);
+    // The maximum rate never goes below the minimum.
+    assertEquals(ScanOptions.DEFAULT_MIN_DETECTION_RATE, options.getMaxDetectionRate(), 0);
+    assertEquals(0, options.getBatchTargetCount());
+    assertEquals(0, options.getBatchTimeoutMs());
+    assertEquals(ScanOptions.MAX_IN_FLIGHT_LIMIT, options.getMaxInFlight());
+    assertEquals(0, options.getTileSize());
+    assertEquals(1, options.getTileParallelism());
+    assertEquals(0, options.getFlushIntervalMs());
+    assertEquals(1, options.getFlushSize());
+
+    options = ScanOptions.fromArgs(new JSONArray("[0, 0, 0, 0, 0, 0, 0, 0, 0, 99]"));
+    assertEquals(ScanOptions.DEFAULT_DETECTOR_SIZE, options.getDetectorSize(), 0);
+    assertEquals(0, options.getDuplicateWindowMs());
+    assertEquals(1, options.getMaxInFlight());
+    assertEquals(ScanOptions.MAX_TILE_PARALLELISM, options.getTileParallelism());
+  }
+
+  @Test
+  public void nullPositionsKeepTheDefaults() {
+    // main.js sends undefined settings as null.
+    ScanOptions options =
+        ScanOptions.fromArgs(new JSONArray("[null, null, null, null, null, null, null, null]"));
+    assertTrue(options.isAllFormats());
+    assertEquals(ScanOptions.DEFAULT_DETECTOR_SIZE, options.getDetectorSize(), 0);
+    assertEquals(ScanOptions.DEFAULT_DUPLICATE_WINDOW_MS, options.getDuplicateWindowMs());
+    assertEquals(ScanOptions.DEFAULT_MAX_IN_FLIGHT, options.getMaxInFlight());
+  }
+}
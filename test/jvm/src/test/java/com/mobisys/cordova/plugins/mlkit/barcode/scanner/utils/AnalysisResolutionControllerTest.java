@@ -0,0 +1,138 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AnalysisResolutionControllerTest {
+  private static final int CODE_128 = 1;
+  private static final int QR_CODE = 256;
+  private static final long BUDGET_NS = 66_000_000L;
+  private static final long CHEAP_NS = 10_000_000L;
+  private static final long SLOW_NS = 100_000_000L;
+
+  @Before
+  public void forgetLearned() {
+    AnalysisResolutionController.resetLearned();
+  }
+
+  @Test
+  public void startsAtTheSmallestLevelWithEnoughPixels() {
+    assertEquals(0, controller().getLevel());
+    assertEquals(1, new AnalysisResolutionController(QR_CODE, 0.5, BUDGET_NS).getLevel());
+  }
+
+  @Test
+  public void stepsUpWhileNothingIsDecoded() {
+    AnalysisResolutionController controller = controller();
+    assertTrue(window(controller, false, CHEAP_NS));
+    assertEquals(1, controller.getLevel());
+    assertTrue(window(controller, false, CHEAP_NS));
+    assertEquals(2, controller.getLevel());
+    assertFalse(window(controller, false, CHEAP_NS));
+  }
+
+  @Test
+  public void levelLeftForLatencyIsNotTriedAgain() {
+    AnalysisResolutionController controller = controller();
+    window(controller, false, CHEAP_NS);
+    assertTrue(window(controller, false, SLOW_NS));
+    assertEquals(0, controller.getLevel());
+    assertFalse(window(controller, false, CHEAP_NS));
+    assertEquals(0, controller.getLevel());
+  }
+
+  @Test
+  public void triesTheNextLowerLevelAfterDecodes() {
+    AnalysisResolutionController controller = controller();
+    window(controller, false, CHEAP_NS);
+    window(controller, false, CHEAP_NS);
+    assertTrue(window(controller, true, CHEAP_NS));
+    assertEquals(1, controller.getLevel());
+    assertTrue(window(controller, true, CHEAP_NS));
+    assertEquals(0, controller.getLevel());
+    assertFalse(window(controller, true, CHEAP_NS));
+
+    // The lowest level that decoded is where the next session starts.
+    assertEquals(0, controller().getLevel());
+  }
+
+  @Test
+  public void returnsToTheLevelThatDecodedWhenTheLowerOneDoesNot() {
+    AnalysisResolutionController controller = controller();
+    window(controller, false, CHEAP_NS);
+    window(controller, true, CHEAP_NS);
+    assertEquals(0, controller.getLevel());
+    assertTrue(window(controller, false, CHEAP_NS));
+    assertEquals(1, controller.getLevel());
+    // Stays there instead of probing down again.
+    assertFalse(window(controller, true, CHEAP_NS));
+    assertFalse(window(controller, true, CHEAP_NS));
+    assertEquals(1, controller.getLevel());
+  }
+
+  @Test
+  public void learnedLevelGoesDownAcrossSessions() {
+    Map<Integer, Integer> levels = new HashMap<>();
+    levels.put(CODE_128, 2);
+    AnalysisResolutionController.importLearned(levels, noCosts());
+
+    AnalysisResolutionController first = controller();
+    assertEquals(2, first.getLevel());
+    window(first, true, CHEAP_NS);
+    window(first, true, CHEAP_NS);
+
+    Map<Integer, Integer> learned = new HashMap<>();
+    AnalysisResolutionController.exportLearned(learned, noCosts());
+    assertEquals(Integer.valueOf(1), learned.get(CODE_128));
+  }
+
+  @Test
+  public void slowKnownLevelOnlyMovesTheStartAndIsProbedAgain() {
+    long[] costs = {CHEAP_NS, CHEAP_NS, SLOW_NS};
+    Map<Integer, Integer> levels = new HashMap<>();
+    levels.put(CODE_128, 2);
+    AnalysisResolutionController.importLearned(levels, costs);
+
+    AnalysisResolutionController controller = controller();
+    assertEquals(1, controller.getLevel());
+    assertTrue(window(controller, false, CHEAP_NS));
+    assertEquals(2, controller.getLevel());
+    // Cheap this time, so the stale cost is replaced.
+    window(controller, false, CHEAP_NS);
+    long[] measured = noCosts();
+    AnalysisResolutionController.exportLearned(new HashMap<Integer, Integer>(), measured);
+    assertEquals(CHEAP_NS, measured[2]);
+  }
+
+  @Test
+  public void pinnedLevelNeverChanges() {
+    AnalysisResolutionController controller = controller();
+    controller.pinLargest();
+    assertFalse(window(controller, false, SLOW_NS));
+    assertEquals(AnalysisResolutionController.LEVELS.length - 1, controller.getLevel());
+  }
+
+  private static AnalysisResolutionController controller() {
+    return new AnalysisResolutionController(CODE_128, 0.5, BUDGET_NS);
+  }
+
+  private static long[] noCosts() {
+    return new long[AnalysisResolutionController.LEVELS.length];
+  }
+
+  // Reports one window of frames, returns whether the level changed at its end.
+  private static boolean window(
+      AnalysisResolutionController controller, boolean decoded, long frameNs) {
+    boolean changed = false;
+    for (int i = 0; i < 30; i++) {
+      changed |= controller.onFrame(decoded, frameNs);
+    }
+    return changed;
+  }
+}
@@ -0,0 +1,209 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class DetectionPipelineTest {
+  private final YuvFrames frame = YuvFrames.of("640x480", YuvFrames.TIGHT);
+  // Slots handed to the fake detector, completed by the tests in any order.
+  private final List<DetectionPipeline.Slot<String>> detecting = new ArrayList<>();
+  private final List<String> delivered = new ArrayList<>();
+
+  @Test
+  public void resultsAreDeliveredInSubmissionOrder() {
+    DetectionPipeline<String> pipeline = pipeline(3);
+    submit(pipeline, 0);
+    submit(pipeline, 1);
+    submit(pipeline, 2);
+
+    detecting.get(2).complete("c");
+    detecting.get(1).complete("b");
+    assertTrue(delivered.isEmpty());
+    assertEquals(3, pipeline.getInFlight());
+
+    detecting.get(0).complete("a");
+    assertEquals(Arrays.asList("a", "b", "c"), delivered);
+    assertEquals(0, pipeline.getInFlight());
+  }
+
+  @Test
+  public void slowHeadOnlyHoldsBackLaterResults() {
+    DetectionPipeline<String> pipeline = pipeline(3);
+    submit(pipeline, 0);
+    submit(pipeline, 1);
+    detecting.get(0).complete("a");
+    assertEquals(Arrays.asList("a"), delivered);
+    submit(pipeline, 2);
+    detecting.get(2).complete("c");
+    assertEquals(Arrays.asList("a"), delivered);
+    detecting.get(1).complete("b");
+    assertEquals(Arrays.asList("a", "b", "c"), delivered);
+  }
+
+  @Test
+  public void fullPipelineRefusesNewFrames() {
+    DetectionPipeline<String> pipeline = pipeline(2);
+    submit(pipeline, 0);
+    assertTrue(pipeline.hasCapacity());
+    submit(pipeline, 1);
+    assertFalse(pipeline.hasCapacity());
+    assertNull(pipeline.acquire());
+
+    // A slot is free again only once its result was delivered.
+    detecting.get(1).complete("b");
+    assertNull(pipeline.acquire());
+    detecting.get(0).complete("a");
+    assertTrue(pipeline.hasCapacity());
+    assertNotNull(pipeline.acquire());
+    assertNotNull(pipeline.acquire());
+    assertNull(pipeline.acquire());
+  }
+
+  @Test
+  public void inFlightLimitIsClamped() {
+    assertEquals(DetectionPipeline.MIN_IN_FLIGHT, slots(pipeline(0)));
+    assertEquals(DetectionPipeline.MAX_IN_FLIGHT, slots(pipeline(10)));
+  }
+
+  @Test
+  public void cancelledSlotIsReusedFirst() {
+    DetectionPipeline<String> pipeline = pipeline(2);
+    DetectionPipeline.Slot<String> slot = pipeline.acquire();
+    pipeline.cancel(slot);
+    assertSame(slot, pipeline.acquire());
+  }
+
+  @Test
+  public void failedDetectionIsDeliveredAsNull() {
+    DetectionPipeline<String> pipeline = pipeline(2);
+    submit(pipeline, 0);
+    detecting.get(0).complete(null);
+    assertEquals(Arrays.asList((String) null), delivered);
+    assertTrue(pipeline.hasCapacity());
+  }
+
+  @Test
+  public void secondCompletionIsIgnored() {
+    DetectionPipeline<String> pipeline = pipeline(2);
+    submit(pipeline, 0);
+    detecting.get(0).complete("a");
+    detecting.get(0).complete("again");
+    assertEquals(Arrays.asList("a"), delivered);
+    assertEquals(0, pipeline.getInFlight());
+  }
+
+  @Test
+  public void slotKeepsTheCropAndItsGeometry() {
+    DetectionPipeline<String> pipeline = pipeline(1);
+    DetectionPipeline.Slot<String> slot = pipeline.acquire();
+    slot.crop(frame.y, frame.rowStride, 100, 60, 200, 120, 270, 42L);
+    ByteBuffer data = slot.getData();
+    assertEquals(frame.get(100, 60), data.get(0) & 0xFF);
+    assertEquals(frame.get(299, 179), data.get(200 * 120 - 1) & 0xFF);
+    assertEquals(100, slot.getLeft());
+    assertEquals(60, slot.getTop());
+    assertEquals(200, slot.getWidth());
+    assertEquals(120, slot.getHeight());
+    assertEquals(270, slot.getRotationDegrees());
+    assertEquals(42L, slot.getStartNs());
+  }
+
+  @Test
+  public void processingTimeCoversCropAndDetection() throws InterruptedException {
+    DetectionPipeline<String> pipeline = pipeline(1);
+    long before = System.nanoTime();
+    submit(pipeline, 0);
+    Thread.sleep(5);
+    detecting.get(0).complete("a");
+    long elapsed = System.nanoTime() - before;
+    DetectionPipeline.Slot<String> slot = detecting.get(0);
+    assertTrue(slot.getProcessingNs() >= 5_000_000L);
+    assertTrue(slot.getProcessingNs() <= elapsed);
+  }
+
+  @Test
+  public void steadyStateFramesDoNotAllocate() {
+    YuvFrames frame = YuvFrames.of("1280x720", YuvFrames.PADDED);
+    final Object found = new Object();
+    final int[] results = new int[1];
+    DetectionPipeline<Object> pipeline =
+        new DetectionPipeline<>(
+            DetectionPipeline.DEFAULT_IN_FLIGHT,
+            slot -> slot.complete(found),
+            (slot, result) -> results[0]++);
+    FrameScheduler scheduler = new FrameScheduler(1000, 1000);
+
+    com.sun.management.ThreadMXBean threads = threadBean();
+    long thread = Thread.currentThread().getId();
+    // Warm up until the frame path is compiled, then look at the frames after it.
+    analyze(pipeline, scheduler, frame, 20_000, 0);
+    long before = threads.getThreadAllocatedBytes(thread);
+    analyze(pipeline, scheduler, frame, 10_000, 20_000);
+    long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+    assertEquals(30_000, results[0]);
+    // A few bytes of slack for the measurement itself, far less than one byte per frame.
+    assertEquals("bytes allocated by 10000 frames", 0, allocated / 10_000);
+  }
+
+  private DetectionPipeline<String> pipeline(int maxInFlight) {
+    return new DetectionPipeline<>(
+        maxInFlight, detecting::add, (slot, result) -> delivered.add(result));
+  }
+
+  // Crops a frame into a new slot and hands it to the fake detector.
+  private void submit(DetectionPipeline<String> pipeline, int index) {
+    DetectionPipeline.Slot<String> slot = pipeline.acquire();
+    assertNotNull(slot);
+    slot.crop(frame.y, frame.rowStride, 0, 0, 64, 64, 0, index);
+    pipeline.submit(slot);
+  }
+
+  private static int slots(DetectionPipeline<String> pipeline) {
+    int slots = 0;
+    while (pipeline.acquire() != null) {
+      slots++;
+    }
+    return slots;
+  }
+
+  // The analyzer of CaptureActivity: schedule, acquire, crop the detector box, submit.
+  private static void analyze(
+      DetectionPipeline<Object> pipeline,
+      FrameScheduler scheduler,
+      YuvFrames frame,
+      int frames,
+      int firstFrame) {
+    for (int i = firstFrame; i < firstFrame + frames; i++) {
+      long nowNs = i * 33_000_000L;
+      if (!pipeline.hasCapacity()
+          || !scheduler.shouldDetect(frame.y, frame.rowStride, 320, 40, 640, 640, nowNs)) {
+        continue;
+      }
+      DetectionPipeline.Slot<Object> slot = pipeline.acquire();
+      slot.crop(frame.y, frame.rowStride, 320, 40, 640, 640, 90, nowNs);
+      pipeline.submit(slot);
+    }
+  }
+
+  private static com.sun.management.ThreadMXBean threadBean() {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+    assumeTrue(threads.isThreadAllocatedMemorySupported());
+    threads.setThreadAllocatedMemoryEnabled(true);
+    return threads;
+  }
+}
@@ -0,0 +1,150 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ExposureControllerTest {
+  private static final long MS = 1_000_000L;
+  private static final long SWITCH_DELAY_NS = 100 * MS;
+  private static final long HOLD_NS = 1000 * MS;
+  private static final long METER_INTERVAL_NS = 500 * MS;
+
+  private final YuvFrames dark = YuvFrames.uniform(640, 480, 20);
+  private final YuvFrames normal = YuvFrames.uniform(640, 480, 120);
+  private final YuvFrames bright = YuvFrames.uniform(640, 480, 230);
+
+  @Test
+  public void regionIsScoredFromItsLuminance() {
+    ExposureController controller = controller(true);
+    update(controller, dark, 0);
+    assertEquals(20, controller.getMedian());
+    assertEquals(0, controller.getClippedPercent());
+
+    YuvFrames glare = YuvFrames.uniform(640, 480, 120);
+    // A quarter of the region clipped, the median is still mid-gray.
+    fill(glare, 160, 80, 320, 80, 255);
+    update(controller, glare, 0);
+    assertEquals(120, controller.getMedian());
+    assertEquals(25, controller.getClippedPercent());
+  }
+
+  @Test
+  public void glareCountsAsOverExposed() {
+    YuvFrames glare = YuvFrames.uniform(640, 480, 120);
+    fill(glare, 160, 80, 320, 80, 255);
+    ExposureController controller = controller(false);
+    update(controller, normal, 0);
+    assertEquals(0, update(controller, normal, METER_INTERVAL_NS));
+    assertEquals(ExposureController.METER, update(controller, glare, METER_INTERVAL_NS));
+  }
+
+  @Test
+  public void firstFrameMetersAndWellExposedFramesDoNotAgain() {
+    ExposureController controller = controller(true);
+    assertEquals(ExposureController.METER, update(controller, normal, 0));
+    assertEquals(0, update(controller, normal, 10 * METER_INTERVAL_NS));
+  }
+
+  @Test
+  public void badlyExposedRegionIsMeteredOncePerInterval() {
+    ExposureController controller = controller(false);
+    assertEquals(ExposureController.METER, update(controller, bright, 0));
+    assertEquals(0, update(controller, bright, METER_INTERVAL_NS - MS));
+    assertEquals(ExposureController.METER, update(controller, bright, METER_INTERVAL_NS));
+  }
+
+  @Test
+  public void torchGoesOnOnceTheRegionStaysDark() {
+    ExposureController controller = controller(true);
+    update(controller, dark, 0);
+    assertEquals(0, torch(update(controller, dark, SWITCH_DELAY_NS - MS)));
+    assertFalse(controller.isTorchOn());
+    int actions = update(controller, dark, SWITCH_DELAY_NS);
+    assertEquals(ExposureController.TORCH_ON | ExposureController.METER, actions);
+    assertTrue(controller.isTorchOn());
+  }
+
+  @Test
+  public void darkFrameInBetweenRestartsTheDelay() {
+    ExposureController controller = controller(true);
+    update(controller, dark, 0);
+    update(controller, normal, 50 * MS);
+    update(controller, dark, 60 * MS);
+    assertEquals(0, torch(update(controller, dark, SWITCH_DELAY_NS)));
+    assertEquals(ExposureController.TORCH_ON, torch(update(controller, dark, 160 * MS)));
+  }
+
+  @Test
+  public void torchIsHeldAfterASwitch() {
+    ExposureController controller = controller(true);
+    long on = torchOn(controller, 0);
+    // Bright as soon as the torch is on, e.g. a close glossy label.
+    for (long t = on; t < on + HOLD_NS; t += 50 * MS) {
+      assertEquals(0, torch(update(controller, bright, t)));
+    }
+    assertTrue(controller.isTorchOn());
+    assertEquals(ExposureController.TORCH_OFF, torch(update(controller, bright, on + HOLD_NS)));
+    assertFalse(controller.isTorchOn());
+  }
+
+  @Test
+  public void holdDoublesEveryTimeTheTorchGoesOffAgain() {
+    ExposureController controller = controller(true);
+    long t = 0;
+    for (int offs = 0; offs <= ExposureController.MAX_HOLD_SHIFT + 1; offs++) {
+      long hold = HOLD_NS << Math.min(offs, ExposureController.MAX_HOLD_SHIFT);
+      long on = torchOn(controller, t);
+      update(controller, bright, on);
+      assertEquals(0, torch(update(controller, bright, on + hold - MS)));
+      assertEquals(ExposureController.TORCH_OFF, torch(update(controller, bright, on + hold)));
+      // The next hold applies to switching on again as well.
+      long nextHold = HOLD_NS << Math.min(offs + 1, ExposureController.MAX_HOLD_SHIFT);
+      t = on + hold + nextHold;
+    }
+  }
+
+  @Test
+  public void disabledAutoTorchOnlyMeters() {
+    ExposureController controller = controller(true);
+    controller.disableAutoTorch();
+    for (long t = 0; t < 5 * HOLD_NS; t += 50 * MS) {
+      assertEquals(0, torch(update(controller, dark, t)));
+    }
+    assertFalse(controller.isTorchOn());
+    assertEquals(ExposureController.METER, update(controller, dark, 5 * HOLD_NS));
+  }
+
+  private static ExposureController controller(boolean autoTorch) {
+    return new ExposureController(autoTorch, SWITCH_DELAY_NS, HOLD_NS, METER_INTERVAL_NS);
+  }
+
+  // Scores the centered 320x320 detector region of a frame.
+  private static int update(ExposureController controller, YuvFrames frame, long nowNs) {
+    return controller.update(frame.y, frame.rowStride, 160, 80, 320, 320, nowNs);
+  }
+
+  private static int torch(int actions) {
+    return actions & (ExposureController.TORCH_ON | ExposureController.TORCH_OFF);
+  }
+
+  // Keeps the region dark from startNs until the torch goes on, returns when it did.
+  private long torchOn(ExposureController controller, long startNs) {
+    for (long t = startNs; ; t += 10 * MS) {
+      if (torch(update(controller, dark, t)) != 0) {
+        assertTrue(controller.isTorchOn());
+        return t;
+      }
+    }
+  }
+
+  private static void fill(YuvFrames frame, int left, int top, int width, int height, int value) {
+    for (int y = top; y < top + height; y++) {
+      for (int x = left; x < left + width; x++) {
+        frame.y.put(y * frame.rowStride + x, (byte) value);
+      }
+    }
+  }
+}
@@ -0,0 +1,88 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class FrameSchedulerTest {
+  private static final long MS = 1_000_000L;
+
+  private static YuvFrames sharp;
+  private static YuvFrames moved;
+  private static YuvFrames blurred;
+
+  @BeforeClass
+  public static void createFrames() {
+    sharp = YuvFrames.of("640x480", YuvFrames.PADDED);
+    moved = YuvFrames.shifted(sharp, YuvFrames.PADDED, 40);
+    blurred = YuvFrames.blurred(sharp, 8);
+  }
+
+  @Test
+  public void syntheticFramesScoreAsExpected() {
+    FrameScheduler scheduler = new FrameScheduler(2, 30);
+    scheduler.score(sharp.y, sharp.rowStride, 160, 80, 320, 320);
+    assertTrue(scheduler.getSharpness() >= FrameScheduler.DEFAULT_SHARPNESS_THRESHOLD);
+    scheduler.score(blurred.y, blurred.rowStride, 160, 80, 320, 320);
+    assertTrue(scheduler.getSharpness() < FrameScheduler.DEFAULT_SHARPNESS_THRESHOLD);
+    scheduler.score(sharp.y, sharp.rowStride, 160, 80, 320, 320);
+    scheduler.score(moved.y, moved.rowStride, 160, 80, 320, 320);
+    assertTrue(scheduler.getMotion() > FrameScheduler.DEFAULT_MOTION_THRESHOLD);
+  }
+
+  @Test
+  public void firstFrameIsAlwaysDetected() {
+    assertTrue(detect(new FrameScheduler(2, 30), blurred, 0));
+  }
+
+  @Test
+  public void sharpStillFramesAreDetected() {
+    FrameScheduler scheduler = new FrameScheduler(2, 30);
+    for (int i = 0; i < 10; i++) {
+      assertTrue(detect(scheduler, sharp, i * 40 * MS));
+    }
+  }
+
+  @Test
+  public void blurredFramesWaitForTheMinimumRate() {
+    FrameScheduler scheduler = new FrameScheduler(2, 30);
+    assertTrue(detect(scheduler, blurred, 0));
+    assertFalse(detect(scheduler, blurred, 100 * MS));
+    assertFalse(detect(scheduler, blurred, 400 * MS));
+    assertTrue(detect(scheduler, blurred, 500 * MS));
+  }
+
+  @Test
+  public void movingFramesAreSkipped() {
+    FrameScheduler scheduler = new FrameScheduler(2, 30);
+    assertTrue(detect(scheduler, sharp, 0));
+    assertFalse(detect(scheduler, moved, 40 * MS));
+    assertFalse(detect(scheduler, sharp, 80 * MS));
+  }
+
+  @Test
+  public void maximumRateIsNotExceeded() {
+    FrameScheduler scheduler = new FrameScheduler(2, 10);
+    assertTrue(detect(scheduler, sharp, 0));
+    assertFalse(detect(scheduler, sharp, 50 * MS));
+    assertTrue(detect(scheduler, sharp, 100 * MS));
+  }
+
+  @Test
+  public void movedRegionIsNotComparedWithThePreviousOne() {
+    FrameScheduler scheduler = new FrameScheduler(2, 30);
+    assertTrue(scheduler.shouldDetect(sharp.y, sharp.rowStride, 160, 80, 320, 320, 0));
+    // The same still scene, but the region followed a code 40 pixels to the right.
+    assertTrue(scheduler.shouldDetect(sharp.y, sharp.rowStride, 200, 80, 320, 320, 40 * MS));
+    assertEquals(0, scheduler.getMotion());
+    assertTrue(scheduler.shouldDetect(sharp.y, sharp.rowStride, 200, 80, 256, 256, 80 * MS));
+    assertEquals(0, scheduler.getMotion());
+  }
+
+  private static boolean detect(FrameScheduler scheduler, YuvFrames frame, long nowNs) {
+    return scheduler.shouldDetect(frame.y, frame.rowStride, 160, 80, 320, 320, nowNs);
+  }
+}
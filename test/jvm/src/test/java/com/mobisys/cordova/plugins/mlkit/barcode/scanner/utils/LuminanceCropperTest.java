@@ -0,0 +1,113 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.nio.ByteBuffer;
+import org.junit.Test;
+
+public class LuminanceCropperTest {
+
+  @Test
+  public void cropCopiesTheRegionOfTightRows() {
+    assertCrop(YuvFrames.of("640x480", YuvFrames.TIGHT), 100, 60, 200, 120);
+  }
+
+  @Test
+  public void cropSkipsRowPadding() {
+    assertCrop(YuvFrames.of("1280x720", YuvFrames.PADDED), 320, 100, 640, 480);
+  }
+
+  @Test
+  public void cropReachesTheLastRowAndColumn() {
+    YuvFrames frame = YuvFrames.of("640x480", YuvFrames.PADDED);
+    assertCrop(frame, 440, 280, 200, 200);
+  }
+
+  @Test
+  public void chromaIsNeutralGrey() {
+    YuvFrames frame = YuvFrames.of("640x480", YuvFrames.TIGHT);
+    ByteBuffer out = new LuminanceCropper().crop(frame.y, frame.rowStride, 0, 0, 100, 80);
+    assertEquals(100 * 80 * 3 / 2, out.remaining());
+    for (int i = 100 * 80; i < out.remaining(); i++) {
+      assertEquals(0x80, out.get(i) & 0xFF);
+    }
+  }
+
+  @Test
+  public void sourcePositionAndLimitAreRestored() {
+    YuvFrames frame = YuvFrames.of("640x480", YuvFrames.PADDED);
+    frame.y.position(7).limit(frame.y.capacity() - 3);
+    new LuminanceCropper().crop(frame.y, frame.rowStride, 10, 10, 100, 100);
+    assertEquals(7, frame.y.position());
+    assertEquals(frame.y.capacity() - 3, frame.y.limit());
+  }
+
+  @Test
+  public void sameSizeReusesTheBuffer() {
+    YuvFrames frame = YuvFrames.of("640x480", YuvFrames.TIGHT);
+    LuminanceCropper cropper = new LuminanceCropper();
+    ByteBuffer first = cropper.crop(frame.y, frame.rowStride, 0, 0, 200, 200);
+    ByteBuffer second = cropper.crop(frame.y, frame.rowStride, 100, 100, 200, 200);
+    assertSame(first, second);
+  }
+
+  @Test
+  public void smallerCropReusesTheBufferUpToItsLimit() {
+    YuvFrames frame = YuvFrames.of("640x480", YuvFrames.PADDED);
+    LuminanceCropper cropper = new LuminanceCropper();
+    ByteBuffer large = cropper.crop(frame.y, frame.rowStride, 0, 0, 400, 300);
+    ByteBuffer small = cropper.crop(frame.y, frame.rowStride, 50, 40, 100, 80);
+    assertSame(large, small);
+    assertEquals(100 * 80 * 3 / 2, small.remaining());
+    assertEquals(frame.get(50, 40), small.get(0) & 0xFF);
+    assertEquals(frame.get(149, 119), small.get(100 * 80 - 1) & 0xFF);
+    // The chroma now starts where the luma of the larger crop was.
+    for (int i = 100 * 80; i < small.limit(); i++) {
+      assertEquals(0x80, small.get(i) & 0xFF);
+    }
+  }
+
+  @Test
+  public void largerCropGrowsTheBufferOnce() {
+    YuvFrames frame = YuvFrames.of("640x480", YuvFrames.TIGHT);
+    LuminanceCropper cropper = new LuminanceCropper();
+    ByteBuffer small = cropper.crop(frame.y, frame.rowStride, 0, 0, 100, 80);
+    ByteBuffer large = cropper.crop(frame.y, frame.rowStride, 0, 0, 400, 300);
+    assertNotSame(small, large);
+    assertEquals(400 * 300 * 3 / 2, large.remaining());
+    assertSame(large, cropper.crop(frame.y, frame.rowStride, 0, 0, 100, 80));
+    assertSame(large, cropper.cropHalf(frame.y, frame.rowStride, 0, 0, 320, 240));
+    assertSame(large, cropper.crop(frame.y, frame.rowStride, 0, 0, 400, 300));
+  }
+
+  @Test
+  public void cropHalfKeepsEveryOtherPixelOfEveryOtherRow() {
+    YuvFrames frame = YuvFrames.of("640x480", YuvFrames.PADDED);
+    ByteBuffer out = new LuminanceCropper().cropHalf(frame.y, frame.rowStride, 8, 4, 320, 240);
+    assertEquals(160 * 120 * 3 / 2, out.remaining());
+    for (int y = 0; y < 120; y++) {
+      for (int x = 0; x < 160; x++) {
+        assertEquals(frame.get(8 + 2 * x, 4 + 2 * y), out.get(y * 160 + x) & 0xFF);
+      }
+    }
+  }
+
+  @Test
+  public void evenRoundsDown() {
+    assertEquals(4, LuminanceCropper.even(5));
+    assertEquals(4, LuminanceCropper.even(4));
+    assertEquals(0, LuminanceCropper.even(1));
+  }
+
+  private static void assertCrop(YuvFrames frame, int left, int top, int width, int height) {
+    ByteBuffer out = new LuminanceCropper().crop(frame.y, frame.rowStride, left, top, width, height);
+    assertEquals(0, out.position());
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        assertEquals(frame.get(left + x, top + y), out.get(y * width + x) & 0xFF);
+      }
+    }
+  }
+}
@@ -0,0 +1,103 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+
+public class RoiTrackerTest {
+
+  @Test
+  public void nothingTrackedFallsBackToTheDetectorBox() {
+    assertFalse(new RoiTracker().window(1280, 720));
+  }
+
+  @Test
+  public void windowIsTheBoxPaddedOnEverySide() {
+    RoiTracker tracker = new RoiTracker();
+    tracker.onDetected(boxes(new int[] {400, 300, 600, 400}));
+    assertTrue(tracker.window(1280, 720));
+    // 200 x 100 padded by half of that on each side.
+    assertWindow(tracker, 300, 250, 400, 200);
+  }
+
+  @Test
+  public void windowCoversTheUnionOfAllBoxes() {
+    RoiTracker tracker = new RoiTracker(0, RoiTracker.DEFAULT_MAX_MISSES);
+    tracker.onDetected(boxes(new int[] {100, 100, 300, 200}, null, new int[] {500, 150, 700, 400}));
+    assertTrue(tracker.window(1280, 720));
+    assertWindow(tracker, 100, 100, 600, 300);
+  }
+
+  @Test
+  public void packedBoxesTrackTheSameUnion() {
+    RoiTracker tracker = new RoiTracker(0, RoiTracker.DEFAULT_MAX_MISSES);
+    // The empty box and the box past count are ignored.
+    int[] packed = {100, 100, 300, 200, 10, 10, 10, 20, 500, 150, 700, 400, 0, 0, 1200, 700};
+    tracker.onDetected(packed, 3);
+    assertTrue(tracker.window(1280, 720));
+    assertWindow(tracker, 100, 100, 600, 300);
+  }
+
+  @Test
+  public void smallCodesGetTheMinimumWindow() {
+    RoiTracker tracker = new RoiTracker();
+    tracker.onDetected(boxes(new int[] {600, 300, 620, 310}));
+    assertTrue(tracker.window(1280, 720));
+    assertWindow(tracker, 562, 256, RoiTracker.MIN_WINDOW, RoiTracker.MIN_WINDOW);
+  }
+
+  @Test
+  public void windowIsClampedToTheFrameAndEven() {
+    RoiTracker tracker = new RoiTracker();
+    tracker.onDetected(boxes(new int[] {1181, 651, 1279, 719}));
+    assertTrue(tracker.window(1280, 720));
+    // Odd edges are rounded down, and the window ends at the frame edge.
+    assertWindow(tracker, 1132, 616, 148, 104);
+  }
+
+  @Test
+  public void emptyBoxesCountAsAMiss() {
+    RoiTracker tracker = new RoiTracker(RoiTracker.DEFAULT_PADDING, 1);
+    tracker.onDetected(boxes(new int[] {400, 300, 600, 400}));
+    tracker.onDetected(boxes(new int[] {10, 10, 10, 20}));
+    assertFalse(tracker.isTracking());
+  }
+
+  @Test
+  public void trackingEndsAfterMaxMissesInARow() {
+    RoiTracker tracker = new RoiTracker(RoiTracker.DEFAULT_PADDING, 3);
+    tracker.onDetected(boxes(new int[] {400, 300, 600, 400}));
+    tracker.onMissed();
+    tracker.onMissed();
+    // A detection in between starts the count over.
+    tracker.onDetected(boxes(new int[] {420, 300, 620, 400}));
+    tracker.onMissed();
+    tracker.onMissed();
+    assertTrue(tracker.window(1280, 720));
+    tracker.onMissed();
+    assertFalse(tracker.window(1280, 720));
+  }
+
+  @Test
+  public void windowOutsideTheFrameResetsTracking() {
+    RoiTracker tracker = new RoiTracker();
+    tracker.onDetected(boxes(new int[] {1800, 900, 1900, 1000}));
+    assertFalse(tracker.window(1280, 720));
+    assertFalse(tracker.isTracking());
+  }
+
+  private static Iterable<int[]> boxes(int[]... boxes) {
+    return boxes.length == 1 ? Collections.singletonList(boxes[0]) : Arrays.asList(boxes);
+  }
+
+  private static void assertWindow(
+      RoiTracker tracker, int left, int top, int width, int height) {
+    assertArrayEquals(
+        new int[] {left, top, width, height},
+        new int[] {tracker.left, tracker.top, tracker.width, tracker.height});
+  }
+}
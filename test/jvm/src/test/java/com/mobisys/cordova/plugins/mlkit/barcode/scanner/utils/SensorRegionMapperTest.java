@@ -0,0 +1,152 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import org.junit.Test;
+
+public class SensorRegionMapperTest {
+  // A 1280x720 sensor frame on a 1080x1920 portrait or 1920x1080 landscape view, scaled by 1.5.
+  private static final int FRAME_WIDTH = 1280;
+  private static final int FRAME_HEIGHT = 720;
+
+  @Test
+  public void detectorBoxOfAPortraitViewAt90() {
+    SensorRegionMapper mapper = new SensorRegionMapper();
+    assertTrue(mapper.update(1080, 1920, FRAME_WIDTH, FRAME_HEIGHT, 90, 0.5));
+    // The 540 pixel view square at (270, 690) is 360 frame pixels, centered in the frame.
+    assertRegion(mapper, 460, 180, 360, 360);
+  }
+
+  @Test
+  public void detectorBoxOfALandscapeViewAt0() {
+    SensorRegionMapper mapper = new SensorRegionMapper();
+    assertTrue(mapper.update(1920, 1080, FRAME_WIDTH, FRAME_HEIGHT, 0, 0.5));
+    assertRegion(mapper, 460, 180, 360, 360);
+  }
+
+  @Test
+  public void topLeftOfTheViewAt0() {
+    assertRegion(mapTopLeft(1920, 1080, 0), 0, 0, 128, 72);
+  }
+
+  @Test
+  public void topLeftOfTheViewAt90IsTheBottomLeftOfTheFrame() {
+    assertRegion(mapTopLeft(1080, 1920, 90), 0, 648, 128, 72);
+  }
+
+  @Test
+  public void topLeftOfTheViewAt180IsTheBottomRightOfTheFrame() {
+    assertRegion(mapTopLeft(1920, 1080, 180), 1152, 648, 128, 72);
+  }
+
+  @Test
+  public void topLeftOfTheViewAt270IsTheTopRightOfTheFrame() {
+    assertRegion(mapTopLeft(1080, 1920, 270), 1152, 0, 128, 72);
+  }
+
+  @Test
+  public void croppedViewEdgesAreClampedToTheFrame() {
+    SensorRegionMapper mapper = new SensorRegionMapper();
+    // A square view cuts off the long side of the frame, so a full size box still fits.
+    mapper.update(1000, 1000, FRAME_WIDTH, FRAME_HEIGHT, 90, 1.0);
+    assertRegion(mapper, 280, 0, 720, 720);
+    mapper.map(-50, -50, 1050, 1050);
+    assertRegion(mapper, 244, 0, 792, 720);
+  }
+
+  @Test
+  public void sensorToViewReversesTheMappingAtEveryRotation() {
+    for (int rotation = 0; rotation < 360; rotation += 90) {
+      boolean portrait = rotation == 90 || rotation == 270;
+      int viewWidth = portrait ? 1080 : 1920;
+      int viewHeight = portrait ? 1920 : 1080;
+      SensorRegionMapper mapper = new SensorRegionMapper();
+      mapper.update(viewWidth, viewHeight, FRAME_WIDTH, FRAME_HEIGHT, rotation, 0.5);
+      mapper.map(150, 300, 450, 600);
+
+      float[] corners = {
+        mapper.left, mapper.top, mapper.left + mapper.width, mapper.top + mapper.height
+      };
+      SensorRegionMapper.sensorToView(
+          corners, 0, 2, FRAME_WIDTH, FRAME_HEIGHT, rotation, viewWidth, viewHeight);
+      // The corners swap places with the rotation, so compare the spanned rectangle.
+      String message = "rotation " + rotation;
+      assertEquals(message, 150, Math.min(corners[0], corners[2]), 3);
+      assertEquals(message, 300, Math.min(corners[1], corners[3]), 3);
+      assertEquals(message, 450, Math.max(corners[0], corners[2]), 3);
+      assertEquals(message, 600, Math.max(corners[1], corners[3]), 3);
+    }
+  }
+
+  @Test
+  public void uprightBoxesMapBackIntoTheRegion() {
+    // A 200x100 region at (100, 50); its upright image is 100x200 at 90 and 270.
+    int[] box = {0, 0, 10, 20};
+    assertArrayEquals(
+        new int[] {100, 50, 110, 70},
+        SensorRegionMapper.uprightToSensor(box, 100, 50, 200, 100, 1, 0));
+    assertArrayEquals(
+        new int[] {100, 140, 120, 150},
+        SensorRegionMapper.uprightToSensor(box, 100, 50, 200, 100, 1, 90));
+    assertArrayEquals(
+        new int[] {290, 130, 300, 150},
+        SensorRegionMapper.uprightToSensor(box, 100, 50, 200, 100, 1, 180));
+    assertArrayEquals(
+        new int[] {280, 50, 300, 60},
+        SensorRegionMapper.uprightToSensor(box, 100, 50, 200, 100, 1, 270));
+  }
+
+  @Test
+  public void uprightBoxesCanBeWrittenInPlace() {
+    int[] box = {4, 6, 30, 18};
+    int[] out = {-1, -1, -1, -1, -1, -1};
+    for (int rotation = 0; rotation < 360; rotation += 90) {
+      assertTrue(SensorRegionMapper.uprightToSensor(box, out, 2, 100, 50, 200, 100, 2, rotation));
+      assertArrayEquals(
+          "rotation " + rotation,
+          SensorRegionMapper.uprightToSensor(box, 100, 50, 200, 100, 2, rotation),
+          Arrays.copyOfRange(out, 2, 6));
+    }
+    assertEquals(-1, out[1]);
+    assertFalse(SensorRegionMapper.uprightToSensor(null, out, 2, 100, 50, 200, 100, 1, 0));
+  }
+
+  @Test
+  public void uprightPointsMatchUprightBoxes() {
+    for (int rotation = 0; rotation < 360; rotation += 90) {
+      int[] box = {4, 6, 30, 18};
+      int[] mapped = SensorRegionMapper.uprightToSensor(box, 100, 50, 200, 100, 2, rotation);
+      float[] points = {4, 6, 30, 18};
+      SensorRegionMapper.uprightToSensor(points, 0, 2, 100, 50, 200, 100, 2, rotation);
+      String message = "rotation " + rotation;
+      assertEquals(message, mapped[0], Math.min(points[0], points[2]), 0);
+      assertEquals(message, mapped[1], Math.min(points[1], points[3]), 0);
+      assertEquals(message, mapped[2], Math.max(points[0], points[2]), 0);
+      assertEquals(message, mapped[3], Math.max(points[1], points[3]), 0);
+    }
+  }
+
+  @Test
+  public void viewWithoutASizeIsNotMapped() {
+    assertFalse(new SensorRegionMapper().update(0, 1920, FRAME_WIDTH, FRAME_HEIGHT, 90, 0.5));
+  }
+
+  private static SensorRegionMapper mapTopLeft(int viewWidth, int viewHeight, int rotation) {
+    SensorRegionMapper mapper = new SensorRegionMapper();
+    mapper.update(viewWidth, viewHeight, FRAME_WIDTH, FRAME_HEIGHT, rotation, 0.5);
+    // A tenth of the view in each direction.
+    mapper.map(0, 0, viewWidth / 10, viewHeight / 10);
+    return mapper;
+  }
+
+  private static void assertRegion(
+      SensorRegionMapper mapper, int left, int top, int width, int height) {
+    assertArrayEquals(
+        new int[] {left, top, width, height},
+        new int[] {mapper.left, mapper.top, mapper.width, mapper.height});
+  }
+}
@@ -0,0 +1,218 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Test;
+
+public class TileSearchTest {
+  private final YuvFrames frame = YuvFrames.of("1920x1080", YuvFrames.TIGHT);
+  // Tiles handed to the fake detector, in the order it got them.
+  private final List<TileSearch.Tile> detecting = new ArrayList<>();
+  private final List<List<Code>> results = new ArrayList<>();
+  private final List<List<int[]>> resultBoxes = new ArrayList<>();
+  private int reported;
+  private TileSearch<Code> search;
+
+  @After
+  public void shutDown() {
+    if (search != null) {
+      search.shutdown();
+    }
+  }
+
+  @Test
+  public void positionsReachBothEdgesWithTheOverlap() {
+    for (int length : new int[] {1080, 1000, 1920, 481, 4000}) {
+      int[] origins = TileSearch.positions(length, 240, 60);
+      String message = "length " + length;
+      assertEquals(message, 0, origins[0]);
+      // The last, possibly partial tile is moved back so it ends at the frame edge.
+      assertEquals(message, LuminanceCropper.even(length - 240), origins[origins.length - 1]);
+      for (int i = 1; i < origins.length; i++) {
+        assertTrue(message, origins[i] % 2 == 0);
+        assertTrue(message, origins[i] > origins[i - 1]);
+        assertTrue(message + " overlap", origins[i - 1] + 240 - origins[i] >= 60);
+      }
+    }
+  }
+
+  @Test
+  public void frameNoLargerThanATileHasOneOrigin() {
+    assertArrayEquals(new int[] {0}, TileSearch.positions(240, 240, 60));
+    assertArrayEquals(new int[] {0}, TileSearch.positions(100, 240, 60));
+  }
+
+  @Test
+  public void fullHdFrameIsSearchedAsTheCoarseLevelAndSixtySixTiles() {
+    search = search(240, 4);
+    assertTrue(search(0));
+    finishFrame(Collections.<Integer, List<Code>>emptyMap());
+
+    assertEquals(67, detecting.size());
+    TileSearch.Tile coarse = detecting.get(0);
+    assertEquals(2, coarse.scale);
+    assertEquals(1920, coarse.width);
+    assertEquals(1080, coarse.height);
+    int right = 0;
+    int bottom = 0;
+    for (TileSearch.Tile tile : detecting.subList(1, detecting.size())) {
+      assertEquals(1, tile.scale);
+      assertEquals(240, tile.width);
+      assertEquals(240, tile.height);
+      right = Math.max(right, tile.left + tile.width);
+      bottom = Math.max(bottom, tile.top + tile.height);
+    }
+    assertEquals(1920, right);
+    assertEquals(1080, bottom);
+  }
+
+  @Test
+  public void tileSizeIsRaisedToTheMinimum() {
+    search = search(100, 4);
+    search(0);
+    finishFrame(Collections.<Integer, List<Code>>emptyMap());
+    assertEquals(TileSearch.MIN_TILE_SIZE, detecting.get(1).width);
+  }
+
+  @Test
+  public void onlyParallelismTilesAreWithTheDetectorAtOnce() {
+    search = search(240, 2);
+    search(0);
+    assertEquals(2, detecting.size());
+    assertTrue(search.isBusy());
+    assertFalse(search(0));
+    search.onTileDetected(detecting.get(0), null);
+    reported++;
+    assertEquals(3, detecting.size());
+    finishFrame(Collections.<Integer, List<Code>>emptyMap());
+    assertFalse(search.isBusy());
+    assertEquals(1, results.size());
+  }
+
+  @Test
+  public void coarseBoxesAreScaledBackIntoTheFrame() {
+    search = search(240, 4);
+    search(0);
+    Map<Integer, List<Code>> found = new HashMap<>();
+    found.put(0, Arrays.asList(new Code("big", 100, 50, 300, 250)));
+    finishFrame(found);
+    assertArrayEquals(new int[] {200, 100, 600, 500}, resultBoxes.get(0).get(0));
+  }
+
+  @Test
+  public void fineBoxesAreMovedByTheTileOriginAndRotation() {
+    search = search(240, 4);
+    search(90);
+    // The second tile of the first row, at (168, 0). Upright at 90, its width is the frame height.
+    TileSearch.Tile tile = detecting.get(2);
+    assertEquals(168, tile.left);
+    int[] frameBox = search.toFrame(tile, new int[] {0, 0, 40, 20});
+    assertArrayEquals(
+        SensorRegionMapper.uprightToSensor(new int[] {0, 0, 40, 20}, 168, 0, 240, 240, 1, 90),
+        frameBox);
+    assertArrayEquals(new int[] {168, 200, 188, 240}, frameBox);
+  }
+
+  @Test
+  public void codeSeenInOverlappingTilesIsReportedOnce() {
+    search = search(240, 4);
+    search(0);
+    // A code at x 180..230 of the frame lies in the overlap of the tiles at 0 and 168.
+    Map<Integer, List<Code>> found = new HashMap<>();
+    found.put(1, Arrays.asList(new Code("a", 180, 10, 230, 60)));
+    found.put(2, Arrays.asList(new Code("a", 12, 10, 62, 60)));
+    finishFrame(found);
+    assertEquals(1, results.get(0).size());
+    assertArrayEquals(new int[] {180, 10, 230, 60}, resultBoxes.get(0).get(0));
+  }
+
+  @Test
+  public void largerSightingOfACodeWins() {
+    search = search(240, 4);
+    search(0);
+    Map<Integer, List<Code>> found = new HashMap<>();
+    // Cut off by the edge of the first tile, whole in the second one.
+    found.put(1, Arrays.asList(new Code("a", 200, 10, 240, 60)));
+    found.put(2, Arrays.asList(new Code("a", 32, 10, 102, 60)));
+    finishFrame(found);
+    assertEquals(1, results.get(0).size());
+    assertArrayEquals(new int[] {200, 10, 270, 60}, resultBoxes.get(0).get(0));
+  }
+
+  @Test
+  public void sameValueElsewhereOrOtherValueInPlaceAreKept() {
+    search = search(240, 4);
+    search(0);
+    Map<Integer, List<Code>> found = new HashMap<>();
+    found.put(1, Arrays.asList(new Code("a", 10, 10, 60, 60), new Code("b", 10, 10, 60, 60)));
+    // The same value again, far from the first one.
+    found.put(5, Arrays.asList(new Code("a", 10, 10, 60, 60)));
+    finishFrame(found);
+    assertEquals(3, results.get(0).size());
+  }
+
+  @Test
+  public void overlapNeedsHalfOfTheSmallerBox() {
+    int[] box = {0, 0, 100, 100};
+    assertTrue(TileSearch.overlaps(box, new int[] {40, 0, 140, 100}));
+    assertFalse(TileSearch.overlaps(box, new int[] {60, 0, 160, 100}));
+    assertTrue(TileSearch.overlaps(box, new int[] {10, 10, 30, 30}));
+    assertFalse(TileSearch.overlaps(box, new int[] {100, 0, 200, 100}));
+  }
+
+  private TileSearch<Code> search(int tileSize, int parallelism) {
+    return new TileSearch<>(
+        tileSize,
+        parallelism,
+        (tile, nv21, width, height, rotationDegrees) -> detecting.add(tile),
+        new TileSearch.Codes<Code>() {
+          @Override
+          public String key(Code code) {
+            return code.key;
+          }
+
+          @Override
+          public int[] box(Code code) {
+            return code.box;
+          }
+        },
+        (codes, frameBoxes, startNs) -> {
+          results.add(codes);
+          resultBoxes.add(frameBoxes);
+        });
+  }
+
+  private boolean search(int rotationDegrees) {
+    return search.search(frame.y, frame.rowStride, frame.width, frame.height, rotationDegrees, 0);
+  }
+
+  // Reports every tile not reported yet, including those handed out meanwhile. Codes are found by
+  // the index of the tile in the detector's order.
+  private void finishFrame(Map<Integer, List<Code>> found) {
+    for (; reported < detecting.size(); reported++) {
+      List<Code> codes = found.get(reported);
+      search.onTileDetected(
+          detecting.get(reported), codes == null ? Collections.<Code>emptyList() : codes);
+    }
+  }
+
+  private static class Code {
+    final String key;
+    final int[] box;
+
+    Code(String key, int left, int top, int right, int bottom) {
+      this.key = key;
+      this.box = new int[] {left, top, right, bottom};
+    }
+  }
+}
@@ -0,0 +1,77 @@
+package com.mobisys.cordova.plugins.mlkit.barcode.scanner.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Result;
+import java.util.Collections;
+import org.junit.Test;
+
+public class ZxingFrameDecoderTest {
+  private static final int WIDTH = 640;
+  private static final int HEIGHT = 480;
+
+  @Test
+  public void qrCodeIsDecodedAtEveryRotation() {
+    assertDecodedAtEveryRotation(BarcodeFormat.QR_CODE, "https://example.com/qr");
+  }
+
+  @Test
+  public void rowCodeIsDecodedAtEveryRotation() {
+    // 1D readers only scan rows, so a code turned sideways is only found after rotating.
+    assertDecodedAtEveryRotation(BarcodeFormat.CODE_128, "12345678");
+  }
+
+  @Test
+  public void sidewaysRowCodeIsNotFoundWithoutRotation() {
+    YuvFrames frame = YuvFrames.barcode(BarcodeFormat.CODE_128, "12345678", WIDTH, HEIGHT, 90);
+    assertNull(decoder().decode(frame.y, WIDTH, HEIGHT, 0));
+  }
+
+  @Test
+  public void onlyTheRequestedFormatsAreDecoded() {
+    YuvFrames frame = YuvFrames.barcode(BarcodeFormat.CODE_128, "12345678", WIDTH, HEIGHT, 0);
+    ZxingFrameDecoder qrOnly =
+        new ZxingFrameDecoder(Collections.singletonList(BarcodeFormat.QR_CODE));
+    assertNull(qrOnly.decode(frame.y, WIDTH, HEIGHT, 0));
+  }
+
+  @Test
+  public void decoderIsReusedAcrossRotationsAndLeavesTheBufferPosition() {
+    ZxingFrameDecoder decoder = decoder();
+    for (int rotation = 270; rotation >= 0; rotation -= 90) {
+      YuvFrames frame =
+          YuvFrames.barcode(BarcodeFormat.QR_CODE, "reused", WIDTH, HEIGHT, rotation);
+      frame.y.position(7);
+      Result result = decoder.decode(frame.y, WIDTH, HEIGHT, rotation);
+      assertNotNull("rotation " + rotation, result);
+      assertEquals("reused", result.getText());
+      assertEquals(7, frame.y.position());
+    }
+  }
+
+  private static void assertDecodedAtEveryRotation(BarcodeFormat format, String contents) {
+    for (int rotation = 0; rotation < 360; rotation += 90) {
+      String message = format + " at " + rotation;
+      YuvFrames frame = YuvFrames.barcode(format, contents, WIDTH, HEIGHT, rotation);
+      Result result = decoder().decode(frame.y, WIDTH, HEIGHT, rotation);
+      assertNotNull(message, result);
+      assertEquals(message, contents, result.getText());
+      assertEquals(message, format, result.getBarcodeFormat());
+
+      // Boxes are in upright coordinates, where the code is in the left half.
+      int uprightWidth = rotation == 90 || rotation == 270 ? HEIGHT : WIDTH;
+      int[] box = ZxingFrameDecoder.boundingBox(result);
+      assertNotNull(message, box);
+      assertTrue(message, box[0] >= 0 && box[1] >= 0);
+      assertTrue(message, box[2] <= uprightWidth / 2);
+    }
+  }
+
+  private static ZxingFrameDecoder decoder() {
+    return new ZxingFrameDecoder(null);
+  }
+}
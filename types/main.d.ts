@@ -18,6 +18,113 @@ declare namespace CordovaPluginMLKitBarcodeScanner {
   interface Options {
     types?: BarcodeTypes;
     detectorSize?: number;
+    /** Continuous scans only: milliseconds a code stays suppressed after it was last seen. */
+    duplicateWindow?: number;
+    /** CameraX pipeline only: detections per second that run even when frames look blurry. */
+    minDetectionRate?: number;
+    /** CameraX pipeline only: upper limit of detections per second. */
+    maxDetectionRate?: number;
+    /** Batch scans only: number of distinct codes after which the batch is returned, 0 for no target. */
+    batchTargetCount?: number;
+    /** Batch scans only: milliseconds after which the batch is returned as is, 0 for no timeout. */
+    batchTimeout?: number;
+    /** CameraX pipeline only: detector requests that run at once while the next frame is cropped, 1 to 3. */
+    maxInFlight?: number;
+    /** CameraX pipeline only: tile edge in sensor pixels of the whole-frame search for small codes, 0 to turn it off. */
+    tileSize?: number;
+    /** CameraX pipeline only: tiles cropped and detected at once, 1 to 4. */
+    tileParallelism?: number;
+    /** Android only: single and continuous results are sent in binary and carry rawBytes and boundingBox. */
+    binaryResults?: boolean;
+    /** Continuous scans only: milliseconds a result may be held back to share a bridge message with others, 0 to send each right away. */
+    flushInterval?: number;
+    /** Continuous scans only: held back results that are sent at once without waiting for flushInterval. */
+    flushSize?: number;
+    /** Continuous scans only: what happens to held back results when the bridge falls behind. */
+    overflowPolicy?: 'dropOldest' | 'dropNewest' | 'merge';
+    /** CameraX screen only: turns the torch on in the dark and off on glare, until it is switched by hand. */
+    autoTorch?: boolean;
+  }
+
+  interface BatchResult extends Result {
+    /** Base64 encoded raw bytes, empty if the engine does not provide them. */
+    rawBytes: string;
+    boundingBox: { left: number, top: number, right: number, bottom: number } | undefined;
+  }
+
+  interface ImageResult {
+    /** Position of the image in the list passed to scanImages. */
+    index: number;
+    uri: string;
+    results: BatchResult[];
+    /** IMAGE_READ_FAILED or IMAGE_DECODE_FAILED if the image could not be scanned. */
+    error?: string;
+  }
+
+  interface LatencyStats {
+    count: number;
+    min: number;
+    max: number;
+    avg: number;
+    last: number;
+  }
+
+  interface StageHistogram extends LatencyStats {
+    p50: number;
+    p90: number;
+    p99: number;
+    /** Upper bound of each bucket in microseconds, -1 for the overflow bucket. */
+    bucketUpperBoundsUs: number[];
+    bucketCounts: number[];
+  }
+
+  interface ResultHistoryStats {
+    size: number;
+    capacity: number;
+    windowMs: number;
+    hits: number;
+    misses: number;
+    evictions: number;
+    expirations: number;
+  }
+
+  interface ScanEngineStats {
+    available: boolean;
+    /** Bitmask: 1 continuous, 2 batch, 4 region of interest. */
+    capabilities: number;
+    /** 0 fast, 1 medium, 2 slow; used until latencies were measured. */
+    latencyClass: number;
+    samples: number;
+    avgLatencyMs: number;
+  }
+
+  interface ScanMetrics {
+    /** Milliseconds from the scan call to the first result. */
+    coldTimeToFirstResult: LatencyStats;
+    warmTimeToFirstResult: LatencyStats;
+    framesAnalyzed: number;
+    framesDropped: number;
+    /** Frames skipped as blurry or moving before detection. */
+    framesSkipped: number;
+    /** Frames dropped because every detector request or the tile search was still busy. */
+    framesBusy: number;
+    resultHistory: ResultHistoryStats;
+    /** Coalesced continuous results, see flushInterval. */
+    dispatch: {
+      messages: number;
+      results: number;
+      dropped: number;
+      merged: number;
+      /** Milliseconds the oldest result of each message waited. */
+      flushLatency: LatencyStats;
+    };
+    engines: { camerax: ScanEngineStats, gms: ScanEngineStats, 'camerax-zxing': ScanEngineStats, zxing: ScanEngineStats };
+    /** Per-frame stage durations of the CameraX pipeline, in microseconds. */
+    stages: {
+      crop: StageHistogram;
+      detect: StageHistogram;
+      frame: StageHistogram;
+    };
   }
 
   interface Result {
@@ -25,6 +132,14 @@ declare namespace CordovaPluginMLKitBarcodeScanner {
     text: string;
     format: string | undefined;
     type: string | undefined;
+    /** Android only: whether the code was already decoded within the result history window. */
+    seenBefore?: boolean;
+    /** Android only: epoch milliseconds of the first sighting within the result history window. */
+    firstSeenAt?: number;
+    /** binaryResults only: the undecoded bytes of the code, if the engine provides them. */
+    rawBytes?: ArrayBuffer | string;
+    /** binaryResults only: the code's box, if the engine provides it. */
+    boundingBox?: { left: number, top: number, right: number, bottom: number };
   }
 }
 
@@ -32,6 +147,17 @@ interface CordovaPlugins {
   mlkit: {
     barcodeScanner: {
       scan(options: CordovaPluginMLKitBarcodeScanner.Options | undefined, successCallback: (result: CordovaPluginMLKitBarcodeScanner.Result) => any, callback: (error: Error & { cancelled: boolean, message: string }) => any): void;
+      scanBatch(options: CordovaPluginMLKitBarcodeScanner.Options | undefined, successCallback: (results: CordovaPluginMLKitBarcodeScanner.BatchResult[]) => any, callback: (error: Error & { cancelled: boolean, message: string }) => any): void;
+      scanImages(uris: string[], options: CordovaPluginMLKitBarcodeScanner.Options | undefined, imageCallback: (image: CordovaPluginMLKitBarcodeScanner.ImageResult) => any, doneCallback?: (totals: { scanned: number, failed: number }) => any, callback?: (error: Error & { cancelled: boolean, message: string }) => any): void;
+      scanContinuous(options: CordovaPluginMLKitBarcodeScanner.Options | undefined, resultCallback: (result: CordovaPluginMLKitBarcodeScanner.Result) => any, callback: (error: Error & { cancelled: boolean, message: string }) => any): void;
+      startEmbedded(options: CordovaPluginMLKitBarcodeScanner.Options | undefined, resultCallback: (result: CordovaPluginMLKitBarcodeScanner.Result) => any, callback: (error: Error & { cancelled: boolean, message: string }) => any): void;
+      pauseEmbedded(successCallback?: () => any, callback?: (error: Error & { cancelled: boolean, message: string }) => any): void;
+      resumeEmbedded(successCallback?: () => any, callback?: (error: Error & { cancelled: boolean, message: string }) => any): void;
+      prewarm(options?: CordovaPluginMLKitBarcodeScanner.Options, successCallback?: () => any, callback?: (error: Error & { cancelled: boolean, message: string }) => any): void;
+      getScanMetrics(successCallback: (metrics: CordovaPluginMLKitBarcodeScanner.ScanMetrics) => any, callback?: (error: Error & { cancelled: boolean, message: string }) => any): void;
+      resetScanMetrics(successCallback?: () => any, callback?: (error: Error & { cancelled: boolean, message: string }) => any): void;
+      clearResultHistory(successCallback?: () => any, callback?: (error: Error & { cancelled: boolean, message: string }) => any): void;
+      stopScan(successCallback?: () => any, callback?: (error: Error & { cancelled: boolean, message: string }) => any): void;
     };
   };
 }
@@ -16,7 +16,20 @@ const defaultSettings = Object.freeze({
     PDF417: true,
     Aztec: true
   },
-  detectorSize: 0.6
+  detectorSize: 0.6,
+  duplicateWindow: 1500,
+  minDetectionRate: 2,
+  maxDetectionRate: 15,
+  batchTargetCount: 0,
+  batchTimeout: 0,
+  maxInFlight: 2,
+  tileSize: 0,
+  tileParallelism: 2,
+  binaryResults: false,
+  flushInterval: 0,
+  flushSize: 16,
+  overflowPolicy: 'dropOldest',
+  autoTorch: true
 });
 const detectorFormat = Object.freeze({
   Code128: 1,
@@ -49,20 +62,55 @@ const detectorType = Object.freeze({
   DRIVER_LICENSE: 12
 });
 
+// Reverse lookups, built once instead of searching the tables for every result.
+const formatNames = {};
+for (const key in detectorFormat) {
+  formatNames[detectorFormat[key]] = key;
+}
+const typeNames = [];
+for (const key in detectorType) {
+  typeNames[detectorType[key]] = key;
+}
+
 function getBarcodeFormat(format) {
-  const formatString = Object.keys(detectorFormat).find(key => detectorFormat[key] === format);
-  return formatString || format;
+  return formatNames[format] || format;
 }
 
 function getBarcodeType(type) {
-  const typeString = Object.keys(detectorType).find(key => detectorType[key] === type);
-  return typeString || type;
+  return typeNames[type] || type;
+}
+
+// Layout of binary results, see BinaryResult.java. Numbers are little endian.
+const BINARY_HEADER_SIZE = 36;
+const BINARY_SEEN_BEFORE = 1;
+const BINARY_BOUNDING_BOX = 2;
+const BINARY_RAW_BYTES = 4;
+const utf8Decoder = new TextDecoder('utf-8');
+// First byte of a coalesced binary message; binary results start with their version, at least 1.
+const BINARY_BATCH_MARKER = 0;
+
+function fromBinary(buffer) {
+  const view = new DataView(buffer);
+  const flags = view.getUint8(1);
+  const textEnd = BINARY_HEADER_SIZE + view.getUint32(32, true);
+  return {
+    cancelled: false,
+    text: utf8Decoder.decode(new Uint8Array(buffer, BINARY_HEADER_SIZE, textEnd - BINARY_HEADER_SIZE)),
+    format: getBarcodeFormat(view.getInt32(4, true)),
+    type: getBarcodeType(view.getUint16(2, true)),
+    rawBytes: flags & BINARY_RAW_BYTES ? buffer.slice(textEnd) : undefined,
+    boundingBox: flags & BINARY_BOUNDING_BOX
+      ? { left: view.getInt32(8, true), top: view.getInt32(12, true), right: view.getInt32(16, true), bottom: view.getInt32(20, true) }
+      : undefined,
+    seenBefore: (flags & BINARY_SEEN_BEFORE) !== 0,
+    firstSeenAt: view.getFloat64(24, true)
+  };
 }
 
 (function () {
   function MLKitBarcodeScanner() { }
 
-  MLKitBarcodeScanner.prototype.scan = function (params, success, failure) {
+  function buildScanSettings(params) {
     // Default settings. Scan every barcode type.
     const settings = Object.assign({}, defaultSettings, params);
 
@@ -86,7 +134,28 @@ function getBarcodeType(type) {
       //Position 1
       detectorType: detectorTypes,
       //Position 2
-      detectorSize: multiplier
+      detectorSize: multiplier,
+      //Position 3, only read by continuous scans
+      duplicateWindow: settings.duplicateWindow,
+      //Position 4 and 5, detections per second of the camera pipeline
+      minDetectionRate: settings.minDetectionRate,
+      maxDetectionRate: settings.maxDetectionRate,
+      //Position 6 and 7, only read by batch scans
+      batchTargetCount: settings.batchTargetCount,
+      batchTimeout: settings.batchTimeout,
+      //Position 8, detector requests the camera pipeline keeps in flight
+      maxInFlight: settings.maxInFlight,
+      //Position 9 and 10, whole-frame tile search of the camera pipeline, off with a tile size of 0
+      tileSize: settings.tileSize,
+      tileParallelism: settings.tileParallelism,
+      //Position 11, single and continuous results as ArrayBuffers that keep the raw bytes
+      binaryResults: settings.binaryResults === true,
+      //Position 12 to 14, only read by continuous scans: coalescing of results into fewer messages
+      flushInterval: settings.flushInterval,
+      flushSize: settings.flushSize,
+      overflowPolicy: settings.overflowPolicy,
+      //Position 15, CameraX screen only: torch and exposure follow the detector box
+      autoTorch: settings.autoTorch !== false
     };
     const sendSettings = [];
     for (const key in args) {
@@ -94,32 +163,225 @@ function getBarcodeType(type) {
         sendSettings.push(args[key]);
       }
     }
-    this.sendScanRequest(sendSettings, success, failure);
+    return sendSettings;
+  }
+
+  function toResult(data) {
+    if (data instanceof ArrayBuffer) {
+      return fromBinary(data);
+    }
+    return {
+      cancelled: false,
+      text: data[0],
+      format: getBarcodeFormat(data[1]),
+      type: getBarcodeType(data[2]),
+      seenBefore: data[3] === true,
+      firstSeenAt: data[4]
+    };
+  }
+
+  // True for a message of several coalesced results, see flushInterval.
+  function isCoalesced(data) {
+    if (data instanceof ArrayBuffer) {
+      return new DataView(data).getUint8(0) === BINARY_BATCH_MARKER;
+    }
+    return Array.isArray(data[0]);
+  }
+
+  // Calls fn for every result of a continuous scan message, which may carry several coalesced ones.
+  function forEachResult(data, fn) {
+    if (data instanceof ArrayBuffer) {
+      const view = new DataView(data);
+      if (view.getUint8(0) !== BINARY_BATCH_MARKER) {
+        fn(fromBinary(data));
+        return;
+      }
+      const count = view.getUint32(4, true);
+      let offset = 8;
+      for (let i = 0; i < count; i++) {
+        const length = view.getUint32(offset, true);
+        fn(fromBinary(data.slice(offset + 4, offset + 4 + length)));
+        offset += 4 + length;
+      }
+      return;
+    }
+    if (Array.isArray(data[0])) {
+      data.forEach((result) => fn(toResult(result)));
+      return;
+    }
+    fn(toResult(data));
+  }
+
+  // Coalesced messages handled since the last acknowledgement.
+  let unackedMessages = 0;
+
+  // Tells the native side that a coalesced message was handled, so it sends more. Acknowledgements
+  // wait for the end of the current JavaScript turn and go out together, so a busy page holds the
+  // results back instead of queueing messages it cannot keep up with.
+  function acknowledge() {
+    if (unackedMessages++ > 0) {
+      return;
+    }
+    setTimeout(() => {
+      const count = unackedMessages;
+      unackedMessages = 0;
+      cordova.exec(null, null, 'cordova-plugin-mlkit-barcode-scanner', 'ackResults', [count]);
+    }, 0);
+  }
+
+  function onContinuousResult(data, success) {
+    try {
+      forEachResult(data, success);
+    } finally {
+      if (isCoalesced(data)) {
+        acknowledge();
+      }
+    }
+  }
+
+  function toBatchResult(code) {
+    const box = code[4];
+    return {
+      cancelled: false,
+      text: code[0],
+      format: getBarcodeFormat(code[1]),
+      type: getBarcodeType(code[2]),
+      rawBytes: code[3],
+      boundingBox: box && box.length === 4 ? { left: box[0], top: box[1], right: box[2], bottom: box[3] } : undefined,
+      seenBefore: code[5] === true,
+      firstSeenAt: code[6]
+    };
+  }
+
+  function toError(err, failure) {
+    switch (err[0]) {
+      case null:
+      case 'USER_CANCELLED':
+        failure({ cancelled: true, message: 'The scan was cancelled.' });
+        break;
+      case 'SCANNER_OPEN':
+        failure({ cancelled: false, message: 'Scanner already open.' });
+        break;
+      default:
+        failure({ cancelled: false, message: err });
+        break;
+    }
+  }
+
+  MLKitBarcodeScanner.prototype.scan = function (params, success, failure) {
+    this.sendScanRequest(buildScanSettings(params), success, failure);
   };
 
   MLKitBarcodeScanner.prototype.sendScanRequest = function (settings, success, failure) {
     cordova.exec((data) => {
-      success({
-        cancelled: false,
-        text: data[0],
-        format: getBarcodeFormat(data[1]),
-        type: getBarcodeType(data[2])
-      });
+      success(toResult(data));
     }, (err) => {
-      switch (err[0]) {
-        case null:
-        case 'USER_CANCELLED':
-          failure({ cancelled: true, message: 'The scan was cancelled.' });
-          break;
-        case 'SCANNER_OPEN':
-          failure({ cancelled: false, message: 'Scanner already open.' });
-          break;
-        default:
-          failure({ cancelled: false, message: err });
-          break;
-      }
+      toError(err, failure);
     }, 'cordova-plugin-mlkit-barcode-scanner', 'startScan', settings);
   };
 
+  // Returns every distinct barcode found, see batchTargetCount and batchTimeout.
+  MLKitBarcodeScanner.prototype.scanBatch = function (params, success, failure) {
+    cordova.exec((codes) => {
+      success(codes.map(toBatchResult));
+    }, (err) => {
+      toError(err, failure);
+    }, 'cordova-plugin-mlkit-barcode-scanner', 'startBatchScan', buildScanSettings(params));
+  };
+
+  // Decodes the barcodes of image files, e.g. content:// URIs of picked photos. onImage is called for
+  // every image as soon as it is done, in completion order, then onDone with the totals.
+  MLKitBarcodeScanner.prototype.scanImages = function (uris, params, onImage, onDone, failure) {
+    cordova.exec((data) => {
+      if (data[0] < 0) {
+        if (onDone) onDone({ scanned: data[1], failed: data[2] });
+        return;
+      }
+      onImage({
+        index: data[0],
+        uri: data[1],
+        results: data[2].map(toBatchResult),
+        error: data[3] || undefined
+      });
+    }, (err) => {
+      toError(err, failure);
+    }, 'cordova-plugin-mlkit-barcode-scanner', 'scanImages', [uris, buildScanSettings(params)[0]]);
+  };
+
+  // Keeps the scanner open and calls success for every new barcode until stopScan is called.
+  MLKitBarcodeScanner.prototype.scanContinuous = function (params, success, failure) {
+    cordova.exec((data) => {
+      onContinuousResult(data, success);
+    }, (err) => {
+      toError(err, failure);
+    }, 'cordova-plugin-mlkit-barcode-scanner', 'startContinuousScan', buildScanSettings(params));
+  };
+
+  // Like scanContinuous, but the camera preview runs behind the transparent WebView of the app's own
+  // page instead of a separate scanner screen. Ends with stopScan.
+  MLKitBarcodeScanner.prototype.startEmbedded = function (params, success, failure) {
+    cordova.exec((data) => {
+      onContinuousResult(data, success);
+    }, (err) => {
+      toError(err, failure);
+    }, 'cordova-plugin-mlkit-barcode-scanner', 'startEmbedded', buildScanSettings(params));
+  };
+
+  // Stops detection of the embedded preview; the camera stays open, so resuming is immediate.
+  MLKitBarcodeScanner.prototype.pauseEmbedded = function (success, failure) {
+    cordova.exec(() => {
+      if (success) success();
+    }, (err) => {
+      if (failure) failure({ cancelled: false, message: err });
+    }, 'cordova-plugin-mlkit-barcode-scanner', 'pauseEmbedded', []);
+  };
+
+  MLKitBarcodeScanner.prototype.resumeEmbedded = function (success, failure) {
+    cordova.exec(() => {
+      if (success) success();
+    }, (err) => {
+      if (failure) failure({ cancelled: false, message: err });
+    }, 'cordova-plugin-mlkit-barcode-scanner', 'resumeEmbedded', []);
+  };
+
+  // Loads the detector for the given barcode types ahead of time, so the next scan starts faster.
+  MLKitBarcodeScanner.prototype.prewarm = function (params, success, failure) {
+    cordova.exec(() => {
+      if (success) success();
+    }, (err) => {
+      if (failure) failure({ cancelled: false, message: err });
+    }, 'cordova-plugin-mlkit-barcode-scanner', 'prewarm', [buildScanSettings(params)[0]]);
+  };
+
+  MLKitBarcodeScanner.prototype.getScanMetrics = function (success, failure) {
+    cordova.exec(success, (err) => {
+      if (failure) failure({ cancelled: false, message: err });
+    }, 'cordova-plugin-mlkit-barcode-scanner', 'getScanMetrics', []);
+  };
+
+  MLKitBarcodeScanner.prototype.resetScanMetrics = function (success, failure) {
+    cordova.exec(() => {
+      if (success) success();
+    }, (err) => {
+      if (failure) failure({ cancelled: false, message: err });
+    }, 'cordova-plugin-mlkit-barcode-scanner', 'resetScanMetrics', []);
+  };
+
+  MLKitBarcodeScanner.prototype.clearResultHistory = function (success, failure) {
+    cordova.exec(() => {
+      if (success) success();
+    }, (err) => {
+      if (failure) failure({ cancelled: false, message: err });
+    }, 'cordova-plugin-mlkit-barcode-scanner', 'clearResultHistory', []);
+  };
+
+  MLKitBarcodeScanner.prototype.stopScan = function (success, failure) {
+    cordova.exec(() => {
+      if (success) success();
+    }, (err) => {
+      if (failure) failure({ cancelled: false, message: err });
+    }, 'cordova-plugin-mlkit-barcode-scanner', 'stopScan', []);
+  };
+
   module.exports = new MLKitBarcodeScanner();
 })();